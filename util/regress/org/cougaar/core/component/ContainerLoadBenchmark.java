@@ -0,0 +1,116 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.core.component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures {@link ContainerSupport#load} of 200 components in one
+ * priority band, sequentially and with parallel loading.  Each
+ * component spends about 2 milliseconds blocked in its initialize,
+ * standing in for class loading and service lookups.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.core.component.ContainerLoadBenchmark
+ * </pre>
+ * Set -Dorg.cougaar.core.component.ContainerSupport.parallelism to
+ * change the pool size.
+ */
+public class ContainerLoadBenchmark {
+
+  private static final int COMPONENTS = 200;
+
+  private static final int ROUNDS = 5;
+
+  public static class SlowComponent extends ComponentSupport {
+    @Override
+    public void initialize() {
+      super.initialize();
+      try {
+        Thread.sleep(2);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static class BenchContainer extends ContainerSupport {
+    private final boolean parallel;
+    BenchContainer(boolean parallel) {
+      this.parallel = parallel;
+      setBindingSite(new BindingSite() {
+        public ServiceBroker getServiceBroker() {
+          return new ServiceBrokerSupport();
+        }
+        public void requestStop() {
+        }
+      });
+    }
+    @Override
+    protected String specifyContainmentPoint() {
+      return "Bench";
+    }
+    @Override
+    protected ComponentDescriptions findInitialComponentDescriptions() {
+      List l = new ArrayList(COMPONENTS);
+      for (int i = 0; i < COMPONENTS; i++) {
+        l.add(new ComponentDescription(
+              "c" + i, "Bench.Child", SlowComponent.class.getName(),
+              null, null, null, null, null));
+      }
+      return new ComponentDescriptions(l);
+    }
+    @Override
+    protected boolean isParallelLoad() {
+      return parallel;
+    }
+  }
+
+  public static void main(String[] args) {
+    for (int i = 0; i < 2; i++) {
+      run(false);
+      run(true);
+    }
+  }
+
+  private static void run(boolean parallel) {
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < ROUNDS; i++) {
+      BenchContainer c = new BenchContainer(parallel);
+      long t0 = System.nanoTime();
+      c.initialize();
+      c.load();
+      c.start();
+      long t = System.nanoTime() - t0;
+      if (t < best) best = t;
+    }
+    System.out.println(
+        (parallel ? "parallel  " : "sequential") + " load of " + COMPONENTS +
+        " components: " + (best / 1000000) + " ms");
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.core.component;
+
+import org.cougaar.util.Benchmarks;
+
+/**
+ * Measures {@link ContainerSupport#add} and {@link
+ * ContainerSupport#remove} of a grandchild, routed through a
+ * container with 1, 10, 100 and 1000 leaf children plus the child
+ * container that accepts it.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.core.component.ContainerRoutingBenchmark
+ * </pre>
+ */
+public class ContainerRoutingBenchmark {
+
+  private static final int[] CHILDREN = new int[] { 1, 10, 100, 1000 };
+
+  private static final int OPS = 20000;
+
+  public static class Leaf extends ComponentSupport {
+  }
+
+  public static class SubContainer extends ContainerSupport {
+    @Override
+    protected String specifyContainmentPoint() {
+      return "Bench.Sub";
+    }
+    @Override
+    protected ComponentDescriptions findInitialComponentDescriptions() {
+      return null;
+    }
+  }
+
+  private static class BenchContainer extends ContainerSupport {
+    BenchContainer() {
+      setBindingSite(new BindingSite() {
+        public ServiceBroker getServiceBroker() {
+          return new ServiceBrokerSupport();
+        }
+        public void requestStop() {
+        }
+      });
+    }
+    @Override
+    protected String specifyContainmentPoint() {
+      return "Bench";
+    }
+    @Override
+    protected ComponentDescriptions findInitialComponentDescriptions() {
+      return null;
+    }
+  }
+
+  private static ComponentDescription desc(String name, String ip, Class cl) {
+    return new ComponentDescription(
+        name, ip, cl.getName(), null, null, null, null, null);
+  }
+
+  public static void main(String[] args) {
+    for (int i = 0; i < CHILDREN.length; i++) {
+      run(CHILDREN[i]);
+    }
+  }
+
+  private static void run(int n) {
+    final BenchContainer c = new BenchContainer();
+    c.initialize();
+    c.load();
+    c.start();
+    for (int i = 0; i < n; i++) {
+      c.add(desc("leaf" + i, "Bench.Leaf", Leaf.class));
+    }
+    c.add(desc("sub", "Bench.Sub", SubContainer.class));
+    final ComponentDescription gc = desc("gc", "Bench.Sub.Leaf", Leaf.class);
+    final ComponentDescription missing = desc("missing", "Bench.Sub.Leaf", Leaf.class);
+    Benchmarks.time("add+remove grandchild, " + n + " children", OPS, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          c.add(gc);
+          c.remove(gc);
+        }
+      }
+    });
+    Benchmarks.time("remove missing grandchild, " + n + " children", OPS, new Benchmarks.Op() {
+      public void run(int ops) {
+        boolean b = false;
+        for (int i = 0; i < ops; i++) {
+          b |= c.remove(missing);
+        }
+        Benchmarks.sink = Boolean.valueOf(b);
+      }
+    });
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.core.component;
+
+import org.cougaar.util.Benchmarks;
+
+/**
+ * Measures {@link ServiceBrokerSupport} getService/releaseService
+ * throughput from 1 to 32 threads, for a plain provider (called under
+ * its own monitor) and a {@link ThreadSafeServiceProvider}.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.core.component.ServiceBrokerBenchmark
+ * </pre>
+ * Scaling past one thread needs a multi-core host.
+ */
+public class ServiceBrokerBenchmark {
+
+  private static final int[] THREADS = new int[] { 1, 2, 4, 8, 16, 32 };
+
+  private static final int OPS = 200000;
+
+  public interface FooService extends Service {
+  }
+
+  private static final FooService FOO = new FooService() {};
+
+  private static class Provider implements ServiceProvider {
+    public Object getService(ServiceBroker sb, Object requestor, Class serviceClass) {
+      return FOO;
+    }
+    public void releaseService(
+        ServiceBroker sb, Object requestor, Class serviceClass, Object service) {
+    }
+  }
+
+  private static class SafeProvider
+    extends Provider implements ThreadSafeServiceProvider {
+  }
+
+  public static void main(String[] args) {
+    for (int t = 0; t < THREADS.length; t++) {
+      run("synchronized provider", THREADS[t], new Provider());
+      run("ThreadSafeServiceProvider", THREADS[t], new SafeProvider());
+    }
+  }
+
+  private static void run(String name, int threads, ServiceProvider sp) {
+    final ServiceBrokerSupport sb = new ServiceBrokerSupport();
+    sb.addService(FooService.class, sp);
+    Benchmarks.throughput(name, threads, OPS, new Benchmarks.ThreadOp() {
+      public void run(int id, int ops) {
+        Object requestor = new Object();
+        for (int i = 0; i < ops; i++) {
+          Object s = sb.getService(requestor, FooService.class, null);
+          sb.releaseService(requestor, FooService.class, s);
+        }
+      }
+    });
+  }
+}
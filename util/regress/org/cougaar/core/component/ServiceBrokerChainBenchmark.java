@@ -0,0 +1,103 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.core.component;
+
+import org.cougaar.util.Benchmarks;
+
+/**
+ * Measures getService/releaseService through a chain of 1 to 8
+ * {@link PropagatingServiceBroker}s, each behind a
+ * {@link DelegatingServiceBroker}, with the resolution cache on and
+ * off.  The service is provided at the root, and a second, missing
+ * service measures the cost of a failed lookup.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.core.component.ServiceBrokerChainBenchmark
+ * </pre>
+ */
+public class ServiceBrokerChainBenchmark {
+
+  private static final int MAX_DEPTH = 8;
+
+  private static final int OPS = 1000000;
+
+  public interface FooService extends Service {
+  }
+
+  public interface MissingService extends Service {
+  }
+
+  private static final FooService FOO = new FooService() {};
+
+  private static class Provider implements ThreadSafeServiceProvider {
+    public Object getService(ServiceBroker sb, Object requestor, Class serviceClass) {
+      return FOO;
+    }
+    public void releaseService(
+        ServiceBroker sb, Object requestor, Class serviceClass, Object service) {
+    }
+  }
+
+  public static void main(String[] args) {
+    for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+      run(depth, false);
+      run(depth, true);
+    }
+  }
+
+  private static void run(int depth, boolean cache) {
+    ServiceBrokerSupport root = new ServiceBrokerSupport();
+    root.addService(FooService.class, new Provider());
+    ServiceBroker b = root;
+    PropagatingServiceBroker leaf = null;
+    for (int i = 0; i < depth; i++) {
+      leaf = new PropagatingServiceBroker(new DelegatingServiceBroker(b));
+      leaf.setResolutionCacheEnabled(cache);
+      b = leaf;
+    }
+    final ServiceBroker sb = leaf;
+    final Object requestor = new Object();
+    String suffix = " depth " + depth + (cache ? " cached" : " uncached");
+    Benchmarks.time("hit" + suffix, OPS, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          FooService s = sb.getService(requestor, FooService.class, null);
+          sb.releaseService(requestor, FooService.class, s);
+        }
+      }
+    });
+    Benchmarks.time("miss" + suffix, OPS, new Benchmarks.Op() {
+      public void run(int ops) {
+        Object s = null;
+        for (int i = 0; i < ops; i++) {
+          s = sb.getService(requestor, MissingService.class, null);
+        }
+        Benchmarks.sink = s;
+      }
+    });
+  }
+}
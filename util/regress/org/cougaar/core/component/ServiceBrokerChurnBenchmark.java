@@ -0,0 +1,90 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.core.component;
+
+/**
+ * Runs millions of getService/releaseService cycles, each passing a
+ * ServiceRevokedListener, and prints the heap and the number of
+ * retained revocation listeners after each million.  Both should stay
+ * flat.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.core.component.ServiceBrokerChurnBenchmark [millions]
+ * </pre>
+ */
+public class ServiceBrokerChurnBenchmark {
+
+  public interface FooService extends Service {
+  }
+
+  private static final FooService FOO = new FooService() {};
+
+  public static void main(String[] args) {
+    int millions = (args.length > 0 ? Integer.parseInt(args[0]) : 5);
+    ServiceBrokerSupport sb = new ServiceBrokerSupport();
+    sb.addService(FooService.class, new ServiceProvider() {
+      public Object getService(ServiceBroker sb, Object requestor, Class serviceClass) {
+        return FOO;
+      }
+      public void releaseService(
+          ServiceBroker sb, Object requestor, Class serviceClass, Object service) {
+      }
+    });
+    Object requestor = new Object();
+    long start = System.nanoTime();
+    for (int m = 1; m <= millions; m++) {
+      for (int i = 0; i < 1000000; i++) {
+        Object s = sb.getService(requestor, FooService.class,
+            new ServiceRevokedListener() {
+              public void serviceRevoked(ServiceRevokedEvent re) {
+              }
+            });
+        sb.releaseService(requestor, FooService.class, s);
+      }
+      System.out.println(
+          m + "M cycles: " + (usedMemory() / 1024) + " KB heap, " +
+          sb.getRevokedListenerCount(FooService.class) + " listeners, " +
+          ((System.nanoTime() - start) / (m * 1000000L)) + " ns/cycle");
+    }
+  }
+
+  private static long usedMemory() {
+    Runtime rt = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      long u = rt.totalMemory() - rt.freeMemory();
+      if (u < used) used = u;
+    }
+    return used;
+  }
+}
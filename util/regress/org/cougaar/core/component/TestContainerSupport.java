@@ -0,0 +1,296 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.core.component;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.cougaar.util.GenericStateModel;
+
+public class TestContainerSupport extends TestCase {
+
+  private static final int CHILDREN = 8;
+
+  /** "init ", "load " or "start " plus the component name, in call order **/
+  private static final List events = Collections.synchronizedList(new ArrayList());
+
+  private static final List initThreads = Collections.synchronizedList(new ArrayList());
+
+  public static class Child extends ComponentSupport {
+    private String name;
+    public void setParameter(Object o) {
+      name = (String) ((List) o).get(0);
+    }
+    @Override
+    public void initialize() {
+      super.initialize();
+      initThreads.add(Thread.currentThread());
+      events.add("init " + name);
+    }
+    @Override
+    public void load() {
+      super.load();
+      events.add("load " + name);
+    }
+    @Override
+    public void start() {
+      super.start();
+      events.add("start " + name);
+    }
+  }
+
+  public static class BadChild extends Child {
+    @Override
+    public void initialize() {
+      throw new RuntimeException("expected by TestContainerSupport");
+    }
+  }
+
+  public static class ErrorChild extends Child {
+    @Override
+    public void initialize() {
+      throw new LinkageError("expected by TestContainerSupport");
+    }
+    @Override
+    public void load() {
+      events.add("load error");
+    }
+  }
+
+  public static class SubContainer extends ContainerSupport {
+    @Override
+    protected String specifyContainmentPoint() {
+      return "Test.Sub";
+    }
+    @Override
+    protected ComponentDescriptions findInitialComponentDescriptions() {
+      return null;
+    }
+  }
+
+  private static class TestContainer extends ContainerSupport {
+    private final boolean parallel;
+    private final List cds = new ArrayList();
+    TestContainer(boolean parallel) {
+      this.parallel = parallel;
+      setBindingSite(new BindingSite() {
+        public ServiceBroker getServiceBroker() {
+          return new ServiceBrokerSupport();
+        }
+        public void requestStop() {
+        }
+      });
+    }
+    void addDescription(String name, Class cl, int priority) {
+      List p = new ArrayList();
+      p.add(name);
+      cds.add(new ComponentDescription(
+            name, "Test.Child", cl.getName(),
+            null, p, null, null, null, priority));
+    }
+    @Override
+    protected String specifyContainmentPoint() {
+      return "Test";
+    }
+    @Override
+    protected ComponentDescriptions findInitialComponentDescriptions() {
+      return new ComponentDescriptions(cds);
+    }
+    @Override
+    protected boolean isParallelLoad() {
+      return parallel;
+    }
+  }
+
+  @Override
+  protected void setUp() {
+    events.clear();
+    initThreads.clear();
+  }
+
+  private TestContainer load(boolean parallel, boolean bad) {
+    TestContainer c = new TestContainer(parallel);
+    for (int i = 0; i < CHILDREN; i++) {
+      c.addDescription("c" + i, Child.class, ComponentDescription.PRIORITY_COMPONENT);
+    }
+    c.addDescription("high", Child.class, ComponentDescription.PRIORITY_HIGH);
+    if (bad) {
+      c.addDescription("bad", BadChild.class, ComponentDescription.PRIORITY_COMPONENT);
+    }
+    c.initialize();
+    c.load();
+    c.start();
+    return c;
+  }
+
+  private void assertLoaded(TestContainer c) {
+    // the high band is loaded before the component band
+    assertEquals("init high", events.get(0));
+    assertEquals("load high", events.get(1));
+    List loads = new ArrayList();
+    for (int i = 2; i < events.size(); i++) {
+      String s = (String) events.get(i);
+      if (s.startsWith("load ")) {
+        loads.add(s);
+      }
+    }
+    assertEquals(CHILDREN, loads.size());
+    for (int i = 0; i < CHILDREN; i++) {
+      assertEquals("load c" + i, loads.get(i));
+    }
+    assertEquals(CHILDREN + 1, c.listComponents().size());
+    assertEquals(GenericStateModel.ACTIVE, c.getModelState());
+    assertTrue(events.contains("start high"));
+    for (int i = 0; i < CHILDREN; i++) {
+      assertTrue(events.contains("start c" + i));
+    }
+  }
+
+  public void test_sequential() {
+    TestContainer c = load(false, false);
+    assertLoaded(c);
+    for (int i = 0; i < initThreads.size(); i++) {
+      assertSame(Thread.currentThread(), initThreads.get(i));
+    }
+  }
+
+  public void test_parallel() {
+    TestContainer c = load(true, false);
+    assertLoaded(c);
+    // each init precedes every load in its band
+    int lastInit = events.lastIndexOf("init c" + (CHILDREN - 1));
+    for (int i = 0; i < CHILDREN; i++) {
+      assertTrue(events.indexOf("init c" + i) < events.indexOf("load c0"));
+    }
+    assertTrue(lastInit < events.indexOf("load c0"));
+    // the band was initialized on the load pool
+    assertNotSame(Thread.currentThread(), initThreads.get(initThreads.size() - 1));
+  }
+
+  public void test_parallelFailure() {
+    TestContainer c = load(true, true);
+    // the failed child is skipped and the others still load
+    assertFalse(events.contains("load bad"));
+    List loads = new ArrayList();
+    for (int i = 0; i < events.size(); i++) {
+      String s = (String) events.get(i);
+      if (s.startsWith("load c")) {
+        loads.add(s);
+      }
+    }
+    assertEquals(CHILDREN, loads.size());
+    assertEquals(CHILDREN + 1, c.listComponents().size());
+    assertEquals(GenericStateModel.ACTIVE, c.getModelState());
+  }
+
+  public void test_parallelError() {
+    TestContainer c = new TestContainer(true);
+    for (int i = 0; i < CHILDREN; i++) {
+      c.addDescription("c" + i, Child.class, ComponentDescription.PRIORITY_COMPONENT);
+    }
+    c.addDescription("error", ErrorChild.class, ComponentDescription.PRIORITY_COMPONENT);
+    c.initialize();
+    c.load();
+    c.start();
+    // the Error is logged, the child removed and the rest loaded
+    assertFalse(events.contains("load error"));
+    assertEquals(CHILDREN, c.listComponents().size());
+    assertEquals(GenericStateModel.ACTIVE, c.getModelState());
+    for (int i = 0; i < CHILDREN; i++) {
+      assertTrue(events.contains("start c" + i));
+    }
+  }
+
+  /** A container that counts its adds, which parallel loading would skip **/
+  private static class CountingContainer extends TestContainer {
+    int adds;
+    CountingContainer() {
+      super(true);
+    }
+    @Override
+    public boolean add(Object o) {
+      adds++;
+      return super.add(o);
+    }
+  }
+
+  public void test_parallelOverriddenAdd() {
+    CountingContainer c = new CountingContainer();
+    for (int i = 0; i < CHILDREN; i++) {
+      c.addDescription("c" + i, Child.class, ComponentDescription.PRIORITY_COMPONENT);
+    }
+    c.addDescription("high", Child.class, ComponentDescription.PRIORITY_HIGH);
+    c.initialize();
+    c.load();
+    c.start();
+    assertLoaded(c);
+    // loaded sequentially, through the overridden add
+    assertEquals(CHILDREN + 1, c.adds);
+    for (int i = 0; i < initThreads.size(); i++) {
+      assertSame(Thread.currentThread(), initThreads.get(i));
+    }
+  }
+
+  private static ComponentDescription desc(String name, String ip, Class cl) {
+    List p = new ArrayList();
+    p.add(name);
+    return new ComponentDescription(
+        name, ip, cl.getName(), null, p, null, null, null);
+  }
+
+  public void test_routing() {
+    TestContainer c = load(false, false);
+    for (int i = 0; i < 100; i++) {
+      c.add(desc("leaf" + i, "Test.Child", Child.class));
+    }
+    ComponentDescription sub = new ComponentDescription(
+        "sub", "Test.Sub", SubContainer.class.getName(),
+        null, null, null, null, null);
+    assertTrue(c.add(sub));
+    ComponentDescription gc = desc("gc", "Test.Sub.Child", Child.class);
+    assertTrue(c.add(gc));
+    assertFalse(c.add(gc));
+    assertTrue(events.contains("start gc"));
+    try {
+      c.add(desc("lost", "Test.Nowhere.Child", Child.class));
+      fail("expected ComponentLoadFailure");
+    } catch (ComponentLoadFailure e) {
+    }
+
+    assertTrue(c.remove(gc));
+    assertFalse(c.remove(gc));
+    assertTrue(c.add(gc));
+    assertTrue(c.remove(sub));
+    try {
+      c.add(desc("gc2", "Test.Sub.Child", Child.class));
+      fail("expected ComponentLoadFailure");
+    } catch (ComponentLoadFailure e) {
+    }
+  }
+}
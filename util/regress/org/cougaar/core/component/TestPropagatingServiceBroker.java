@@ -0,0 +1,142 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.core.component;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+public class TestPropagatingServiceBroker extends TestCase {
+
+  public interface FooService extends Service {
+  }
+
+  private static class Foo implements FooService {
+  }
+
+  private static class Provider implements ServiceProvider {
+    final Object service = new Foo();
+    public Object getService(ServiceBroker sb, Object requestor, Class serviceClass) {
+      return service;
+    }
+    public void releaseService(
+        ServiceBroker sb, Object requestor, Class serviceClass, Object service) {
+    }
+  }
+
+  /** Counts the lookups that reach it, so it must never be skipped **/
+  private static class CountingServiceBroker extends DelegatingServiceBroker {
+    int gets;
+    CountingServiceBroker(ServiceBroker delegate) {
+      super(delegate);
+    }
+    @Override
+    public ServiceResult getService(
+        int requestorId, ComponentDescription requestorDesc,
+        Object requestor, Class serviceClass, ServiceRevokedListener srl,
+        boolean recordInView) {
+      gets++;
+      return super.getService(
+          requestorId, requestorDesc,
+          requestor, serviceClass, srl,
+          recordInView);
+    }
+  }
+
+  /** root - psb - dsb - psb **/
+  private ServiceBrokerSupport root;
+  private PropagatingServiceBroker middle;
+  private PropagatingServiceBroker leaf;
+
+  @Override
+  protected void setUp() {
+    root = new ServiceBrokerSupport();
+    middle = new PropagatingServiceBroker(root);
+    leaf = new PropagatingServiceBroker(new DelegatingServiceBroker(middle));
+    middle.setResolutionCacheEnabled(true);
+    leaf.setResolutionCacheEnabled(true);
+  }
+
+  public void test_missThenAdd() {
+    assertNull(leaf.getService(this, FooService.class, null));
+    assertFalse(leaf.hasService(FooService.class));
+    // a cached miss must not hide a later add
+    Provider p = new Provider();
+    root.addService(FooService.class, p);
+    assertTrue(leaf.hasService(FooService.class));
+    assertSame(p.service, leaf.getService(this, FooService.class, null));
+    assertSame(p.service, leaf.getService(this, FooService.class, null));
+  }
+
+  public void test_nearestProvider() {
+    Provider p1 = new Provider();
+    Provider p2 = new Provider();
+    root.addService(FooService.class, p1);
+    assertSame(p1.service, leaf.getService(this, FooService.class, null));
+    middle.addService(FooService.class, p2);
+    assertSame(p2.service, leaf.getService(this, FooService.class, null));
+    middle.revokeService(FooService.class, p2);
+    assertSame(p1.service, leaf.getService(this, FooService.class, null));
+    root.revokeService(FooService.class, p1);
+    assertNull(leaf.getService(this, FooService.class, null));
+    assertFalse(leaf.hasService(FooService.class));
+  }
+
+  public void test_revokedListener() {
+    Provider p = new Provider();
+    root.addService(FooService.class, p);
+    final int[] revoked = new int[1];
+    Object s = leaf.getService(this, FooService.class, new ServiceRevokedListener() {
+      public void serviceRevoked(ServiceRevokedEvent re) {
+        revoked[0]++;
+      }
+    });
+    assertSame(p.service, s);
+    root.revokeService(FooService.class, p);
+    assertEquals(1, revoked[0]);
+  }
+
+  public void test_currentServiceClasses() {
+    Iterator iter = leaf.getCurrentServiceClasses();
+    assertFalse(iter.hasNext());
+    root.addService(FooService.class, new Provider());
+    iter = leaf.getCurrentServiceClasses();
+    assertSame(FooService.class, iter.next());
+    assertFalse(iter.hasNext());
+  }
+
+  public void test_overriddenBrokerIsAsked() {
+    Provider p = new Provider();
+    root.addService(FooService.class, p);
+    CountingServiceBroker counting = new CountingServiceBroker(middle);
+    PropagatingServiceBroker psb = new PropagatingServiceBroker(counting);
+    psb.setResolutionCacheEnabled(true);
+    for (int i = 0; i < 3; i++) {
+      assertSame(p.service, psb.getService(this, FooService.class, null));
+    }
+    assertEquals(3, counting.gets);
+  }
+}
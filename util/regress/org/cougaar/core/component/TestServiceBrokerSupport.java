@@ -0,0 +1,185 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.core.component;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TestServiceBrokerSupport extends TestCase {
+
+  public interface FooService extends Service {
+  }
+
+  private static class Foo implements FooService {
+  }
+
+  /** Records whether it was called while its own monitor was held **/
+  private static class Provider implements ServiceProvider {
+    final Object service = new Foo();
+    boolean lockedOnGet;
+    boolean lockedOnRelease;
+    int gets;
+    int releases;
+    public Object getService(ServiceBroker sb, Object requestor, Class serviceClass) {
+      lockedOnGet = Thread.holdsLock(this);
+      gets++;
+      return service;
+    }
+    public void releaseService(
+        ServiceBroker sb, Object requestor, Class serviceClass, Object service) {
+      lockedOnRelease = Thread.holdsLock(this);
+      releases++;
+    }
+  }
+
+  private static class SafeProvider
+    extends Provider implements ThreadSafeServiceProvider {
+  }
+
+  public void test_lookup() {
+    ServiceBrokerSupport sb = new ServiceBrokerSupport();
+    Provider p = new Provider();
+    assertFalse(sb.hasService(FooService.class));
+    assertNull(sb.getService(this, FooService.class, null));
+    assertTrue(sb.addService(FooService.class, p));
+    assertFalse(sb.addService(FooService.class, new Provider()));
+    assertTrue(sb.hasService(FooService.class));
+    Iterator iter = sb.getCurrentServiceClasses();
+    assertSame(FooService.class, iter.next());
+    assertFalse(iter.hasNext());
+
+    assertSame(p.service, sb.getService(this, FooService.class, null));
+    sb.releaseService(this, FooService.class, p.service);
+    assertEquals(1, p.gets);
+    assertEquals(1, p.releases);
+
+    sb.revokeService(FooService.class, p);
+    assertFalse(sb.hasService(FooService.class));
+    assertNull(sb.getService(this, FooService.class, null));
+  }
+
+  public void test_providerLock() {
+    ServiceBrokerSupport sb = new ServiceBrokerSupport();
+    Provider p = new Provider();
+    sb.addService(FooService.class, p);
+    Object s = sb.getService(this, FooService.class, null);
+    sb.releaseService(this, FooService.class, s);
+    assertTrue(p.lockedOnGet);
+    assertTrue(p.lockedOnRelease);
+
+    sb.revokeService(FooService.class, p);
+    SafeProvider safe = new SafeProvider();
+    sb.addService(FooService.class, safe);
+    s = sb.getService(this, FooService.class, null);
+    sb.releaseService(this, FooService.class, s);
+    assertFalse(safe.lockedOnGet);
+    assertFalse(safe.lockedOnRelease);
+  }
+
+  public void test_wrongType() {
+    ServiceBrokerSupport sb = new ServiceBrokerSupport();
+    sb.addService(FooService.class, new ServiceProvider() {
+      public Object getService(ServiceBroker sb, Object requestor, Class serviceClass) {
+        return "not a FooService";
+      }
+      public void releaseService(
+          ServiceBroker sb, Object requestor, Class serviceClass, Object service) {
+      }
+    });
+    try {
+      sb.getService(this, FooService.class, null);
+      fail("expected ClassCastException");
+    } catch (ClassCastException e) {
+    }
+  }
+
+  public void test_revokedListener() {
+    ServiceBrokerSupport sb = new ServiceBrokerSupport();
+    Provider p = new Provider();
+    sb.addService(FooService.class, p);
+    final List revoked = new ArrayList();
+    sb.getService(this, FooService.class, new ServiceRevokedListener() {
+      public void serviceRevoked(ServiceRevokedEvent re) {
+        revoked.add(re.getService());
+      }
+    });
+    sb.revokeService(FooService.class, p);
+    assertEquals(1, revoked.size());
+    assertSame(FooService.class, revoked.get(0));
+  }
+
+  public void test_releaseDropsListener() {
+    ServiceBrokerSupport sb = new ServiceBrokerSupport();
+    Provider p = new Provider();
+    sb.addService(FooService.class, p);
+    final int[] revoked = new int[1];
+    ServiceRevokedListener srl = new ServiceRevokedListener() {
+      public void serviceRevoked(ServiceRevokedEvent re) {
+        revoked[0]++;
+      }
+    };
+    Object r1 = new Object();
+    Object r2 = new Object();
+    for (int i = 0; i < 1000; i++) {
+      Object s = sb.getService(r1, FooService.class, srl);
+      sb.releaseService(r1, FooService.class, s);
+    }
+    assertEquals(0, sb.getRevokedListenerCount(FooService.class));
+
+    // held twice by r1, once by r2
+    Object s1 = sb.getService(r1, FooService.class, srl);
+    sb.getService(r1, FooService.class, srl);
+    sb.getService(r2, FooService.class, srl);
+    assertEquals(3, sb.getRevokedListenerCount(FooService.class));
+    sb.releaseService(r1, FooService.class, s1);
+    assertEquals(2, sb.getRevokedListenerCount(FooService.class));
+
+    sb.revokeService(FooService.class, p);
+    assertEquals(2, revoked[0]);
+    assertEquals(0, sb.getRevokedListenerCount(FooService.class));
+  }
+
+  public void test_failedLookupAddsNoListener() {
+    ServiceBrokerSupport sb = new ServiceBrokerSupport();
+    sb.addService(FooService.class, new ServiceProvider() {
+      public Object getService(ServiceBroker sb, Object requestor, Class serviceClass) {
+        return null;
+      }
+      public void releaseService(
+          ServiceBroker sb, Object requestor, Class serviceClass, Object service) {
+      }
+    });
+    ServiceRevokedListener srl = new ServiceRevokedListener() {
+      public void serviceRevoked(ServiceRevokedEvent re) {
+      }
+    };
+    assertNull(sb.getService(this, FooService.class, srl));
+    assertEquals(0, sb.getRevokedListenerCount(FooService.class));
+  }
+}
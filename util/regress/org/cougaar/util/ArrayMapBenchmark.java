@@ -0,0 +1,147 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares the heap footprint and lookup cost of {@link ArrayMap},
+ * {@link FlatArrayMap} and <code>HashMap</code> for small maps.
+ * <p>
+ * Footprint is measured by filling the heap with many maps of the
+ * same size and dividing the growth in used memory by the number of
+ * mappings.  Keys and values are shared between maps, so only the
+ * maps' own structure is counted.
+ * <p>
+ * Run by hand, preferably with a fixed heap:<pre>
+ *   java -Xms512m -Xmx512m org.cougaar.util.ArrayMapBenchmark [maps]
+ * </pre>
+ */
+public class ArrayMapBenchmark {
+
+  private static final int[] SIZES = new int[] { 1, 4, 16, 64 };
+
+  private interface Factory {
+    Map create(int size);
+  }
+
+  private static final String[] NAMES = new String[] {
+    "HashMap", "ArrayMap", "FlatArrayMap", "FlatArrayMap (trimmed)",
+  };
+
+  private static final Factory[] FACTORIES = new Factory[] {
+    new Factory() {
+      public Map create(int size) { return new HashMap(); }
+    },
+    new Factory() {
+      public Map create(int size) { return new ArrayMap(); }
+    },
+    new Factory() {
+      public Map create(int size) { return new FlatArrayMap(); }
+    },
+    new Factory() {
+      public Map create(int size) { return new FlatArrayMap(size); }
+    },
+  };
+
+  public static void main(String[] args) {
+    int mappings = (args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20);
+    String[] keys = new String[64];
+    Integer[] values = new Integer[64];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = ("key" + i).intern();
+      values[i] = new Integer(i);
+    }
+
+    System.out.println("bytes per mapping:");
+    for (int s = 0; s < SIZES.length; s++) {
+      int size = SIZES[s];
+      for (int f = 0; f < FACTORIES.length; f++) {
+        double bytes = footprint(FACTORIES[f], size, mappings / size,
+                                 keys, values);
+        System.out.println(Benchmarks.pad(NAMES[f] + " size=" + size, 48) +
+                           String.format("%12.1f", bytes) + " bytes");
+      }
+    }
+
+    System.out.println("lookups:");
+    for (int s = 0; s < SIZES.length; s++) {
+      final int size = SIZES[s];
+      for (int f = 0; f < FACTORIES.length; f++) {
+        final Map m = FACTORIES[f].create(size);
+        for (int i = 0; i < size; i++) {
+          m.put(keys[i], values[i]);
+        }
+        final String[] k = keys;
+        Benchmarks.time(NAMES[f] + " get size=" + size, 1000000,
+                        new Benchmarks.Op() {
+          public void run(int ops) {
+            Object x = null;
+            for (int i = 0; i < ops; i++) {
+              x = m.get(k[i % size]);
+            }
+            Benchmarks.sink = x;
+          }
+        });
+      }
+    }
+  }
+
+  private static double footprint(Factory factory, int size, int count,
+                                  String[] keys, Integer[] values) {
+    long before = usedMemory();
+    Map[] maps = new Map[count];
+    for (int n = 0; n < count; n++) {
+      Map m = factory.create(size);
+      for (int i = 0; i < size; i++) {
+        m.put(keys[i], values[i]);
+      }
+      maps[n] = m;
+    }
+    long after = usedMemory();
+    Benchmarks.sink = maps;
+    Benchmarks.sink = null;
+    return ((double) (after - before)) / ((double) count * size);
+  }
+
+  private static long usedMemory() {
+    Runtime rt = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      long u = rt.totalMemory() - rt.freeMemory();
+      if (u < used) used = u;
+    }
+    return used;
+  }
+}
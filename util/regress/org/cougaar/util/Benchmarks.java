@@ -0,0 +1,152 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+/**
+ * A minimal timing harness for the hand-run micro-benchmarks in
+ * this directory (the "*Benchmark" classes, which the junit target
+ * does not pick up).
+ * <p>
+ * Each measurement is warmed up first so that the timed rounds run
+ * compiled code, then reports the best of several rounds, either in
+ * nanoseconds per operation or, for multi-threaded runs, as aggregate
+ * operations per second.
+ */
+public final class Benchmarks {
+
+  /** The number of untimed rounds run before measuring. **/
+  private static final int WARMUP_ROUNDS = 3;
+
+  /** The number of timed rounds, of which the best is reported. **/
+  private static final int ROUNDS = 5;
+
+  /** A sink for results, so the JIT cannot discard the work. **/
+  public static volatile Object sink;
+
+  private Benchmarks() {}
+
+  /** An operation to be timed. **/
+  public interface Op {
+    /** Run the operation ops times. **/
+    void run(int ops);
+  }
+
+  /**
+   * Time an operation and print its cost.
+   * @param name the label to print
+   * @param ops the number of operations per round
+   * @param op the operation
+   * @return the best observed nanoseconds per operation
+   */
+  public static double time(String name, int ops, Op op) {
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      op.run(ops);
+    }
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < ROUNDS; i++) {
+      long t0 = System.nanoTime();
+      op.run(ops);
+      long t = System.nanoTime() - t0;
+      if (t < best) best = t;
+    }
+    double perOp = ((double) best) / ops;
+    System.out.println(pad(name, 48) + String.format("%12.1f", perOp) + " ns/op");
+    return perOp;
+  }
+
+  /** An operation run concurrently by several threads. **/
+  public interface ThreadOp {
+    /** Run the operation ops times on behalf of thread number id. **/
+    void run(int id, int ops);
+  }
+
+  /**
+   * Time an operation run by several threads at once and print the
+   * aggregate throughput.
+   * @param name the label to print
+   * @param threads the number of threads
+   * @param ops the number of operations per thread per round
+   * @param op the operation
+   * @return the best observed aggregate operations per second
+   */
+  public static double throughput(String name, int threads, int ops,
+                                  ThreadOp op) {
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      runThreads(threads, ops, op);
+    }
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < ROUNDS; i++) {
+      long t = runThreads(threads, ops, op);
+      if (t < best) best = t;
+    }
+    double perSec = ((double) threads) * ops * 1e9 / best;
+    System.out.println(
+        pad(name + " x" + threads, 48) + String.format("%12.0f", perSec) + " ops/s");
+    return perSec;
+  }
+
+  /** @return the nanoseconds from the start of the first thread to
+   * the end of the last.
+   **/
+  private static long runThreads(int threads, final int ops,
+                                 final ThreadOp op) {
+    final java.util.concurrent.CountDownLatch start =
+      new java.util.concurrent.CountDownLatch(1);
+    Thread[] ts = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      final int id = i;
+      ts[i] = new Thread("bench-" + i) {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          op.run(id, ops);
+        }
+      };
+      ts[i].start();
+    }
+    long t0 = System.nanoTime();
+    start.countDown();
+    for (int i = 0; i < threads; i++) {
+      try {
+        ts[i].join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return System.nanoTime() - t0;
+  }
+
+  static String pad(String s, int width) {
+    StringBuffer buf = new StringBuffer(s);
+    while (buf.length() < width) buf.append(' ');
+    return buf.toString();
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Compares producer/consumer transfer rates of 
+ * {@link ConcurrentCircularQueue}, an <tt>ArrayBlockingQueue</tt> and
+ * a {@link CircularQueue} guarded by its monitor, for 1 producer and
+ * 1 consumer (1P1C), 4P4C and 16P1C.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.util.ConcurrentCircularQueueBenchmark [capacity]
+ * </pre>
+ */
+public class ConcurrentCircularQueueBenchmark {
+
+  private static final int[][] CONFIGS = new int[][] {
+    { 1, 1 }, { 4, 4 }, { 16, 1 },
+  };
+
+  private static final int TRANSFERS = 400000;
+
+  public static void main(String[] args) {
+    final int capacity = (args.length > 0 ? Integer.parseInt(args[0]) : 1024);
+    for (int c = 0; c < CONFIGS.length; c++) {
+      int producers = CONFIGS[c][0];
+      int consumers = CONFIGS[c][1];
+      String config = producers + "P" + consumers + "C ";
+      run(config + "ConcurrentCircularQueue", producers, consumers,
+          new ConcurrentCircularQueue<Object>(capacity));
+      run(config + "ArrayBlockingQueue", producers, consumers,
+          new ArrayBlockingQueue<Object>(capacity));
+      run(config + "synchronized CircularQueue", producers, consumers,
+          new SynchronizedQueue(capacity));
+    }
+  }
+
+  /** A bounded CircularQueue, locked on every call, as callers do now. **/
+  private static class SynchronizedQueue 
+    extends java.util.AbstractQueue<Object> {
+    private final CircularQueue<Object> q;
+    private final int capacity;
+    SynchronizedQueue(int capacity) {
+      this.q = new CircularQueue<Object>(capacity);
+      this.capacity = capacity;
+    }
+    public synchronized boolean offer(Object o) {
+      if (q.size() >= capacity) return false;
+      return q.add(o);
+    }
+    public synchronized Object poll() {
+      return q.next();
+    }
+    public synchronized Object peek() {
+      return q.peek();
+    }
+    @Override
+    public synchronized int size() {
+      return q.size();
+    }
+    @Override
+    public java.util.Iterator<Object> iterator() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static void run(String name, final int producers,
+                          final int consumers, final Queue<Object> q) {
+    final Object item = new Object();
+    Benchmarks.time(name, TRANSFERS, new Benchmarks.Op() {
+      public void run(int ops) {
+        Thread[] ts = new Thread[producers + consumers];
+        final int perProducer = ops / producers;
+        final int total = perProducer * producers;
+        final java.util.concurrent.atomic.AtomicInteger taken =
+          new java.util.concurrent.atomic.AtomicInteger();
+        for (int p = 0; p < producers; p++) {
+          ts[p] = new Thread() {
+            @Override
+            public void run() {
+              for (int i = 0; i < perProducer; i++) {
+                while (!q.offer(item)) {
+                  Thread.yield();
+                }
+              }
+            }
+          };
+        }
+        for (int c = 0; c < consumers; c++) {
+          ts[producers + c] = new Thread() {
+            @Override
+            public void run() {
+              while (taken.get() < total) {
+                if (q.poll() != null) {
+                  taken.incrementAndGet();
+                } else {
+                  Thread.yield();
+                }
+              }
+            }
+          };
+        }
+        for (int i = 0; i < ts.length; i++) {
+          ts[i].start();
+        }
+        for (int i = 0; i < ts.length; i++) {
+          try {
+            ts[i].join();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+/**
+ * Compares cache-hit throughput of {@link ConcurrentLRUCache} and an
+ * {@link LRUCache} guarded by its monitor, from 1 to 32 threads.
+ * <p>
+ * Run by hand, on a machine with several cores:<pre>
+ *   java org.cougaar.util.ConcurrentLRUCacheBenchmark [size]
+ * </pre>
+ */
+public class ConcurrentLRUCacheBenchmark {
+
+  public static void main(String[] args) {
+    final int size = (args.length > 0 ? Integer.parseInt(args[0]) : 10000);
+    final Integer[] keys = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = new Integer(i);
+    }
+    final ConcurrentLRUCache concurrent = new ConcurrentLRUCache(size);
+    final LRUCache locked = new LRUCache(size);
+    for (int i = 0; i < size; i++) {
+      concurrent.put(keys[i], keys[i]);
+      locked.put(keys[i], keys[i]);
+    }
+
+    int[] threads = new int[] { 1, 2, 4, 8, 16, 32 };
+    for (int t = 0; t < threads.length; t++) {
+      Benchmarks.throughput("ConcurrentLRUCache hits", threads[t], 200000,
+                            new Benchmarks.ThreadOp() {
+        public void run(int id, int ops) {
+          int x = id * 7919;
+          Object o = null;
+          for (int i = 0; i < ops; i++) {
+            x = x * 1103515245 + 12345;
+            o = concurrent.get(keys[(x >>> 1) % size]);
+          }
+          Benchmarks.sink = o;
+        }
+      });
+    }
+    for (int t = 0; t < threads.length; t++) {
+      Benchmarks.throughput("synchronized LRUCache hits", threads[t], 200000,
+                            new Benchmarks.ThreadOp() {
+        public void run(int id, int ops) {
+          int x = id * 7919;
+          Object o = null;
+          for (int i = 0; i < ops; i++) {
+            x = x * 1103515245 + 12345;
+            synchronized (locked) {
+              o = locked.get(keys[(x >>> 1) % size]);
+            }
+          }
+          Benchmarks.sink = o;
+        }
+      });
+    }
+    System.out.println(concurrent);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+
+/**
+ * Measures {@link FastString} serialization throughput with one
+ * <tt>ObjectOutputStream</tt> per thread, against a copy of the
+ * earlier implementation that shared one locked buffer and wrote a
+ * byte at a time.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.util.FastStringBenchmark [length]
+ * </pre>
+ * Scaling past one thread needs a multi-core host.
+ */
+public class FastStringBenchmark {
+
+  private static final int[] THREADS = new int[] { 1, 4, 16 };
+
+  private static final int OPS = 20000;
+
+  public static void main(String[] args) {
+    int length = (args.length > 0 ? Integer.parseInt(args[0]) : 40);
+    StringBuffer sb = new StringBuffer(length);
+    for (int i = 0; i < length; i++) {
+      sb.append((char) ('a' + (i % 26)));
+    }
+    final String s = sb.toString();
+    for (int t = 0; t < THREADS.length; t++) {
+      run("FastString", THREADS[t], new Factory() {
+        public Externalizable create() { return new FastString(s); }
+      });
+      run("legacy FastString", THREADS[t], new Factory() {
+        public Externalizable create() { return new LegacyFastString(s); }
+      });
+    }
+  }
+
+  private interface Factory {
+    Externalizable create();
+  }
+
+  private static void run(String name, int threads, final Factory f) {
+    Benchmarks.throughput(name, threads, OPS, new Benchmarks.ThreadOp() {
+      public void run(int id, int ops) {
+        try {
+          ByteArrayOutputStream bos = new ByteArrayOutputStream(1 << 16);
+          ObjectOutputStream oos = new ObjectOutputStream(bos);
+          Externalizable x = f.create();
+          for (int i = 0; i < ops; i++) {
+            x.writeExternal(oos);
+            if ((i & 1023) == 1023) {
+              oos.flush();
+              bos.reset();
+            }
+          }
+          oos.close();
+          Benchmarks.sink = bos;
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+
+  /** The writer as it was: one static locked buffer, one write per char **/
+  private static class LegacyFastString implements Externalizable {
+    private static final char[] dstbuf = new char[Short.MAX_VALUE];
+    private final String string;
+    LegacyFastString(String s) { string = s; }
+    public void readExternal(ObjectInput in) {
+      throw new UnsupportedOperationException();
+    }
+    public void writeExternal(ObjectOutput out) throws IOException {
+      int l = string.length();
+      out.writeShort(l);
+      char[] dst = dstbuf;
+      synchronized (dst) {
+        string.getChars(0, l, dst, 0);
+        for (int i=0; i<l; i++) {
+          out.write(dst[i]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+/**
+ * Times {@link LRUExpireMap#trim} on a large map where only a small
+ * fraction of the entries has expired.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.util.LRUExpireMapBenchmark [size]
+ * </pre>
+ */
+public class LRUExpireMapBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    final int size = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+    final LRUExpireMap.Config config = new LRUExpireMap.Config() {
+      public int initialSize() { return size; }
+      public int maxSize() { return Integer.MAX_VALUE; }
+      public long minBypassTime() { return 0; }
+    };
+    final LRUExpireMap m = new LRUExpireMap(config, null);
+    long later = System.currentTimeMillis() + 3600000;
+    for (int i = 0; i < size; i++) {
+      m.put(new Integer(i), "v", later);
+    }
+    // each round expires 100 entries, then times the trim alone
+    int next = size;
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < 20; round++) {
+      long soon = System.currentTimeMillis() + 2;
+      for (int i = 0; i < 100; i++) {
+        m.put(new Integer(next++), "v", soon);
+      }
+      while (System.currentTimeMillis() <= soon) {
+        Thread.yield();
+      }
+      long t0 = System.nanoTime();
+      m.trim();
+      long t = System.nanoTime() - t0;
+      if (m.size() != size) throw new IllegalStateException();
+      if (t < best) best = t;
+    }
+    System.out.println(Benchmarks.pad("trim 100 expired of " + size, 48) +
+                       String.format("%12.1f", best / 1e3) + " us");
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compares {@link LongHashSet}, {@link IntHashSet} and
+ * {@link OpenIdentityHashSet} with a boxed <code>HashSet</code> and
+ * {@link IdentityHashSet}:  the time to fill a set, to look up
+ * present and absent elements, and the heap used per element.
+ * <p>
+ * Run by hand, preferably with a fixed heap:<pre>
+ *   java -Xms1g -Xmx1g org.cougaar.util.PrimitiveHashSetBenchmark [size]
+ * </pre>
+ */
+public class PrimitiveHashSetBenchmark {
+
+  public static void main(String[] args) {
+    final int size = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+    // UID-like values:  a shared prefix and a sequence
+    final long[] longs = new long[size];
+    final int[] ints = new int[size];
+    final Object[] objs = new Object[size];
+    for (int i = 0; i < size; i++) {
+      longs[i] = (0x5EEDL << 32) + i * 3;
+      ints[i] = i * 3;
+      objs[i] = new Object();
+    }
+    // look up in a scrambled order, as lookups by id usually are
+    final int[] probe = new int[size];
+    java.util.Random r = new java.util.Random(13);
+    for (int i = 0; i < size; i++) {
+      probe[i] = r.nextInt(size);
+    }
+
+    long before = usedMemory();
+    final LongHashSet lhs = new LongHashSet();
+    Benchmarks.time("LongHashSet add", size, new Benchmarks.Op() {
+      public void run(int ops) {
+        lhs.clear();
+        for (int i = 0; i < ops; i++) lhs.add(longs[i]);
+      }
+    });
+    report("LongHashSet", before, size);
+    before = usedMemory();
+    final Set boxedLongs = new HashSet();
+    Benchmarks.time("HashSet<Long> add", size, new Benchmarks.Op() {
+      public void run(int ops) {
+        boxedLongs.clear();
+        for (int i = 0; i < ops; i++) boxedLongs.add(new Long(longs[i]));
+      }
+    });
+    report("HashSet<Long>", before, size);
+    Benchmarks.time("LongHashSet contains", size, new Benchmarks.Op() {
+      public void run(int ops) {
+        int n = 0;
+        for (int i = 0; i < ops; i++) {
+          // every third value is present
+          if (lhs.contains(longs[0] + probe[i])) n++;
+        }
+        Benchmarks.sink = new Integer(n);
+      }
+    });
+    Benchmarks.time("HashSet<Long> contains", size, new Benchmarks.Op() {
+      public void run(int ops) {
+        int n = 0;
+        for (int i = 0; i < ops; i++) {
+          if (boxedLongs.contains(new Long(longs[0] + probe[i]))) n++;
+        }
+        Benchmarks.sink = new Integer(n);
+      }
+    });
+    Benchmarks.sink = new Object[] { lhs, boxedLongs };
+    Benchmarks.sink = null;
+
+    before = usedMemory();
+    final IntHashSet ihs = new IntHashSet();
+    Benchmarks.time("IntHashSet add", size, new Benchmarks.Op() {
+      public void run(int ops) {
+        ihs.clear();
+        for (int i = 0; i < ops; i++) ihs.add(ints[i]);
+      }
+    });
+    report("IntHashSet", before, size);
+    before = usedMemory();
+    final Set boxedInts = new HashSet();
+    Benchmarks.time("HashSet<Integer> add", size, new Benchmarks.Op() {
+      public void run(int ops) {
+        boxedInts.clear();
+        for (int i = 0; i < ops; i++) boxedInts.add(new Integer(ints[i]));
+      }
+    });
+    report("HashSet<Integer>", before, size);
+    Benchmarks.time("IntHashSet contains", size, new Benchmarks.Op() {
+      public void run(int ops) {
+        int n = 0;
+        for (int i = 0; i < ops; i++) {
+          if (ihs.contains(probe[i])) n++;
+        }
+        Benchmarks.sink = new Integer(n);
+      }
+    });
+    Benchmarks.time("HashSet<Integer> contains", size, new Benchmarks.Op() {
+      public void run(int ops) {
+        int n = 0;
+        for (int i = 0; i < ops; i++) {
+          if (boxedInts.contains(new Integer(probe[i]))) n++;
+        }
+        Benchmarks.sink = new Integer(n);
+      }
+    });
+    Benchmarks.sink = new Object[] { ihs, boxedInts };
+    Benchmarks.sink = null;
+
+    before = usedMemory();
+    final OpenIdentityHashSet oihs = new OpenIdentityHashSet();
+    Benchmarks.time("OpenIdentityHashSet add", size, new Benchmarks.Op() {
+      public void run(int ops) {
+        oihs.clear();
+        for (int i = 0; i < ops; i++) oihs.add(objs[i]);
+      }
+    });
+    report("OpenIdentityHashSet", before, size);
+    before = usedMemory();
+    final IdentityHashSet ihs2 = new IdentityHashSet();
+    Benchmarks.time("IdentityHashSet add", size, new Benchmarks.Op() {
+      public void run(int ops) {
+        ihs2.clear();
+        for (int i = 0; i < ops; i++) ihs2.add(objs[i]);
+      }
+    });
+    report("IdentityHashSet", before, size);
+    Benchmarks.time("OpenIdentityHashSet contains", size, new Benchmarks.Op() {
+      public void run(int ops) {
+        int n = 0;
+        for (int i = 0; i < ops; i++) {
+          if (oihs.contains(objs[probe[i]])) n++;
+        }
+        Benchmarks.sink = new Integer(n);
+      }
+    });
+    Benchmarks.time("IdentityHashSet contains", size, new Benchmarks.Op() {
+      public void run(int ops) {
+        int n = 0;
+        for (int i = 0; i < ops; i++) {
+          if (ihs2.contains(objs[probe[i]])) n++;
+        }
+        Benchmarks.sink = new Integer(n);
+      }
+    });
+    Benchmarks.sink = new Object[] { oihs, ihs2 };
+  }
+
+  private static void report(String name, long before, int size) {
+    double bytes = ((double) (usedMemory() - before)) / size;
+    System.out.println(Benchmarks.pad(name + " heap", 48) +
+                       String.format("%12.1f", bytes) + " bytes/element");
+  }
+
+  private static long usedMemory() {
+    Runtime rt = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      long u = rt.totalMemory() - rt.freeMemory();
+      if (u < used) used = u;
+    }
+    return used;
+  }
+}
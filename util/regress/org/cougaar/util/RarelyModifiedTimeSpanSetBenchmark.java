@@ -0,0 +1,95 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+/**
+ * Compares reader scaling of {@link SynchronizedTimeSpanSet} and
+ * {@link RarelyModifiedTimeSpanSet}, with and without an occasional
+ * writer.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.util.RarelyModifiedTimeSpanSetBenchmark [size]
+ * </pre>
+ */
+public class RarelyModifiedTimeSpanSetBenchmark {
+
+  public static void main(String[] args) {
+    int size = (args.length > 0 ? Integer.parseInt(args[0]) : 10000);
+    java.util.List spans = new java.util.ArrayList(size);
+    for (int i = 0; i < size; i++) {
+      spans.add(new TimeSpan.Span(i * 10L, i * 10L + 5 + (i % 7)));
+    }
+    final long range = size * 10L;
+
+    TimeSpanSet[] sets = new TimeSpanSet[] {
+      new SynchronizedTimeSpanSet(spans),
+      new RarelyModifiedTimeSpanSet(spans),
+    };
+    int[] threads = new int[] { 1, 2, 4, 8, 16 };
+    for (int n = 0; n < sets.length; n++) {
+      final TimeSpanSet set = sets[n];
+      String name = set.getClass().getName();
+      name = name.substring(name.lastIndexOf('.') + 1);
+      for (int t = 0; t < threads.length; t++) {
+        Benchmarks.throughput(name + " readers", threads[t], 200000,
+                              new Benchmarks.ThreadOp() {
+          public void run(int id, int ops) {
+            long x = id * 7919L;
+            for (int i = 0; i < ops; i++) {
+              x = (x * 6364136223846793005L + 1442695040888963407L);
+              long time = (x >>> 1) % range;
+              Benchmarks.sink = set.getMinimalIntersectingElement(time);
+              if (set.size() == 0) throw new IllegalStateException();
+            }
+          }
+        });
+      }
+      // thread 0 writes now and then while the rest read
+      for (int t = 1; t < threads.length; t++) {
+        Benchmarks.throughput(name + " readers+writer", threads[t], 200000,
+                              new Benchmarks.ThreadOp() {
+          public void run(int id, int ops) {
+            long x = id * 7919L;
+            TimeSpan extra = new TimeSpan.Span(range / 2, range / 2 + 3);
+            for (int i = 0; i < ops; i++) {
+              if (id == 0) {
+                if (i % 1000 == 0) {
+                  set.add(extra);
+                  set.remove(extra);
+                }
+                continue;
+              }
+              x = (x * 6364136223846793005L + 1442695040888963407L);
+              long time = (x >>> 1) % range;
+              Benchmarks.sink = set.intersectingSet(time);
+            }
+          }
+        });
+      }
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+/**
+ * Compares {@link StringPool} against <code>String.intern()</code>:
+ * lookup throughput from 1, 4 and 16 threads over a mix of repeated
+ * names and one-off identifiers, and the heap retained after 
+ * canonicalizing many one-off strings.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.util.StringPoolBenchmark [poolSize]
+ * </pre>
+ * Scaling past one thread needs a multi-core host.  On JVMs that keep
+ * interned strings outside the heap, the retained size for 
+ * <code>String.intern()</code> understates its real footprint.
+ */
+public class StringPoolBenchmark {
+
+  private static final int[] THREADS = new int[] { 1, 4, 16 };
+
+  private static final int OPS = 200000;
+
+  private static final int HOT = 2048;
+
+  private static final int ONE_OFF = 200000;
+
+  private static final String[] hot = new String[HOT];
+  static {
+    for (int i = 0; i < HOT; i++) {
+      hot[i] = "org.cougaar.plugin.Name" + i;
+    }
+  }
+
+  private interface Canonicalizer {
+    String canonical(String s);
+  }
+
+  public static void main(String[] args) {
+    int poolSize = (args.length > 0 ? Integer.parseInt(args[0]) : 8192);
+    final StringPool pool = new StringPool(poolSize);
+    Canonicalizer pooled = new Canonicalizer() {
+      public String canonical(String s) { return pool.intern(s); }
+    };
+    Canonicalizer interned = new Canonicalizer() {
+      public String canonical(String s) { return s.intern(); }
+    };
+
+    for (int t = 0; t < THREADS.length; t++) {
+      throughput("StringPool", THREADS[t], pooled);
+      throughput("String.intern", THREADS[t], interned);
+    }
+    System.out.println("StringPool hit rate " + 
+                       String.format("%.3f", pool.getHitRate()));
+
+    pool.clear();
+    retained("StringPool", pooled, "p");
+    retained("String.intern", interned, "i");
+    System.out.println(pool);
+  }
+
+  /** Three of every four lookups are for hot names, the rest are new **/
+  private static void throughput(String name, int threads,
+                                 final Canonicalizer c) {
+    Benchmarks.throughput(name, threads, OPS, new Benchmarks.ThreadOp() {
+      private int round;
+      public void run(int id, int ops) {
+        String prefix = "id-" + id + "-" + (round++) + "-";
+        Object x = null;
+        for (int i = 0; i < ops; i++) {
+          if ((i & 3) != 0) {
+            // a fresh, equal copy, as if just read from a stream
+            x = c.canonical(new String(hot[(i * 31) & (HOT - 1)]));
+          } else {
+            x = c.canonical(prefix + i);
+          }
+        }
+        Benchmarks.sink = x;
+      }
+    });
+  }
+
+  private static void retained(String name, Canonicalizer c, String tag) {
+    long before = usedMemory();
+    for (int i = 0; i < ONE_OFF; i++) {
+      Benchmarks.sink = c.canonical("one-off-" + tag + "-" + i);
+    }
+    Benchmarks.sink = null;
+    long after = usedMemory();
+    System.out.println(
+        Benchmarks.pad(name + " retained after " + ONE_OFF + " one-offs", 48) +
+        String.format("%12d", (after - before) / 1024) + " KB");
+  }
+
+  private static long usedMemory() {
+    Runtime rt = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      long u = rt.totalMemory() - rt.freeMemory();
+      if (u < used) used = u;
+    }
+    return used;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures {@link SyncTriggerModelImpl#trigger} throughput with 1, 4
+ * and 16 threads triggering one model whose client runs on a single
+ * registry thread, and reports how many runs the triggers were
+ * coalesced into.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.util.SyncTriggerModelBenchmark [-profile]
+ * </pre>
+ * With "-profile" the {@link TriggerProfiler} is enabled, to measure
+ * its overhead, and its report is printed at the end.
+ * Scaling past one thread needs a multi-core host.
+ */
+public class SyncTriggerModelBenchmark {
+
+  private static final int[] THREADS = new int[] { 1, 4, 16 };
+
+  private static final int OPS = 1000000;
+
+  public static void main(String[] args) {
+    boolean profile = (args.length > 0 && "-profile".equals(args[0]));
+    TriggerProfiler.setEnabled(profile);
+    ExecutorService runner = Executors.newSingleThreadExecutor();
+    final AtomicLong runs = new AtomicLong();
+    Trigger client = new Trigger() {
+      public void trigger() {
+        runs.incrementAndGet();
+      }
+    };
+    final SyncTriggerModelImpl model = new SyncTriggerModelImpl(
+        new ExecutorTriggerRegistry(runner), client);
+    model.start();
+    for (int t = 0; t < THREADS.length; t++) {
+      runs.set(0);
+      Benchmarks.throughput("trigger", THREADS[t], OPS,
+                            new Benchmarks.ThreadOp() {
+        public void run(int id, int ops) {
+          for (int i = 0; i < ops; i++) {
+            model.trigger();
+          }
+        }
+      });
+      System.out.println("  runs: " + runs.get());
+    }
+    model.halt();
+    runner.shutdown();
+    if (profile) {
+      System.out.println(TriggerProfiler.getReport());
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TestArrayMap extends TestCase {
+
+  public void test_small() {
+    ArrayMap am = new ArrayMap();
+    assertNull(am.put("a", "1"));
+    assertNull(am.put("b", "2"));
+    assertNull(am.put(null, "3"));
+    assertEquals("1", am.put("a", "4"));
+    assertEquals("{a=4, b=2, null=3}", am.toString());
+    assertEquals("3", am.get(null));
+    assertTrue(am.containsKey(null));
+    assertEquals("2", am.remove("b"));
+    assertEquals("{a=4, null=3}", am.toString());
+  }
+
+  public void test_indexed() {
+    // compare against a LinkedHashMap, which also keeps insertion order
+    for (int t = 1; t <= 32; t <<= 1) {
+      ArrayMap am = new ArrayMap(10, t);
+      Map lhm = new LinkedHashMap();
+      Random r = new Random(t);
+      for (int i = 0; i < 2000; i++) {
+        Integer key = new Integer(r.nextInt(200));
+        int op = r.nextInt(10);
+        if (op < 6) {
+          Object value = new Integer(i);
+          assertEquals(lhm.put(key, value), am.put(key, value));
+        } else if (op < 8) {
+          assertEquals(lhm.remove(key), am.remove(key));
+        } else if (op < 9) {
+          // remove through an iterator
+          Iterator it = am.keySet().iterator();
+          Iterator lit = lhm.keySet().iterator();
+          while (it.hasNext()) {
+            Object k = it.next();
+            assertEquals(lit.next(), k);
+            if (key.equals(k)) {
+              it.remove();
+              lit.remove();
+            }
+          }
+        } else {
+          assertEquals(lhm.get(key), am.get(key));
+          assertEquals(lhm.containsKey(key), am.containsKey(key));
+        }
+        assertEquals(lhm.size(), am.size());
+      }
+      assertEquals(new ArrayList(lhm.entrySet()).toString(), am.toString().replace('{', '[').replace('}', ']'));
+      // the positional API follows insertion order
+      int i = 0;
+      for (Iterator it = lhm.entrySet().iterator(); it.hasNext(); i++) {
+        Map.Entry me = (Map.Entry)it.next();
+        assertEquals(me.getKey(), am.getKey(i));
+        assertEquals(me.getValue(), am.getValue(i));
+        assertTrue(am.entrySet().contains(me));
+      }
+      for (int k = 0; k < 200; k++) {
+        Integer key = new Integer(k);
+        assertEquals(lhm.get(key), am.get(key));
+      }
+    }
+  }
+
+  public void test_clone() throws Exception {
+    ArrayMap am = new ArrayMap(10, 2);
+    for (int i = 0; i < 10; i++) {
+      am.put("k"+i, new Integer(i));
+    }
+    ArrayMap dup = (ArrayMap)am.clone();
+    dup.put("k3", "x");
+    dup.remove("k4");
+    dup.put("k10", "y");
+    assertEquals(new Integer(3), am.get("k3"));
+    assertEquals(new Integer(4), am.get("k4"));
+    assertFalse(am.containsKey("k10"));
+    assertEquals(10, am.size());
+    assertEquals(10, dup.size());
+    assertEquals("x", dup.get("k3"));
+    assertNull(dup.get("k4"));
+    assertEquals("k10", dup.getKey(9));
+    assertEquals(10, dup.keySet().size());
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(baos);
+    oos.writeObject(dup);
+    oos.close();
+    ObjectInputStream ois = new ObjectInputStream(
+        new ByteArrayInputStream(baos.toByteArray()));
+    ArrayMap copy = (ArrayMap)ois.readObject();
+    ois.close();
+    assertEquals(dup.toString(), copy.toString());
+    List keys = new ArrayList(dup.keySet());
+    for (int i = 0; i < keys.size(); i++) {
+      assertEquals(dup.get(keys.get(i)), copy.get(keys.get(i)));
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class TestBitSet2D extends TestCase {
+
+  private static Long point(int x, int y) {
+    return new Long((((long) x) << 32) | y);
+  }
+
+  private static void setRef(Set ref, int x0, int y0, int x1, int y1,
+                             boolean value) {
+    for (int x = x0; x < x1; x++) {
+      for (int y = y0; y < y1; y++) {
+        if (value) {
+          ref.add(point(x, y));
+        } else {
+          ref.remove(point(x, y));
+        }
+      }
+    }
+  }
+
+  private static void assertMatches(Set ref, BitSet2D bs, int w, int h) {
+    for (int x = 0; x < w; x++) {
+      for (int y = 0; y < h; y++) {
+        assertEquals("("+x+", "+y+")", ref.contains(point(x, y)), bs.get(x, y));
+      }
+    }
+    assertEquals(ref.size(), bs.cardinality());
+  }
+
+  public void test_points() {
+    BitSet2D bs = new BitSet2D();
+    assertFalse(bs.get(1000, 100000));
+    assertTrue(bs.isEmpty());
+    bs.set(3, 5);
+    // growing in y keeps the old bits
+    bs.set(3, 100000);
+    bs.set(70000, 2);
+    assertTrue(bs.get(3, 5));
+    assertTrue(bs.get(3, 100000));
+    assertTrue(bs.get(70000, 2));
+    assertFalse(bs.get(5, 3));
+    assertEquals(3, bs.cardinality());
+    bs.clear(3, 5);
+    bs.clear(3, 100000);
+    bs.clear(70000, 2);
+    bs.clear(9, 9);
+    assertTrue(bs.isEmpty());
+    try {
+      bs.set(-1, 0);
+      fail("allows negative index");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  public void test_ranges() {
+    int w = 200;
+    int h = 150;
+    BitSet2D bs = new BitSet2D(10);
+    Set ref = new HashSet();
+    Random r = new Random(11);
+    for (int i = 0; i < 300; i++) {
+      int x0 = r.nextInt(w);
+      int y0 = r.nextInt(h);
+      int x1 = x0 + r.nextInt(w - x0 + 1);
+      int y1 = y0 + r.nextInt(h - y0 + 1);
+      boolean value = r.nextBoolean();
+      switch (r.nextInt(3)) {
+        case 0:
+          if (value) bs.setRow(y0, x0, x1); else bs.clearRow(y0, x0, x1);
+          setRef(ref, x0, y0, x1, y0 + 1, value);
+          break;
+        case 1:
+          if (value) bs.setColumn(x0, y0, y1); else bs.clearColumn(x0, y0, y1);
+          setRef(ref, x0, y0, x0 + 1, y1, value);
+          break;
+        default:
+          if (value) bs.set(x0, y0, x1, y1); else bs.clear(x0, y0, x1, y1);
+          setRef(ref, x0, y0, x1, y1, value);
+      }
+      if (i % 50 == 0) {
+        assertMatches(ref, bs, w, h);
+      }
+      int n = 0;
+      for (int x = x0; x < x1; x++) {
+        for (int y = y0; y < y1; y++) {
+          if (ref.contains(point(x, y))) n++;
+        }
+      }
+      assertEquals(n, bs.cardinality(x0, y0, x1, y1));
+    }
+    assertMatches(ref, bs, w, h);
+    bs.clear(0, 0, w, h);
+    assertTrue(bs.isEmpty());
+  }
+
+  public void test_logic() {
+    BitSet2D a = new BitSet2D();
+    BitSet2D b = new BitSet2D();
+    a.set(0, 0, 100, 100);
+    b.set(50, 50, 200, 200);
+    BitSet2D or = new BitSet2D();
+    or.or(a);
+    or.or(b);
+    assertEquals(10000 + 22500 - 2500, or.cardinality());
+    // or copies tiles, so later changes to b don't show through
+    b.clear(150, 150);
+    assertTrue(or.get(150, 150));
+
+    BitSet2D and = new BitSet2D();
+    and.or(a);
+    and.and(b);
+    assertEquals(2500, and.cardinality());
+    assertEquals(2500, and.cardinality(50, 50, 100, 100));
+    assertFalse(and.get(49, 50));
+
+    a.andNot(b);
+    assertEquals(10000 - 2500, a.cardinality());
+    assertFalse(a.get(60, 60));
+    assertTrue(a.get(10, 60));
+  }
+}
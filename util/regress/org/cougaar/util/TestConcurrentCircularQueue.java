@@ -0,0 +1,149 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2004 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TestConcurrentCircularQueue extends TestCase {
+  public void test_toString0() {
+    // capacity rounds up to a power of two
+    assertEquals("{ConcurrentCircularQueue 0/4}",
+                 new ConcurrentCircularQueue<Object>(3).toString());
+  }
+
+  public void test_offer_poll() {
+    ConcurrentCircularQueue<Integer> q = new ConcurrentCircularQueue<Integer>(4);
+    assertNull(q.peek());
+    assertTrue(q.isEmpty());
+    for (int i = 1; i <= 4; i++) {
+      assertTrue(q.offer(i));
+    }
+    assertFalse(q.offer(5));
+    assertEquals(4, q.size());
+    assertEquals(1, q.peek().intValue());
+    assertEquals(1, q.poll().intValue());
+    assertTrue(q.offer(5));
+    List<Integer> l = new ArrayList<Integer>(q);
+    assertEquals("[2, 3, 4, 5]", l.toString());
+    assertEquals(2, q.next().intValue());
+    assertEquals(3, q.poll().intValue());
+    assertEquals(4, q.poll().intValue());
+    assertEquals(5, q.poll().intValue());
+    assertNull(q.poll());
+    try {
+      q.offer(null);
+      fail("allows null");
+    } catch (NullPointerException e) {
+      // expected
+    }
+  }
+
+  public void test_overwrite() {
+    ConcurrentCircularQueue<Integer> q = 
+      new ConcurrentCircularQueue<Integer>(4, true);
+    for (int i = 1; i <= 10; i++) {
+      assertTrue(q.offer(i));
+    }
+    // keeps the most recent
+    assertEquals(4, q.size());
+    assertEquals("[7, 8, 9, 10]", new ArrayList<Integer>(q).toString());
+  }
+
+  public void test_drainTo() {
+    ConcurrentCircularQueue<Integer> q = new ConcurrentCircularQueue<Integer>(8);
+    for (int i = 1; i <= 6; i++) {
+      q.offer(i);
+    }
+    List<Integer> l = new ArrayList<Integer>();
+    assertEquals(4, q.drainTo(l, 4));
+    assertEquals("[1, 2, 3, 4]", l.toString());
+    assertEquals(2, q.drainTo(l));
+    assertEquals(6, l.size());
+    assertTrue(q.isEmpty());
+    assertEquals(0, q.drainTo(l, 4));
+  }
+
+  public void test_concurrent() throws Exception {
+    final ConcurrentCircularQueue<Integer> q = 
+      new ConcurrentCircularQueue<Integer>(16);
+    final int producers = 4;
+    final int consumers = 4;
+    final int perProducer = 20000;
+    final int[] counts = new int[producers * perProducer];
+    Thread[] threads = new Thread[producers + consumers];
+    for (int p = 0; p < producers; p++) {
+      final int base = p * perProducer;
+      threads[p] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < perProducer; i++) {
+            while (!q.offer(base + i)) {
+              Thread.yield();
+            }
+          }
+        }
+      };
+    }
+    final int[] taken = new int[1];
+    for (int c = 0; c < consumers; c++) {
+      threads[producers + c] = new Thread() {
+        @Override
+        public void run() {
+          while (true) {
+            synchronized (taken) {
+              if (taken[0] == counts.length) {
+                return;
+              }
+            }
+            Integer x = q.poll();
+            if (x == null) {
+              Thread.yield();
+              continue;
+            }
+            synchronized (taken) {
+              counts[x.intValue()]++;
+              taken[0]++;
+            }
+          }
+        }
+      };
+    }
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].start();
+    }
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join(60000);
+    }
+    for (int i = 0; i < counts.length; i++) {
+      assertEquals("element "+i, 1, counts[i]);
+    }
+    assertTrue(q.isEmpty());
+  }
+}
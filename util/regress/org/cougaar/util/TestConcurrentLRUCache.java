@@ -0,0 +1,168 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TestConcurrentLRUCache extends TestCase {
+
+  private static class Recorder implements LRUExpireMap.Watcher {
+    final List expired = new ArrayList();
+    final List evicted = new ArrayList();
+    public synchronized void noteExpire(
+        Object key, Object value, long putTime, long expireTime) {
+      expired.add(key);
+    }
+    public synchronized void noteEvict(
+        Object key, Object value, long putTime, long expireTime) {
+      evicted.add(key);
+    }
+    public void noteTrim(int nfreed, int origSize) {
+    }
+  }
+
+  private static LRUExpireMap.Config config(final int maxSize) {
+    return new LRUExpireMap.Config() {
+      public int initialSize() { return 16; }
+      public int maxSize() { return maxSize; }
+      public long minBypassTime() { return 0; }
+    };
+  }
+
+  public void test_basic() {
+    ConcurrentLRUCache c = new ConcurrentLRUCache(10);
+    assertNull(c.get("a"));
+    assertNull(c.put("a", "1"));
+    assertEquals("1", c.put("a", "2"));
+    assertEquals("2", c.get("a"));
+    assertEquals(Long.MAX_VALUE, c.getExpirationTime("a"));
+    assertEquals(-1, c.getExpirationTime("b"));
+    assertEquals(1, c.size());
+    assertEquals(1, c.getHitCount());
+    assertEquals(1, c.getMissCount());
+    assertEquals("2", c.remove("a"));
+    assertTrue(c.isEmpty());
+    try {
+      c.put(null, "x");
+      fail("allows null key");
+    } catch (NullPointerException e) {
+      // expected
+    }
+  }
+
+  public void test_evict() {
+    // one segment, so the clock order is exact
+    Recorder r = new Recorder();
+    ConcurrentLRUCache c = new ConcurrentLRUCache(config(3), r, 1);
+    c.put("a", "1");
+    c.put("b", "2");
+    c.put("c", "3");
+    // a and c get a second chance
+    c.get("a");
+    c.get("c");
+    c.put("d", "4");
+    assertEquals("[b]", r.evicted.toString());
+    assertEquals(3, c.size());
+    assertEquals("1", c.get("a"));
+    assertEquals(1, c.getEvictionCount());
+
+    // stays bounded under many segments too
+    ConcurrentLRUCache big = new ConcurrentLRUCache(config(100), null, 8);
+    for (int i = 0; i < 1000; i++) {
+      big.put(new Integer(i), "v");
+      assertTrue(big.size() <= 100);
+    }
+    assertEquals(900, big.getEvictionCount());
+    big.clear();
+    assertEquals(0, big.size());
+
+    // tiny caches clamp the segment count
+    ConcurrentLRUCache tiny = new ConcurrentLRUCache(config(3), null, 16);
+    for (int i = 0; i < 10; i++) {
+      tiny.put(new Integer(i), "v");
+    }
+    assertTrue(tiny.size() <= 3);
+  }
+
+  public void test_expire() throws Exception {
+    Recorder r = new Recorder();
+    ConcurrentLRUCache c = new ConcurrentLRUCache(config(100), r);
+    long now = System.currentTimeMillis();
+    c.put("a", "1", now + 50);
+    c.put("b", "2", now + 50);
+    c.put("c", "3", now + 600000);
+    assertEquals("1", c.get("a"));
+    assertNull(c.put("x", "y", now - 1));
+    assertNull(c.get("x"));
+    Thread.sleep(100);
+    assertNull(c.get("a"));
+    assertEquals(-1, c.getExpirationTime("b"));
+    assertTrue(c.trim());
+    assertEquals(1, c.size());
+    assertEquals("3", c.get("c"));
+    assertEquals(2, c.getExpirationCount());
+    assertEquals(2, r.expired.size());
+    assertFalse(c.trim());
+  }
+
+  public void test_concurrent() throws Exception {
+    final ConcurrentLRUCache c = new ConcurrentLRUCache(config(500), null, 4);
+    final Throwable[] failure = new Throwable[1];
+    Thread[] ts = new Thread[8];
+    for (int t = 0; t < ts.length; t++) {
+      final int id = t;
+      ts[t] = new Thread() {
+        @Override
+        public void run() {
+          java.util.Random r = new java.util.Random(id);
+          for (int i = 0; i < 20000; i++) {
+            Integer key = new Integer(r.nextInt(1000));
+            if (r.nextInt(4) == 0) {
+              c.put(key, key);
+            } else {
+              Object v = c.get(key);
+              if (v != null && !v.equals(key)) {
+                synchronized (failure) {
+                  failure[0] = new IllegalStateException(key+" -> "+v);
+                }
+              }
+            }
+          }
+        }
+      };
+      ts[t].start();
+    }
+    for (int t = 0; t < ts.length; t++) {
+      ts[t].join();
+    }
+    assertTrue(c.size() <= 500);
+    assertNull(failure[0]);
+    assertTrue(c.getHitCount() > 0);
+  }
+}
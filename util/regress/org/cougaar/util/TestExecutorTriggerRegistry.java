@@ -0,0 +1,135 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class TestExecutorTriggerRegistry extends TestCase {
+
+  /** Runs queued tasks only when asked **/
+  private static class ManualExecutor implements Executor {
+    final List tasks = new ArrayList();
+    public void execute(Runnable r) {
+      tasks.add(r);
+    }
+    void runAll() {
+      List l = new ArrayList(tasks);
+      tasks.clear();
+      for (int i = 0; i < l.size(); i++) {
+        ((Runnable) l.get(i)).run();
+      }
+    }
+  }
+
+  private static class CountingTrigger implements Trigger {
+    int count;
+    public void trigger() {
+      count++;
+    }
+  }
+
+  public void test_coalesce() {
+    ManualExecutor ex = new ManualExecutor();
+    ExecutorTriggerRegistry r = new ExecutorTriggerRegistry(ex);
+    CountingTrigger client = new CountingTrigger();
+    Trigger t = r.register(client);
+    t.trigger();
+    t.trigger();
+    t.trigger();
+    assertEquals(1, ex.tasks.size());
+    ex.runAll();
+    assertEquals(1, client.count);
+    t.trigger();
+    ex.runAll();
+    assertEquals(2, client.count);
+  }
+
+  public void test_unregister() {
+    ManualExecutor ex = new ManualExecutor();
+    ExecutorTriggerRegistry r = new ExecutorTriggerRegistry(ex);
+    CountingTrigger client = new CountingTrigger();
+    Trigger t = r.register(client);
+    t.trigger();
+    r.unregister(t);
+    ex.runAll();
+    t.trigger();
+    assertEquals(0, ex.tasks.size());
+    assertEquals(0, client.count);
+    try {
+      new ExecutorTriggerRegistry(ex).unregister(t);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+    }
+
+    // unregister by client trigger, as SyncTriggerModelImpl does
+    Trigger t2 = r.register(client);
+    r.unregister(client);
+    t2.trigger();
+    assertEquals(0, ex.tasks.size());
+  }
+
+  public void test_defaultExecutor() throws Exception {
+    ExecutorTriggerRegistry r = new ExecutorTriggerRegistry();
+    final CountDownLatch ran = new CountDownLatch(1);
+    r.register(new Trigger() {
+      public void trigger() {
+        ran.countDown();
+      }
+    }).trigger();
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    ((ExecutorService) r.getExecutor()).shutdown();
+  }
+
+  public void test_virtualThreads() throws Exception {
+    if (!VirtualThreads.isAvailable()) {
+      try {
+        VirtualThreads.newExecutor("test");
+        fail("expected UnsupportedOperationException");
+      } catch (UnsupportedOperationException e) {
+      }
+      return;
+    }
+    ExecutorService ex = VirtualThreads.newExecutor("test");
+    final CountDownLatch ran = new CountDownLatch(1);
+    final String[] name = new String[1];
+    ex.execute(new Runnable() {
+      public void run() {
+        name[0] = Thread.currentThread().getName();
+        ran.countDown();
+      }
+    });
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    assertEquals("test-0", name[0]);
+    ex.shutdown();
+  }
+}
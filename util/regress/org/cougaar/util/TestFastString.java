@@ -0,0 +1,140 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+
+public class TestFastString extends TestCase {
+
+  private static FastString roundTrip(FastString fs) throws Exception {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bos);
+    oos.writeObject(fs);
+    oos.close();
+    ObjectInputStream ois =
+      new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+    return (FastString) ois.readObject();
+  }
+
+  private static String repeat(int n) {
+    StringBuffer sb = new StringBuffer(n);
+    for (int i = 0; i < n; i++) {
+      sb.append((char) (32 + (i % 224)));
+    }
+    return sb.toString();
+  }
+
+  public void test_roundTrip() throws Exception {
+    int[] lengths = { 0, 1, 17, 18, 300, Short.MAX_VALUE, Short.MAX_VALUE + 1, 100000 };
+    for (int i = 0; i < lengths.length; i++) {
+      String s = repeat(lengths[i]);
+      assertEquals("length "+lengths[i], s, roundTrip(new FastString(s)).toString());
+    }
+  }
+
+  public void test_wireFormat() throws Exception {
+    // short strings keep the original short-length layout
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(expected);
+    dos.writeShort(3);
+    dos.writeBytes("abc");
+    dos.close();
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bos);
+    new FastString("abc").writeExternal(oos);
+    oos.close();
+    byte[] actual = bos.toByteArray();
+    byte[] exp = expected.toByteArray();
+    // skip the stream header and block-data header
+    int off = actual.length - exp.length;
+    for (int i = 0; i < exp.length; i++) {
+      assertEquals(exp[i], actual[off + i]);
+    }
+  }
+
+  public void test_deduplicator() throws Exception {
+    FastString.Deduplicator old = FastString.getDeduplicator();
+    try {
+      assertSame(FastString.DEFAULT, old);
+      String s = roundTrip(new FastString("short")).toString();
+      assertSame("short", s);
+
+      final String canon = new String("canonical value");
+      FastString.setDeduplicator(new FastString.Deduplicator() {
+        public String dedup(String x) {
+          return (canon.equals(x) ? canon : x);
+        }
+      });
+      assertSame(canon, roundTrip(new FastString("canonical value")).toString());
+
+      FastString.setDeduplicator(null);
+      String t = roundTrip(new FastString("short")).toString();
+      assertEquals("short", t);
+      assertNotSame("short", t);
+    } finally {
+      FastString.setDeduplicator(old);
+    }
+  }
+
+  public void test_concurrent() throws Exception {
+    final Throwable[] failure = new Throwable[1];
+    Thread[] ts = new Thread[4];
+    for (int t = 0; t < ts.length; t++) {
+      final int id = t;
+      ts[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 200; i++) {
+              String s = repeat(id * 97 + i * 31) + id;
+              if (!s.equals(roundTrip(new FastString(s)).toString())) {
+                throw new AssertionError("mismatch at "+id+"/"+i);
+              }
+            }
+          } catch (Throwable e) {
+            synchronized (failure) {
+              failure[0] = e;
+            }
+          }
+        }
+      };
+      ts[t].start();
+    }
+    for (int t = 0; t < ts.length; t++) {
+      ts[t].join();
+    }
+    synchronized (failure) {
+      if (failure[0] != null) fail(failure[0].toString());
+    }
+  }
+}
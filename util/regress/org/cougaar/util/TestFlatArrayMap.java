@@ -0,0 +1,156 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TestFlatArrayMap extends TestCase {
+
+  public void test_small() {
+    FlatArrayMap m = new FlatArrayMap(0);
+    assertNull(m.put("a", "1"));
+    assertNull(m.put("b", "2"));
+    assertNull(m.put(null, "3"));
+    assertEquals("1", m.put("a", "4"));
+    assertEquals("{a=4, b=2, null=3}", m.toString());
+    assertEquals("3", m.get(null));
+    assertEquals("b", m.getKey(1));
+    assertEquals("2", m.getValue(1));
+    assertEquals("b=2", m.get(1).toString());
+    assertEquals("2", m.remove("b"));
+    assertEquals("{a=4, null=3}", m.toString());
+    try {
+      m.getKey(2);
+      fail("allows index past the end");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+    // entries write through
+    Map.Entry me = (Map.Entry)m.entrySet().iterator().next();
+    assertEquals("4", me.setValue("5"));
+    assertEquals("5", m.get("a"));
+    m.trimToSize();
+    m.put("c", "6");
+    assertEquals("{a=5, null=3, c=6}", m.toString());
+  }
+
+  public void test_equivalence() {
+    // compare against a LinkedHashMap, which also keeps insertion order
+    for (int t = 1; t <= 32; t <<= 1) {
+      FlatArrayMap m = new FlatArrayMap(1, t);
+      Map lhm = new LinkedHashMap();
+      Random r = new Random(t);
+      for (int i = 0; i < 2000; i++) {
+        Integer key = new Integer(r.nextInt(200));
+        int op = r.nextInt(10);
+        if (op < 6) {
+          Object value = new Integer(i);
+          assertEquals(lhm.put(key, value), m.put(key, value));
+        } else if (op < 8) {
+          assertEquals(lhm.remove(key), m.remove(key));
+        } else if (op < 9) {
+          // remove through an iterator
+          Iterator it = m.entrySet().iterator();
+          Iterator lit = lhm.entrySet().iterator();
+          while (it.hasNext()) {
+            Map.Entry me = (Map.Entry)it.next();
+            assertEquals(lit.next(), me);
+            if (key.equals(me.getKey())) {
+              it.remove();
+              lit.remove();
+            }
+          }
+        } else {
+          assertEquals(lhm.get(key), m.get(key));
+          assertEquals(lhm.containsKey(key), m.containsKey(key));
+        }
+        assertEquals(lhm.size(), m.size());
+      }
+      assertEquals(lhm, m);
+      assertEquals(m, lhm);
+      assertEquals(lhm.hashCode(), m.hashCode());
+      assertEquals(lhm.toString(), m.toString());
+      int i = 0;
+      for (Iterator it = lhm.keySet().iterator(); it.hasNext(); i++) {
+        Object key = it.next();
+        assertEquals(key, m.getKey(i));
+        assertEquals(lhm.get(key), m.getValue(i));
+      }
+    }
+  }
+
+  public void test_failFast() {
+    FlatArrayMap m = new FlatArrayMap();
+    m.put("a", "1");
+    m.put("b", "2");
+    Iterator it = m.keySet().iterator();
+    it.next();
+    m.put("c", "3");
+    try {
+      it.next();
+      fail("iterator ignored a concurrent change");
+    } catch (ConcurrentModificationException e) {
+      // expected
+    }
+  }
+
+  public void test_cloneAndSerialize() throws Exception {
+    FlatArrayMap m = new FlatArrayMap(10, 2);
+    for (int i = 0; i < 10; i++) {
+      m.put("k"+i, new Integer(i));
+    }
+    FlatArrayMap dup = (FlatArrayMap)m.clone();
+    dup.put("k3", "x");
+    dup.remove("k4");
+    assertEquals(new Integer(3), m.get("k3"));
+    assertEquals(new Integer(4), m.get("k4"));
+    assertEquals(9, dup.size());
+    assertEquals(9, dup.keySet().size());
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(baos);
+    oos.writeObject(dup);
+    oos.close();
+    ObjectInputStream ois = new ObjectInputStream(
+        new ByteArrayInputStream(baos.toByteArray()));
+    FlatArrayMap copy = (FlatArrayMap)ois.readObject();
+    ois.close();
+    assertEquals(dup, copy);
+    assertEquals(dup.toString(), copy.toString());
+    copy.put("k11", "y");
+    assertEquals("y", copy.get("k11"));
+  }
+}
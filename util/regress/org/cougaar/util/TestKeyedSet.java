@@ -0,0 +1,160 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests KeyedSet and OpenKeyedSet.
+ */
+public class TestKeyedSet extends TestCase {
+
+  /** an element keyed by its id, not its identity **/
+  private static class Elt {
+    final Integer id;
+    final String name;
+    Elt(int id, String name) {
+      this.id = new Integer(id);
+      this.name = name;
+    }
+    @Override
+    public String toString() {
+      return id+":"+name;
+    }
+  }
+
+  private static class EltKeyedSet extends KeyedSet {
+    @Override
+    protected Object getKey(Object o) {
+      return ((Elt) o).id;
+    }
+  }
+
+  private static class EltOpenKeyedSet extends OpenKeyedSet {
+    EltOpenKeyedSet() {
+      super(0);
+    }
+    @Override
+    protected Object getKey(Object o) {
+      return ((Elt) o).id;
+    }
+  }
+
+  public void test_KeyedSet() {
+    KeyedSet s = new EltKeyedSet();
+    Elt a = new Elt(1, "a");
+    Elt b = new Elt(2, "b");
+    s.add(a);
+    s.add(b);
+    assertTrue(s.contains(a));
+    // same key, but a different element
+    assertFalse(s.contains(new Elt(1, "c")));
+    List l = new ArrayList();
+    l.add(a);
+    l.add(b);
+    assertTrue(s.containsAll(l));
+    s.makeSynchronized();
+    assertTrue(s.contains(b));
+    assertTrue(s.remove(new Elt(2, "x")));
+    assertFalse(s.contains(b));
+    assertEquals(1, s.size());
+    assertFalse(s.containsAll(l));
+  }
+
+  public void test_OpenKeyedSet() {
+    OpenKeyedSet s = new EltOpenKeyedSet();
+    Map ref = new HashMap();
+    Random r = new Random(3);
+    for (int i = 0; i < 20000; i++) {
+      int id = r.nextInt(500);
+      Elt e = new Elt(id, "n"+i);
+      int op = r.nextInt(10);
+      if (op < 5) {
+        Object old = ref.put(e.id, e);
+        assertTrue(s.add(e));
+        assertFalse(s.add(e));
+        assertTrue(old == null || !s.contains(old));
+      } else if (op < 8) {
+        assertEquals(ref.remove(e.id) != null, s.remove(e));
+      } else if (op < 9) {
+        // remove through the iterator
+        for (Iterator it = s.iterator(); it.hasNext(); ) {
+          Elt x = (Elt) it.next();
+          if (x.id.intValue() % 50 == id % 50) {
+            it.remove();
+            ref.remove(x.id);
+          }
+        }
+      } else {
+        Object x = ref.get(e.id);
+        assertSame(x, s.find(e.id));
+        if (x != null) {
+          assertTrue(s.contains(x));
+        }
+      }
+      assertEquals(ref.size(), s.size());
+    }
+    int n = 0;
+    for (Iterator it = s.iterator(); it.hasNext(); n++) {
+      Elt x = (Elt) it.next();
+      assertSame(ref.get(x.id), x);
+    }
+    assertEquals(ref.size(), n);
+    assertTrue(s.containsAll(ref.values()));
+    s.clear();
+    assertTrue(s.isEmpty());
+    assertNull(s.find(new Integer(1)));
+  }
+
+  public void test_containsForeignType() {
+    KeyedSet s = new EltKeyedSet();
+    s.add(new Elt(1, "a"));
+    assertFalse(s.contains("a"));
+    assertFalse(s.containsAll(Collections.singleton(new Integer(1))));
+    OpenKeyedSet o = new EltOpenKeyedSet();
+    o.add(new Elt(1, "a"));
+    assertFalse(o.contains("a"));
+  }
+
+  public void test_identity() {
+    OpenKeyedSet s = new OpenKeyedSet();
+    assertTrue(s.add("a"));
+    assertFalse(s.add(null));
+    assertTrue(s.contains("a"));
+    assertFalse(s.contains(null));
+    assertFalse(s.contains("b"));
+    assertTrue(s.remove("a"));
+    assertFalse(s.remove("a"));
+  }
+}
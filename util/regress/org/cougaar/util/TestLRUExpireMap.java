@@ -0,0 +1,184 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TestLRUExpireMap extends TestCase {
+
+  private static class Recorder implements LRUExpireMap.Watcher {
+    final List expired = new ArrayList();
+    final List evicted = new ArrayList();
+    final List threads = new ArrayList();
+    int trims;
+    public synchronized void noteExpire(
+        Object key, Object value, long putTime, long expireTime) {
+      expired.add(key);
+      threads.add(Thread.currentThread());
+    }
+    public synchronized void noteEvict(
+        Object key, Object value, long putTime, long expireTime) {
+      evicted.add(key);
+    }
+    public synchronized void noteTrim(int nfreed, int origSize) {
+      trims++;
+    }
+  }
+
+  private static LRUExpireMap.Config config(final int maxSize) {
+    return new LRUExpireMap.Config() {
+      public int initialSize() { return 16; }
+      public int maxSize() { return maxSize; }
+      public long minBypassTime() { return 0; }
+    };
+  }
+
+  public void test_trim() throws Exception {
+    Recorder r = new Recorder();
+    LRUExpireMap m = new LRUExpireMap(config(1000), r);
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 100; i++) {
+      // even keys expire soon, odd keys much later
+      long expireTime = now + ((i % 2 == 0) ? 50 : 600000);
+      m.put(new Integer(i), "v"+i, expireTime);
+    }
+    // replaced entries take their new expiration time
+    m.put(new Integer(0), "v0", now + 600000);
+    m.put(new Integer(1), "v1", now + 50);
+    // removed entries are gone from the index too
+    assertNotNull(m.remove(new Integer(2)));
+    // and those removed through an iterator are skipped
+    for (Iterator iter = m.keySet().iterator(); iter.hasNext(); ) {
+      if (new Integer(4).equals(iter.next())) {
+        iter.remove();
+      }
+    }
+    Thread.sleep(100);
+    assertTrue(m.trim());
+    assertEquals(1, r.trims);
+    // 50 even keys - 0, 2 and 4 + key 1
+    assertEquals(48, r.expired.size());
+    assertTrue(r.expired.contains(new Integer(1)));
+    assertFalse(r.expired.contains(new Integer(0)));
+    assertEquals(50, m.size());
+    assertEquals("v0", m.get(new Integer(0)));
+    assertEquals("v3", m.get(new Integer(3)));
+    assertFalse(m.trim());
+  }
+
+  public void test_evict() throws Exception {
+    Recorder r = new Recorder();
+    LRUExpireMap m = new LRUExpireMap(config(4), r);
+    long later = System.currentTimeMillis() + 600000;
+    m.put("a", "1", later);
+    m.put("b", "2", later);
+    m.put("c", "3", later);
+    m.get("a");
+    m.put("d", "4", later);
+    assertEquals(3, m.size());
+    assertEquals("[b]", r.evicted.toString());
+    m.clear();
+    assertEquals(0, m.size());
+    assertFalse(m.trim());
+  }
+
+  public void test_reaper() throws Exception {
+    Recorder r = new Recorder();
+    LRUExpireMap m = new LRUExpireMap(config(1000), r);
+    synchronized (m) {
+      m.put("a", "1", System.currentTimeMillis() + 20);
+      m.put("b", "2", System.currentTimeMillis() + 600000);
+      m.startReaper(10);
+    }
+    for (int i = 0; i < 200; i++) {
+      synchronized (m) {
+        if (m.size() == 1) {
+          break;
+        }
+      }
+      Thread.sleep(10);
+    }
+    m.stopReaper();
+    synchronized (m) {
+      assertEquals(1, m.size());
+    }
+    synchronized (r) {
+      assertEquals("[a]", r.expired.toString());
+      assertNotSame(Thread.currentThread(), r.threads.get(0));
+    }
+  }
+
+  public void test_reaperSurvivesWatcherFailure() throws Exception {
+    Recorder failing = new Recorder() {
+      @Override
+      public synchronized void noteTrim(int nfreed, int origSize) {
+        super.noteTrim(nfreed, origSize);
+        throw new RuntimeException("expected by TestLRUExpireMap");
+      }
+    };
+    LRUExpireMap bad = new LRUExpireMap(config(1000), failing);
+    synchronized (bad) {
+      bad.put("x", "1", System.currentTimeMillis() + 10);
+      bad.startReaper(10);
+    }
+    for (int i = 0; i < 200; i++) {
+      synchronized (failing) {
+        if (failing.trims > 0) {
+          break;
+        }
+      }
+      Thread.sleep(10);
+    }
+    bad.stopReaper();
+    synchronized (bad) {
+      assertEquals(0, bad.size());
+    }
+
+    // the shared timer still reaps other maps
+    Recorder r = new Recorder();
+    LRUExpireMap m = new LRUExpireMap(config(1000), r);
+    synchronized (m) {
+      m.put("a", "1", System.currentTimeMillis() + 20);
+      m.startReaper(10);
+    }
+    for (int i = 0; i < 200; i++) {
+      synchronized (m) {
+        if (m.size() == 0) {
+          break;
+        }
+      }
+      Thread.sleep(10);
+    }
+    m.stopReaper();
+    synchronized (r) {
+      assertEquals("[a]", r.expired.toString());
+    }
+  }
+}
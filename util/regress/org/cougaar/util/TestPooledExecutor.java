@@ -0,0 +1,175 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class TestPooledExecutor extends TestCase {
+
+  public void test_histogram() {
+    LatencyHistogram h = new LatencyHistogram();
+    assertEquals(0, h.getPercentileNanos(0.5));
+    assertEquals(0, LatencyHistogram.bucketFor(0));
+    assertEquals(1, LatencyHistogram.bucketFor(1));
+    assertEquals(2, LatencyHistogram.bucketFor(3));
+    assertEquals(11, LatencyHistogram.bucketFor(1024));
+    for (int i = 0; i < 90; i++) {
+      h.record(100);
+    }
+    for (int i = 0; i < 10; i++) {
+      h.record(1000000);
+    }
+    assertEquals(100, h.getCount());
+    assertEquals(1000000, h.getMaxNanos());
+    assertEquals((90*100 + 10*1000000) / 100, h.getMeanNanos());
+    assertEquals(127, h.getPercentileNanos(0.5));
+    assertEquals(127, h.getPercentileNanos(0.9));
+    assertEquals(1000000, h.getPercentileNanos(0.99));
+    h.reset();
+    assertEquals(0, h.getCount());
+  }
+
+  /** Occupy every pool thread and queue slot until released **/
+  private static CountDownLatch fill(PooledExecutor e, int n,
+                                     final CountDownLatch started) {
+    final CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < n; i++) {
+      e.execute(new Runnable() {
+        public void run() {
+          if (started != null) started.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException ie) {
+          }
+        }
+      });
+    }
+    return release;
+  }
+
+  public void test_boundedQueue() throws Exception {
+    PooledExecutor e = new PooledExecutor("test", 1, 2, 2, PooledExecutor.ABORT);
+    try {
+      CountDownLatch started = new CountDownLatch(2);
+      // 1 core thread, 2 queued, then a second thread
+      CountDownLatch release = fill(e, 4, started);
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      assertEquals(2, e.getPoolSize());
+      assertEquals(2, e.getActiveCount());
+      assertEquals(2, e.getQueueDepth());
+      try {
+        e.execute(new Runnable() { public void run() {} });
+        fail("expected rejection");
+      } catch (RejectedExecutionException ree) {
+      }
+      assertEquals(1, e.getRejectedCount());
+      release.countDown();
+    } finally {
+      e.shutdown();
+      assertTrue(e.awaitTermination(5, TimeUnit.SECONDS));
+    }
+    assertEquals(4, e.getLatencyHistogram().getCount());
+  }
+
+  public void test_queueLatency() throws Exception {
+    PooledExecutor e = new PooledExecutor("test", 1, 1, 2, PooledExecutor.ABORT);
+    try {
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = fill(e, 1, started);
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      Runnable r = new Runnable() { public void run() {} };
+      Runnable waiting = new Runnable() { public void run() {} };
+      e.execute(r);
+      e.execute(waiting);
+      assertTrue(e.remove(waiting));
+      assertEquals(1, e.getQueueDepth());
+      Thread.sleep(50);
+      release.countDown();
+    } finally {
+      e.shutdown();
+      assertTrue(e.awaitTermination(5, TimeUnit.SECONDS));
+    }
+    LatencyHistogram q = e.getQueueLatencyHistogram();
+    assertEquals(2, q.getCount());
+    // the queued task waited behind the blocked one
+    assertTrue(q.getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+    assertEquals(2, e.getLatencyHistogram().getCount());
+  }
+
+  public void test_spawn() throws Exception {
+    PooledExecutor e = new PooledExecutor("test", 1, 1, 0, PooledExecutor.SPAWN);
+    try {
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = fill(e, 1, started);
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      final CountDownLatch ran = new CountDownLatch(1);
+      final String[] name = new String[1];
+      e.execute(new Runnable() {
+        public void run() {
+          name[0] = Thread.currentThread().getName();
+          ran.countDown();
+        }
+      });
+      assertTrue(ran.await(5, TimeUnit.SECONDS));
+      assertEquals("test-overflow", name[0]);
+      assertEquals(1, e.getRejectedCount());
+      release.countDown();
+    } finally {
+      e.shutdown();
+    }
+  }
+
+  public void test_callerRuns() throws Exception {
+    PooledExecutor e = new PooledExecutor("test", 1, 1, 0, PooledExecutor.CALLER_RUNS);
+    try {
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = fill(e, 1, started);
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      final Thread[] ranIn = new Thread[1];
+      e.execute(new Runnable() {
+        public void run() {
+          ranIn[0] = Thread.currentThread();
+        }
+      });
+      assertSame(Thread.currentThread(), ranIn[0]);
+      release.countDown();
+    } finally {
+      e.shutdown();
+    }
+  }
+
+  public void test_badPolicy() {
+    try {
+      new PooledExecutor("test", 1, 1, 0, "bogus");
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException iae) {
+    }
+  }
+}
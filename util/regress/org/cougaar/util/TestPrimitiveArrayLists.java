@@ -0,0 +1,173 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests LongArrayList, IntArrayList and DoubleArrayList.
+ */
+public class TestPrimitiveArrayLists extends TestCase {
+
+  public void test_LongArrayList() throws Exception {
+    LongArrayList l = new LongArrayList(0);
+    List ref = new ArrayList();
+    Random r = new Random(1);
+    for (int i = 0; i < 500; i++) {
+      long v = r.nextInt(100) - 50L;
+      if (i % 7 == 0 && !ref.isEmpty()) {
+        int at = r.nextInt(ref.size());
+        assertEquals(((Long)ref.remove(at)).longValue(), l.removeAt(at));
+      } else if (i % 5 == 0) {
+        int at = r.nextInt(ref.size() + 1);
+        ref.add(at, new Long(v));
+        l.add(at, v);
+      } else {
+        ref.add(new Long(v));
+        l.add(v);
+      }
+    }
+    assertEquals(ref, l.asList());
+    assertEquals(ref.hashCode(), l.hashCode());
+    assertEquals(ref.toString(), l.toString());
+    assertEquals(ref.indexOf(new Long(3)), l.indexOf(3));
+    assertEquals(ref.lastIndexOf(new Long(3)), l.lastIndexOf(3));
+
+    Collections.sort(ref);
+    l.sort();
+    assertEquals(ref, l.asList());
+    for (long v = -52; v < 52; v++) {
+      int i = l.binarySearch(v);
+      int j = Collections.binarySearch(ref, new Long(v));
+      assertEquals(j < 0, i < 0);
+      if (i < 0) {
+        assertEquals(j, i);
+      } else {
+        assertEquals(v, l.get(i));
+      }
+    }
+
+    LongArrayList c = (LongArrayList)l.clone();
+    assertEquals(l, c);
+    c.set(0, 1000L);
+    assertFalse(l.equals(c));
+    assertTrue(l.removeElement(l.get(3)));
+    assertEquals(ref.size() - 1, l.size());
+
+    LongArrayList d = (LongArrayList)serialize(c);
+    assertEquals(c, d);
+    d.add(7L);
+    assertEquals(7L, d.get(d.size() - 1));
+  }
+
+  public void test_IntArrayList() throws Exception {
+    IntArrayList l = new IntArrayList(new int[] { 5, 3, 9, 1 });
+    l.addAll(new int[] { 7, 3 });
+    assertEquals("[5, 3, 9, 1, 7, 3]", l.toString());
+    assertEquals(1, l.indexOf(3));
+    assertEquals(5, l.lastIndexOf(3));
+    // removeAt is positional, removeElement is by value
+    assertEquals(9, l.removeAt(2));
+    assertTrue(l.removeElement(3));
+    assertFalse(l.removeElement(42));
+    assertEquals("[5, 1, 7, 3]", l.toString());
+    l.sort();
+    assertEquals("[1, 3, 5, 7]", l.toString());
+    assertEquals(2, l.binarySearch(5));
+    assertEquals(-3, l.binarySearch(4));
+    assertEquals(-5, l.binarySearch(8));
+    int[] a = l.toArray(new int[10]);
+    assertEquals(10, a.length);
+    assertEquals(7, a[3]);
+    assertTrue(Arrays.equals(new int[] { 1, 3, 5, 7 }, l.toArray()));
+    try {
+      l.get(4);
+      fail("allows index past the end");
+    } catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+
+    // the List view writes through
+    List view = l.asList();
+    view.add(new Integer(9));
+    view.remove(0);
+    view.set(0, new Integer(4));
+    assertEquals("[4, 5, 7, 9]", l.toString());
+    assertTrue(view.contains(new Integer(7)));
+    assertFalse(view.contains(new Long(7)));
+    IntArrayList other = new IntArrayList();
+    other.addAll(l);
+    other.trimToSize();
+    assertEquals(l, other);
+    assertEquals(l, serialize(other));
+    view.clear();
+    assertTrue(l.isEmpty());
+  }
+
+  public void test_DoubleArrayList() throws Exception {
+    DoubleArrayList l = new DoubleArrayList();
+    l.add(2.5);
+    l.add(Double.NaN);
+    l.add(-0.0);
+    l.add(0.0);
+    l.add(-1.0);
+    assertEquals(1, l.indexOf(Double.NaN));
+    assertEquals(2, l.indexOf(-0.0));
+    assertEquals(3, l.indexOf(0.0));
+    l.sort();
+    assertEquals("[-1.0, -0.0, 0.0, 2.5, NaN]", l.toString());
+    assertEquals(4, l.binarySearch(Double.NaN));
+    assertEquals(-4, l.binarySearch(1.0));
+    List ref = Arrays.asList(new Object[] {
+      new Double(-1.0), new Double(-0.0), new Double(0.0),
+      new Double(2.5), new Double(Double.NaN) });
+    assertEquals(ref, l.asList());
+    assertEquals(ref.hashCode(), l.hashCode());
+    assertEquals(l, serialize(l));
+  }
+
+  private static Object serialize(Object o) throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(baos);
+    oos.writeObject(o);
+    oos.close();
+    ObjectInputStream ois = new ObjectInputStream(
+        new ByteArrayInputStream(baos.toByteArray()));
+    Object result = ois.readObject();
+    ois.close();
+    return result;
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests LongHashSet, IntHashSet, LongHashMap, IntHashMap and
+ * OpenIdentityHashSet.
+ */
+public class TestPrimitiveHashSets extends TestCase {
+
+  public void test_LongHashSet() {
+    LongHashSet s = new LongHashSet(0);
+    Set ref = new HashSet();
+    Random r = new Random(5);
+    for (int i = 0; i < 50000; i++) {
+      // small range, to get collisions, removals and zero
+      long v = r.nextInt(2000) - 1000L;
+      if (r.nextInt(3) == 0) {
+        assertEquals(ref.remove(new Long(v)), s.remove(v));
+      } else {
+        assertEquals(ref.add(new Long(v)), s.add(v));
+      }
+      assertEquals(ref.size(), s.size());
+    }
+    for (long v = -1001; v <= 1001; v++) {
+      assertEquals(ref.contains(new Long(v)), s.contains(v));
+    }
+    final Set seen = new HashSet();
+    s.forEach(new LongThunk() {
+      public void apply(long v) {
+        seen.add(new Long(v));
+      }
+    });
+    assertEquals(ref, seen);
+    assertEquals(ref.size(), s.toArray().length);
+    s.clear();
+    assertTrue(s.isEmpty());
+    assertFalse(s.contains(0));
+  }
+
+  public void test_IntHashSet() {
+    IntHashSet s = new IntHashSet();
+    for (int i = 0; i < 100000; i++) {
+      assertTrue(s.add(i * 64));
+    }
+    assertFalse(s.add(64));
+    for (int i = 0; i < 100000; i += 2) {
+      assertTrue(s.remove(i * 64));
+    }
+    assertEquals(50000, s.size());
+    for (int i = 0; i < 100000; i++) {
+      assertEquals(i % 2 == 1, s.contains(i * 64));
+    }
+    final long[] sum = new long[1];
+    s.forEach(new IntThunk() {
+      public void apply(int v) {
+        sum[0] += v;
+      }
+    });
+    // sum of odd multiples of 64 below 6400000
+    assertEquals(64L * 50000 * 50000, sum[0]);
+  }
+
+  public void test_LongHashMap() {
+    LongHashMap m = new LongHashMap();
+    Map ref = new HashMap();
+    Random r = new Random(7);
+    for (int i = 0; i < 50000; i++) {
+      long k = r.nextInt(2000) - 1000L;
+      Long key = new Long(k);
+      switch (r.nextInt(3)) {
+        case 0:
+          assertEquals(ref.remove(key), m.remove(k));
+          break;
+        case 1:
+          String v = ((i % 10) == 0) ? null : ("v"+i);
+          assertEquals(ref.put(key, v), m.put(k, v));
+          break;
+        default:
+          assertEquals(ref.get(key), m.get(k));
+          assertEquals(ref.containsKey(key), m.containsKey(k));
+      }
+      assertEquals(ref.size(), m.size());
+    }
+    final Map seen = new HashMap();
+    m.forEach(new LongHashMap.EntryThunk() {
+      public void apply(long key, Object value) {
+        seen.put(new Long(key), value);
+      }
+    });
+    assertEquals(ref, seen);
+    assertEquals(ref.size(), m.keys().length);
+  }
+
+  public void test_IntHashMap() {
+    IntHashMap m = new IntHashMap(4);
+    assertNull(m.put(0, "zero"));
+    assertNull(m.put(1, "one"));
+    assertNull(m.put(-1, null));
+    assertTrue(m.containsKey(-1));
+    assertNull(m.get(-1));
+    assertEquals("zero", m.put(0, "0"));
+    assertEquals("0", m.get(0));
+    assertEquals(3, m.size());
+    assertEquals("0", m.remove(0));
+    assertFalse(m.containsKey(0));
+    assertEquals("{1=one, -1=null}".length(), m.toString().length());
+    m.clear();
+    assertEquals(0, m.size());
+    assertEquals("{}", m.toString());
+  }
+
+  public void test_OpenIdentityHashSet() {
+    OpenIdentityHashSet s = new OpenIdentityHashSet(0);
+    String a1 = new String("a");
+    String a2 = new String("a");
+    assertTrue(s.add(a1));
+    assertTrue(s.add(a2));
+    assertFalse(s.add(a1));
+    assertTrue(s.add(null));
+    assertTrue(s.contains(null));
+    assertEquals(3, s.size());
+    assertFalse(s.contains("b"));
+    assertTrue(s.remove(a1));
+    assertFalse(s.contains(a1));
+    assertTrue(s.contains(a2));
+
+    List objs = new ArrayList();
+    for (int i = 0; i < 10000; i++) {
+      Object o = new Object();
+      objs.add(o);
+      assertTrue(s.add(o));
+    }
+    for (Iterator it = s.iterator(); it.hasNext(); ) {
+      Object o = it.next();
+      if (o != null && o != a2 && (objs.indexOf(o) % 3) == 0) {
+        it.remove();
+      }
+    }
+    for (int i = 0; i < objs.size(); i++) {
+      assertEquals(i % 3 != 0, s.contains(objs.get(i)));
+    }
+    final int[] count = new int[1];
+    s.forEach(new Thunk() {
+      public void apply(Object o) {
+        count[0]++;
+      }
+    });
+    assertEquals(s.size(), count[0]);
+    assertEquals(2 + 6666, s.size());
+  }
+}
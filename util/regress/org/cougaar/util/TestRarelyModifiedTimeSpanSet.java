@@ -0,0 +1,114 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TestRarelyModifiedTimeSpanSet extends TestCase {
+
+  public void test_RMTSS() {
+    RarelyModifiedTimeSpanSet set = new RarelyModifiedTimeSpanSet();
+    assertEquals(0, set.size());
+    assertNull(set.first());
+
+    TimeSpanSet x = set.getUnmodifiableSet();
+    TimeSpan a = new TimeSpan.Span(10, 20);
+    TimeSpan b = new TimeSpan.Span(0, 15);
+    assertTrue(set.add(a));
+    assertTrue(set.add(b));
+    assertFalse(set.add(a));
+    TimeSpanSet y = set.getUnmodifiableSet();
+    assertTrue(x != y);             // different snapshots
+    assertEquals(0, x.size());      // x is still empty
+    assertEquals(2, y.size());
+    assertSame(b, set.first());     // kept sorted
+    assertSame(a, set.last());
+    assertEquals(y, set);
+
+    try {
+      y.add(new TimeSpan.Span(1, 2));
+      fail("modified a snapshot");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    // iteration is unaffected by concurrent modification
+    Iterator it = set.iterator();
+    set.remove(b);
+    assertSame(b, it.next());
+    assertSame(a, it.next());
+    assertFalse(it.hasNext());
+    assertEquals(1, set.size());
+    try {
+      set.iterator().remove();
+      fail("removed through a snapshot iterator");
+    } catch (RuntimeException e) {
+      // expected
+    }
+
+    // queries match a plain TimeSpanSet, with and without an index
+    List spans = new ArrayList();
+    for (int i = 0; i < 500; i++) {
+      spans.add(new TimeSpan.Span(i * 3, i * 3 + 1 + (i % 11)));
+    }
+    TimeSpanSet plain = new TimeSpanSet(spans);
+    set.clear();
+    assertTrue(set.addAll(spans));
+    for (long t = -5; t < 1600; t += 13) {
+      assertEquals(plain.intersectingSet(t), set.intersectingSet(t));
+      assertEquals(plain.encapsulatedSet(t, t + 40), set.encapsulatedSet(t, t + 40));
+      assertSame(plain.getMinimalIntersectingElement(t),
+                 set.getMinimalIntersectingElement(t));
+    }
+  }
+
+  public void test_subListIsReadOnly() {
+    RarelyModifiedTimeSpanSet set = new RarelyModifiedTimeSpanSet();
+    for (int i = 0; i < 5; i++) {
+      set.add(new TimeSpan.Span(i * 10, i * 10 + 5));
+    }
+    TimeSpanSet snap = set.getUnmodifiableSet();
+    try {
+      set.subList(0, 2).clear();
+      fail("cleared a subList of the set");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      snap.subList(0, 2).clear();
+      fail("cleared a subList of a snapshot");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    assertEquals(5, snap.size());
+    assertEquals(5, set.size());
+    assertEquals(2, set.subList(1, 3).size());
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class TestReusableThreadPool extends TestCase {
+
+  private static class HookThread extends ReusableThread {
+    int claims;
+    CountDownLatch reclaimed = new CountDownLatch(1);
+    HookThread(ReusableThreadPool p) {
+      super(p);
+    }
+    @Override
+    protected void claim() {
+      claims++;
+    }
+    @Override
+    protected void reclaim() {
+      super.reclaim();
+      reclaimed.countDown();
+    }
+  }
+
+  private static class HookPool extends ReusableThreadPool {
+    HookPool(int init, int max) {
+      super(init, max);
+    }
+    @Override
+    protected ReusableThread constructReusableThread() {
+      super.constructReusableThread();
+      return new HookThread(this);
+    }
+  }
+
+  public void test_runAndReuse() throws Exception {
+    HookPool pool = new HookPool(1, 4);
+    assertEquals(1, pool.size());
+    assertEquals(1, pool.getAllocatedThreads());
+
+    final String[] name = new String[1];
+    HookThread t = (HookThread) pool.getThread(new Runnable() {
+      public void run() {
+        name[0] = Thread.currentThread().getName();
+      }
+    }, "worker-a");
+    assertEquals(0, pool.size());
+    t.start();
+    assertTrue(t.reclaimed.await(5, TimeUnit.SECONDS));
+    assertEquals("worker-a", name[0]);
+    assertEquals(1, t.claims);
+    assertEquals(1, pool.size());
+
+    // the same handle comes back out of the pool
+    assertSame(t, pool.getThread("worker-b"));
+    assertEquals(1, pool.getAllocatedThreads());
+    pool.getExecutor().shutdown();
+  }
+
+  public void test_alreadyStarted() throws Exception {
+    ReusableThreadPool pool = new ReusableThreadPool(0, 2);
+    final CountDownLatch release = new CountDownLatch(1);
+    ReusableThread t = pool.getThread(new Runnable() {
+      public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException ie) {
+        }
+      }
+    });
+    t.start();
+    try {
+      t.start();
+      fail("expected IllegalThreadStateException");
+    } catch (IllegalThreadStateException e) {
+    } finally {
+      release.countDown();
+    }
+    pool.getExecutor().shutdown();
+  }
+
+  public void test_interruptAndWait() throws Exception {
+    ReusableThreadPool pool = new ReusableThreadPool(1, 2);
+    final CountDownLatch started = new CountDownLatch(1);
+    final boolean[] interrupted = new boolean[1];
+    final int[] priority = new int[1];
+    ReusableThread t = pool.getThread(new Runnable() {
+      public void run() {
+        priority[0] = Thread.currentThread().getPriority();
+        started.countDown();
+        try {
+          new CountDownLatch(1).await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ie) {
+          interrupted[0] = true;
+        }
+      }
+    });
+    t.setPriority(Thread.MIN_PRIORITY);
+    assertFalse(t.isRunning());
+    t.start();
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    assertTrue(t.isRunning());
+    assertFalse(t.waitFor(10));
+    // interrupt reaches the executor thread running the Runnable
+    t.interrupt();
+    assertTrue(t.waitFor(5000));
+    assertTrue(interrupted[0]);
+    assertFalse(t.isRunning());
+    assertFalse(t.isInterrupted());
+    assertEquals(Thread.MIN_PRIORITY, priority[0]);
+    pool.getExecutor().shutdown();
+  }
+
+  private static String setProperty(String name, String value) {
+    return (value == null ?
+            System.clearProperty(name) :
+            System.setProperty(name, value));
+  }
+
+  public void test_discardPolicy() throws Exception {
+    String q = setProperty("org.cougaar.ReusableThread.queueSize", "1");
+    String p = setProperty("org.cougaar.ReusableThread.rejectionPolicy",
+                           PooledExecutor.DISCARD);
+    ReusableThreadPool pool;
+    try {
+      pool = new ReusableThreadPool(1, 1);
+    } finally {
+      setProperty("org.cougaar.ReusableThread.queueSize", q);
+      setProperty("org.cougaar.ReusableThread.rejectionPolicy", p);
+    }
+    assertEquals(PooledExecutor.ABORT, pool.getExecutor().getRejectionPolicy());
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Runnable block = new Runnable() {
+      public void run() {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ie) {
+        }
+      }
+    };
+    ReusableThread running = pool.getThread(block);
+    running.start();
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    ReusableThread queued = pool.getThread(block);
+    queued.start();
+    // the pool thread and queue slot are full
+    ReusableThread dropped = pool.getThread(block);
+    try {
+      dropped.start();
+      fail("expected RejectedExecutionException");
+    } catch (RejectedExecutionException ree) {
+    }
+    assertFalse(dropped.isRunning());
+    assertTrue(dropped.waitFor(10));
+    release.countDown();
+    assertTrue(running.waitFor(5000));
+    assertTrue(queued.waitFor(5000));
+    assertEquals(1, pool.getExecutor().getRejectedCount());
+    pool.getExecutor().shutdown();
+  }
+
+  public void test_manyConcurrent() throws Exception {
+    // more concurrent tasks than the maximum, as with new Thread()
+    ReusableThreadPool pool = new ReusableThreadPool(2, 4);
+    int n = 20;
+    final CountDownLatch started = new CountDownLatch(n);
+    final CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < n; i++) {
+      pool.getThread(new Runnable() {
+        public void run() {
+          started.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException ie) {
+          }
+        }
+      }).start();
+    }
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    release.countDown();
+    assertEquals(4, pool.getExecutor().getLargestPoolSize());
+    assertEquals(n - 4, pool.getExecutor().getRejectedCount());
+    pool.getExecutor().shutdown();
+  }
+}
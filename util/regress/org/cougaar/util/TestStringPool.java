@@ -0,0 +1,118 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.TestCase;
+
+import org.cougaar.core.component.ComponentDescription;
+
+public class TestStringPool extends TestCase {
+
+  public void test_canonical() {
+    StringPool p = new StringPool(100, 4);
+    String a = new String("abc");
+    String b = new String("abc");
+    assertSame(a, p.intern(a));
+    assertSame(a, p.intern(b));
+    assertNull(p.intern(null));
+    assertEquals(1, p.size());
+    assertEquals(1, p.getHits());
+    assertEquals(1, p.getMisses());
+    assertEquals(0.5, p.getHitRate(), 1e-9);
+    p.clear();
+    assertEquals(0, p.size());
+    assertEquals(0.0, p.getHitRate(), 1e-9);
+    assertSame(b, p.intern(b));
+  }
+
+  public void test_bounded() {
+    StringPool p = new StringPool(64, 4);
+    for (int i = 0; i < 10000; i++) {
+      p.intern("s"+i);
+      assertTrue(p.size() <= 64);
+    }
+    assertEquals(10000, p.getMisses());
+  }
+
+  public void test_lru() {
+    // one stripe, so the eviction order is exact
+    StringPool p = new StringPool(3, 1);
+    String a = new String("a");
+    p.intern(a);
+    p.intern("b");
+    p.intern("c");
+    p.intern(new String("a"));  // touch "a"
+    p.intern("d");              // evicts "b"
+    assertSame(a, p.intern(new String("a")));
+    String b = new String("b");
+    assertSame(b, p.intern(b));
+  }
+
+  private static Object roundTrip(Object o) throws Exception {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bos);
+    oos.writeObject(o);
+    oos.close();
+    ObjectInputStream ois =
+      new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+    return ois.readObject();
+  }
+
+  public void test_switch() throws Exception {
+    StringPool old = Strings.getPool();
+    try {
+      StringPool p = new StringPool(1000);
+      Strings.setPool(p);
+
+      String s = new String("a.b.MyPlugin");
+      assertSame(s, Strings.intern(s));
+      assertSame(s, Strings.pooled(new String("a.b.MyPlugin")));
+
+      String fs = roundTrip(new FastString("a.b.MyPlugin")).toString();
+      assertSame(s, fs);
+
+      ComponentDescription cd = new ComponentDescription(
+          new String("name"), "Node.AgentManager.Agent.PluginManager.Plugin",
+          new String("a.b.MyPlugin"), null, null, null, null, null);
+      assertSame(s, cd.getClassname());
+      ComponentDescription cd2 = (ComponentDescription) roundTrip(cd);
+      assertEquals(cd, cd2);
+      assertSame(s, cd2.getClassname());
+      assertSame(cd.getName(), cd2.getName());
+
+      Strings.setPool(null);
+      String t = new String("not pooled");
+      assertSame(t, Strings.pooled(t));
+    } finally {
+      Strings.setPool(old);
+    }
+  }
+}
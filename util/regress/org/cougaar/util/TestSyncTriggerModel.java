@@ -0,0 +1,214 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class TestSyncTriggerModel extends TestCase {
+
+  /** A registry that runs registered triggers only when asked **/
+  private static class ManualRegistry implements TriggerRegistry {
+    final List queued = new ArrayList();
+    Trigger registered;
+    public Trigger register(final Trigger t) {
+      registered = t;
+      return new Trigger() {
+        public void trigger() {
+          queued.add(t);
+        }
+      };
+    }
+    public void unregister(Trigger t) {
+      assertSame(registered, t);
+      registered = null;
+    }
+    void runAll() {
+      List l = new ArrayList(queued);
+      queued.clear();
+      for (int i = 0; i < l.size(); i++) {
+        ((Trigger) l.get(i)).trigger();
+      }
+    }
+  }
+
+  private static class CountingTrigger implements Trigger {
+    int count;
+    public void trigger() {
+      count++;
+    }
+  }
+
+  public void test_coalesce() {
+    ManualRegistry reg = new ManualRegistry();
+    CountingTrigger client = new CountingTrigger();
+    SyncTriggerModelImpl m = new SyncTriggerModelImpl(reg, client);
+    m.trigger();
+    assertEquals(0, reg.queued.size());
+    assertEquals(GenericStateModel.LOADED, m.getModelState());
+    m.start();
+    assertNotNull(reg.registered);
+    // the trigger before start is queued on start
+    assertEquals(1, reg.queued.size());
+    m.trigger();
+    m.trigger();
+    assertEquals(1, reg.queued.size());
+    reg.runAll();
+    assertEquals(1, client.count);
+    m.trigger();
+    reg.runAll();
+    assertEquals(2, client.count);
+    reg.runAll();
+    assertEquals(2, client.count);
+  }
+
+  public void test_suspendResume() {
+    ManualRegistry reg = new ManualRegistry();
+    CountingTrigger client = new CountingTrigger();
+    SyncTriggerModelImpl m = new SyncTriggerModelImpl(reg, client);
+    m.start();
+    m.suspend();
+    assertEquals(GenericStateModel.IDLE, m.getModelState());
+    m.trigger();
+    assertEquals(0, reg.queued.size());
+    m.resume();
+    assertEquals(1, reg.queued.size());
+    reg.runAll();
+    assertEquals(1, client.count);
+
+    // queued, then suspended before the run: skipped until resumed
+    m.trigger();
+    m.suspend();
+    reg.runAll();
+    assertEquals(1, client.count);
+    m.resume();
+    reg.runAll();
+    assertEquals(2, client.count);
+
+    m.stop();
+    assertNull(reg.registered);
+    m.trigger();
+    m.start();
+    reg.runAll();
+    assertEquals(3, client.count);
+  }
+
+  public void test_triggerWhileRunning() {
+    final ManualRegistry reg = new ManualRegistry();
+    final SyncTriggerModelImpl[] m = new SyncTriggerModelImpl[1];
+    final int[] runs = new int[1];
+    m[0] = new SyncTriggerModelImpl(reg, new Trigger() {
+      public void trigger() {
+        if (runs[0]++ == 0) {
+          m[0].trigger();
+          m[0].trigger();
+        }
+      }
+    });
+    m[0].start();
+    m[0].trigger();
+    reg.runAll();
+    assertEquals(1, runs[0]);
+    // re-queued once on completion
+    assertEquals(1, reg.queued.size());
+    reg.runAll();
+    assertEquals(2, runs[0]);
+    assertEquals(0, reg.queued.size());
+  }
+
+  public void test_exceptionHalts() {
+    ManualRegistry reg = new ManualRegistry();
+    SyncTriggerModelImpl m = new SyncTriggerModelImpl(reg, new Trigger() {
+      public void trigger() {
+        throw new IllegalStateException("boom");
+      }
+    });
+    m.start();
+    m.trigger();
+    try {
+      reg.runAll();
+      fail("expected exception");
+    } catch (IllegalStateException e) {
+    }
+    assertEquals(GenericStateModel.LOADED, m.getModelState());
+    assertNull(reg.registered);
+  }
+
+  public void test_concurrent() throws Exception {
+    ExecutorService runner = Executors.newFixedThreadPool(2);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger overlaps = new AtomicInteger();
+    final AtomicInteger runs = new AtomicInteger();
+    final SyncTriggerModelImpl m = new SyncTriggerModelImpl(
+        new ExecutorTriggerRegistry(runner), new Trigger() {
+      public void trigger() {
+        if (running.incrementAndGet() != 1) {
+          overlaps.incrementAndGet();
+        }
+        runs.incrementAndGet();
+        running.decrementAndGet();
+      }
+    });
+    m.start();
+    Thread[] ts = new Thread[4];
+    for (int t = 0; t < ts.length; t++) {
+      ts[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 20000; i++) {
+            m.trigger();
+            if ((i & 1023) == 0) {
+              Thread.yield();
+            }
+          }
+        }
+      };
+      ts[t].start();
+    }
+    for (int t = 0; t < ts.length; t++) {
+      ts[t].join();
+    }
+    // a trigger after the last run must still be honored
+    int before = runs.get();
+    m.trigger();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (runs.get() == before && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    assertTrue(runs.get() > before);
+    assertEquals(0, overlaps.get());
+    m.halt();
+    assertEquals(GenericStateModel.LOADED, m.getModelState());
+    runner.shutdown();
+    assertTrue(runner.awaitTermination(5, TimeUnit.SECONDS));
+  }
+}
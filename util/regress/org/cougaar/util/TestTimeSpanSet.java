@@ -25,6 +25,9 @@
  */
 
 package org.cougaar.util;
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 public class TestTimeSpanSet extends TestCase {
@@ -87,4 +90,214 @@ public class TestTimeSpanSet extends TestCase {
                  expected[i]==tss.search(i,i+1));
     }
   }
+
+  public void test_select() {
+    // large enough to use the interval index
+    java.util.Random r = new java.util.Random(42);
+    TimeSpanSet tss = new TimeSpanSet();
+    for (int i = 0; i < 1000; i++) {
+      long s = r.nextInt(10000);
+      X x = new X(s, Integer.toString(i));
+      x.setTimeSpan(s, s + 1 + r.nextInt(i % 10 == 0 ? 5000 : 50));
+      tss.add(x);
+    }
+    for (int i = 0; i < 200; i++) {
+      long s = r.nextInt(11000) - 500;
+      long e = s + 1 + r.nextInt(i % 2 == 0 ? 20 : 2000);
+      TimeSpan q = new TimeSpan.Span(s, e);
+      assertEquals("intersectingSet("+s+")",
+                   scan(tss, s, s+1, 0), tss.intersectingSet(s));
+      assertEquals("intersectingSet("+q+")",
+                   scan(tss, s, e, 0), tss.intersectingSet(q));
+      assertEquals("encapsulatedSet("+q+")",
+                   scan(tss, s, e, 1), tss.encapsulatedSet(q));
+      assertEquals("encapsulatingSet("+q+")",
+                   scan(tss, s, e, 2), tss.encapsulatingSet(q));
+    }
+
+    // the index must follow modifications
+    Object first = tss.first();
+    tss.remove(first);
+    assertFalse(tss.intersectingSet((TimeSpan) first).contains(first));
+    tss.add(first);
+    assertTrue(tss.intersectingSet((TimeSpan) first).contains(first));
+  }
+
+  public void test_addAll() {
+    java.util.Random r = new java.util.Random(7);
+    TimeSpanSet one = new TimeSpanSet();
+    List batch = new ArrayList();
+    for (int i = 0; i < 500; i++) {
+      X x = new X(r.nextInt(100), Integer.toString(i));
+      one.add(x);
+      batch.add(x);
+    }
+    // duplicates within the batch and against the set
+    batch.add(batch.get(3));
+    batch.add(batch.get(250));
+
+    TimeSpanSet bulk = new TimeSpanSet(batch.subList(0, 100));
+    assertTrue(bulk.addAll(batch));
+    assertFalse(bulk.addAll(batch.subList(0, 10)));
+    assertEquals(one.size(), bulk.size());
+    for (int i = 0; i < bulk.size(); i++) {
+      assertTrue(one.contains(bulk.get(i)));
+      if (i > 0) {
+        TimeSpan a = (TimeSpan) bulk.get(i-1);
+        TimeSpan b = (TimeSpan) bulk.get(i);
+        assertTrue("order at "+i,
+                   a.getStartTime() < b.getStartTime() ||
+                   (a.getStartTime() == b.getStartTime() &&
+                    a.getEndTime() <= b.getEndTime()));
+      }
+    }
+
+    try {
+      bulk.addAll(java.util.Collections.singleton("not a TimeSpan"));
+      fail("added a non-TimeSpan");
+    } catch (IllegalArgumentException e) {
+      assertEquals(one.size(), bulk.size());
+    }
+  }
+
+  public void test_minimal() {
+    java.util.Random r = new java.util.Random(11);
+    // below and above the index threshold
+    int[] sizes = new int[] { 0, 1, 20, 2000 };
+    for (int n = 0; n < sizes.length; n++) {
+      TimeSpanSet tss = new TimeSpanSet();
+      for (int i = 0; i < sizes[n]; i++) {
+        long s = r.nextInt(5000);
+        X x = new X(s, Integer.toString(i));
+        x.setTimeSpan(s, s + 1 + r.nextInt(i % 20 == 0 ? 3000 : 30));
+        tss.add(x);
+      }
+      for (long t = -10; t < 5100; t += 7) {
+        assertSame("getMinimalIntersectingElement("+t+") of "+sizes[n],
+                   minimal(tss, t), tss.getMinimalIntersectingElement(t));
+      }
+    }
+  }
+
+  public void test_packed() throws Exception {
+    java.util.Random r = new java.util.Random(5);
+    TimeSpanSet plain = new TimeSpanSet();
+    TimeSpanSet packed = new PackedTimeSpanSet();
+    List batch = new ArrayList();
+    for (int i = 0; i < 3000; i++) {
+      long s = r.nextInt(20000);
+      TimeSpan ts = new TimeSpan.Span(s, s + 1 + r.nextInt(i % 10 == 0 ? 2000 : 40));
+      if (i % 3 == 0) {
+        batch.add(ts);
+      } else {
+        assertEquals(plain.add(ts), packed.add(ts));
+      }
+      if (i % 7 == 0 && !plain.isEmpty()) {
+        Object o = plain.get(r.nextInt(plain.size()));
+        assertTrue(plain.remove(o));
+        assertTrue(packed.remove(o));
+      }
+    }
+    assertEquals(plain.addAll(batch), packed.addAll(batch));
+    packed.trimToSize();
+    assertEquals(plain, packed);
+
+    // survives cloning and serialization with its columns intact
+    java.io.ByteArrayOutputStream bos = new java.io.ByteArrayOutputStream();
+    java.io.ObjectOutputStream oos = new java.io.ObjectOutputStream(bos);
+    oos.writeObject(packed);
+    oos.close();
+    TimeSpanSet copy = (TimeSpanSet)
+      new java.io.ObjectInputStream(
+          new java.io.ByteArrayInputStream(bos.toByteArray())).readObject();
+    TimeSpanSet[] sets = new TimeSpanSet[] {
+      packed, (TimeSpanSet) packed.clone(), copy };
+    for (int n = 0; n < sets.length; n++) {
+      assertEquals(packed.size(), sets[n].size());
+      for (long t = 0; t < 21000; t += 97) {
+        assertEquals(times(plain.intersectingSet(t)),
+                     times(sets[n].intersectingSet(t)));
+        assertEquals(times(plain.encapsulatedSet(t, t + 500)),
+                     times(sets[n].encapsulatedSet(t, t + 500)));
+        assertEquals(
+            times(java.util.Collections.singleton(plain.getMinimalIntersectingElement(t))),
+            times(java.util.Collections.singleton(sets[n].getMinimalIntersectingElement(t))));
+      }
+    }
+  }
+
+  public void test_packedSubListClear() {
+    int[] sizes = new int[] { 10, 200 };
+    for (int k = 0; k < sizes.length; k++) {
+      TimeSpanSet plain = new TimeSpanSet();
+      TimeSpanSet packed = new PackedTimeSpanSet();
+      for (int i = 0; i < sizes[k]; i++) {
+        TimeSpan ts = new TimeSpan.Span(i * 10, i * 10 + 5);
+        plain.add(ts);
+        packed.add(ts);
+      }
+      plain.subList(0, 5).clear();
+      packed.subList(0, 5).clear();
+      plain.subList(1, 3).clear();
+      packed.subList(1, 3).clear();
+      assertEquals(plain, packed);
+      assertEquals("50-55 ", times(packed.intersectingSet(52)));
+      for (long t = 0; t < sizes[k] * 10; t += 3) {
+        assertEquals(times(plain.intersectingSet(t)),
+                     times(packed.intersectingSet(t)));
+        assertEquals(times(plain.encapsulatedSet(t, t + 30)),
+                     times(packed.encapsulatedSet(t, t + 30)));
+      }
+    }
+  }
+
+  /** the element times, since deserialized copies are not equal **/
+  private static String times(java.util.Collection c) {
+    StringBuffer buf = new StringBuffer();
+    for (java.util.Iterator i = c.iterator(); i.hasNext(); ) {
+      TimeSpan ts = (TimeSpan) i.next();
+      if (ts != null) {
+        buf.append(ts.getStartTime()).append('-').append(ts.getEndTime());
+      }
+      buf.append(' ');
+    }
+    return buf.toString();
+  }
+
+  /** the original linear scan **/
+  private static Object minimal(TimeSpanSet tss, long time) {
+    TimeSpan best = null;
+    long bestd = 0;
+    for (int i = 0; i < tss.size(); i++) {
+      TimeSpan ts = (TimeSpan) tss.get(i);
+      if (time < ts.getStartTime()) break;
+      if (ts.getEndTime() < time) continue;
+      long d = ts.getEndTime() - ts.getStartTime();
+      if (best == null || d < bestd) {
+        best = ts;
+        bestd = d;
+      }
+    }
+    return best;
+  }
+
+  private static List scan(TimeSpanSet tss, long s, long e, int relation) {
+    List l = new ArrayList();
+    for (int i = 0; i < tss.size(); i++) {
+      TimeSpan ts = (TimeSpan) tss.get(i);
+      boolean match;
+      switch (relation) {
+      case 0:
+        match = ts.getStartTime() < e && ts.getEndTime() > s;
+        break;
+      case 1:
+        match = ts.getStartTime() >= s && ts.getEndTime() <= e;
+        break;
+      default:
+        match = ts.getStartTime() <= s && ts.getEndTime() >= e;
+      }
+      if (match) l.add(ts);
+    }
+    return l;
+  }
 }
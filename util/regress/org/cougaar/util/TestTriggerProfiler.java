@@ -0,0 +1,164 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TestTriggerProfiler extends TestCase {
+
+  /** A registry that runs registered triggers only when asked **/
+  private static class ManualRegistry implements TriggerRegistry {
+    final List queued = new ArrayList();
+    public Trigger register(final Trigger t) {
+      return new Trigger() {
+        public void trigger() {
+          queued.add(t);
+        }
+      };
+    }
+    public void unregister(Trigger t) {
+    }
+    void runAll() {
+      List l = new ArrayList(queued);
+      queued.clear();
+      for (int i = 0; i < l.size(); i++) {
+        ((Trigger) l.get(i)).trigger();
+      }
+    }
+  }
+
+  private static class NamedTrigger implements Trigger {
+    private final String name;
+    private final long sleep;
+    NamedTrigger(String name, long sleep) {
+      this.name = name;
+      this.sleep = sleep;
+    }
+    public void trigger() {
+      if (sleep > 0) {
+        try {
+          Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+        }
+      }
+    }
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  private static TriggerProfiler.Stats find(String name) {
+    List l = TriggerProfiler.getStats();
+    for (int i = 0; i < l.size(); i++) {
+      TriggerProfiler.Stats s = (TriggerProfiler.Stats) l.get(i);
+      if (name.equals(s.getName())) return s;
+    }
+    return null;
+  }
+
+  public void test_profile() {
+    boolean old = TriggerProfiler.isEnabled();
+    try {
+      ManualRegistry reg = new ManualRegistry();
+      SyncTriggerModelImpl busy = new SyncTriggerModelImpl(
+          reg, new NamedTrigger("profile-busy", 0));
+      SyncTriggerModelImpl slow = new SyncTriggerModelImpl(
+          reg, new NamedTrigger("profile-slow", 20));
+      busy.start();
+      slow.start();
+
+      TriggerProfiler.setEnabled(false);
+      busy.trigger();
+      reg.runAll();
+      assertNull(find("profile-busy"));
+
+      TriggerProfiler.setEnabled(true);
+      for (int i = 0; i < 10; i++) {
+        busy.trigger();
+        busy.trigger();
+        busy.trigger();
+        reg.runAll();
+      }
+      slow.trigger();
+      reg.runAll();
+
+      TriggerProfiler.Stats b = find("profile-busy");
+      assertNotNull(b);
+      assertEquals(30, b.getTriggers());
+      assertEquals(20, b.getCoalesced());
+      assertEquals(10, b.getRuns());
+      assertEquals(3.0, b.getTriggersPerRun(), 1e-9);
+      assertEquals(10, b.getRunTime().getCount());
+      assertEquals(10, b.getQueueLatency().getCount());
+
+      TriggerProfiler.Stats s = find("profile-slow");
+      assertEquals(1, s.getRuns());
+      assertTrue(s.getRunTime().getMaxNanos() >= 20000000L);
+
+      List top = TriggerProfiler.getStats(TriggerProfiler.BY_MAX_RUN_TIME, 1);
+      assertEquals(1, top.size());
+      assertSame(s, top.get(0));
+      assertTrue(TriggerProfiler.getReport().indexOf("profile-busy") > 0);
+
+      b.reset();
+      assertEquals(0, b.getTriggers());
+      assertEquals(0, b.getRunTime().getCount());
+    } finally {
+      TriggerProfiler.setEnabled(old);
+    }
+  }
+
+  public void test_toggleProfiling() throws Exception {
+    boolean old = TriggerProfiler.isEnabled();
+    try {
+      ManualRegistry reg = new ManualRegistry();
+      SyncTriggerModelImpl tm = new SyncTriggerModelImpl(
+          reg, new NamedTrigger("profile-toggle", 0));
+      tm.start();
+      TriggerProfiler.setEnabled(true);
+      tm.trigger();
+      reg.runAll();
+      TriggerProfiler.Stats s = find("profile-toggle");
+      assertEquals(1, s.getQueueLatency().getCount());
+
+      // queued unprofiled, run profiled:  no latency to record
+      TriggerProfiler.setEnabled(false);
+      tm.trigger();
+      Thread.sleep(30);
+      TriggerProfiler.setEnabled(true);
+      reg.runAll();
+      assertEquals(2, s.getRuns());
+      assertEquals(1, s.getQueueLatency().getCount());
+      assertTrue(s.getQueueLatency().getMaxNanos() < 30000000L);
+    } finally {
+      TriggerProfiler.setEnabled(old);
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compares the bulk-loading {@link TimeSpanSet#addAll} and the
+ * indexed range queries with the per-element adds and predicate scans
+ * they replaced, and the same queries on a {@link PackedTimeSpanSet}.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.util.TimeSpanSetBenchmark [size]
+ * </pre>
+ */
+public class TimeSpanSetBenchmark {
+
+  public static void main(String[] args) {
+    int size = (args.length > 0 ? Integer.parseInt(args[0]) : 100000);
+    java.util.Random r = new java.util.Random(17);
+
+    // a schedule-like set: mostly short spans with the odd long one
+    List spans = new ArrayList(size);
+    for (int i = 0; i < size; i++) {
+      long s = ((long) i) * 10 + r.nextInt(10);
+      long d = 1 + (i % 100 == 0 ? r.nextInt(100000) : r.nextInt(50));
+      spans.add(new TimeSpan.Span(s, s + d));
+    }
+    final List shuffled = new ArrayList(spans);
+    java.util.Collections.shuffle(shuffled, r);
+    Benchmarks.time("bulk load of "+size+" shuffled spans", 1, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          Benchmarks.sink = new TimeSpanSet(shuffled);
+        }
+      }
+    });
+    Benchmarks.time("one-at-a-time load of "+size+" shuffled spans", 1, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          TimeSpanSet s = new TimeSpanSet(shuffled.size());
+          for (int j = 0; j < shuffled.size(); j++) {
+            s.add(shuffled.get(j));
+          }
+          Benchmarks.sink = s;
+        }
+      }
+    });
+
+    final TimeSpanSet tss = new TimeSpanSet(spans);
+    final long range = ((long) size) * 10;
+    final long[] probes = new long[1024];
+    for (int i = 0; i < probes.length; i++) {
+      probes[i] = (long) (r.nextDouble() * range);
+    }
+
+    System.out.println("TimeSpanSet of " + tss.size() + " elements");
+
+    Benchmarks.time("scan intersectingSet(t)", 2000, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          final long t = probes[i & 1023];
+          Benchmarks.sink = tss.filter(new UnaryPredicate() {
+            public boolean execute(Object o) {
+              TimeSpan ts = (TimeSpan) o;
+              return t >= ts.getStartTime() && t < ts.getEndTime();
+            }
+          });
+        }
+      }
+    });
+    Benchmarks.time("indexed intersectingSet(t)", 2000, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          Benchmarks.sink = tss.intersectingSet(probes[i & 1023]);
+        }
+      }
+    });
+
+    Benchmarks.time("scan encapsulatedSet(t, t+1000)", 2000, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          final long t0 = probes[i & 1023];
+          final long t1 = t0 + 1000;
+          Benchmarks.sink = tss.filter(new UnaryPredicate() {
+            public boolean execute(Object o) {
+              TimeSpan ts = (TimeSpan) o;
+              return ts.getStartTime() >= t0 && ts.getEndTime() <= t1;
+            }
+          });
+        }
+      }
+    });
+    Benchmarks.time("indexed encapsulatedSet(t, t+1000)", 2000, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          long t0 = probes[i & 1023];
+          Benchmarks.sink = tss.encapsulatedSet(t0, t0 + 1000);
+        }
+      }
+    });
+
+    Benchmarks.time("scan encapsulatingSet(t, t+10)", 2000, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          final long t0 = probes[i & 1023];
+          final long t1 = t0 + 10;
+          Benchmarks.sink = tss.filter(new UnaryPredicate() {
+            public boolean execute(Object o) {
+              TimeSpan ts = (TimeSpan) o;
+              return ts.getStartTime() <= t0 && ts.getEndTime() >= t1;
+            }
+          });
+        }
+      }
+    });
+    Benchmarks.time("indexed encapsulatingSet(t, t+10)", 2000, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          long t0 = probes[i & 1023];
+          Benchmarks.sink = tss.encapsulatingSet(new TimeSpan.Span(t0, t0 + 10));
+        }
+      }
+    });
+
+    Benchmarks.time("scan getMinimalIntersectingElement(t)", 2000, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          long t = probes[i & 1023];
+          TimeSpan best = null;
+          long bestd = 0;
+          for (int j = 0, l = tss.size(); j < l; j++) {
+            TimeSpan ts = (TimeSpan) tss.get(j);
+            if (t < ts.getStartTime()) break;
+            if (ts.getEndTime() < t) continue;
+            long d = ts.getEndTime() - ts.getStartTime();
+            if (best == null || d < bestd) {
+              best = ts;
+              bestd = d;
+            }
+          }
+          Benchmarks.sink = best;
+        }
+      }
+    });
+    Benchmarks.time("indexed getMinimalIntersectingElement(t)", 2000, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          Benchmarks.sink = tss.getMinimalIntersectingElement(probes[i & 1023]);
+        }
+      }
+    });
+
+    final TimeSpanSet packed = new PackedTimeSpanSet(spans);
+    Benchmarks.time("packed intersectingSet(t)", 2000, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          Benchmarks.sink = packed.intersectingSet(probes[i & 1023]);
+        }
+      }
+    });
+    Benchmarks.time("packed encapsulatedSet(t, t+1000)", 2000, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          long t0 = probes[i & 1023];
+          Benchmarks.sink = packed.encapsulatedSet(t0, t0 + 1000);
+        }
+      }
+    });
+    Benchmarks.time("packed getMinimalIntersectingElement(t)", 2000, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          Benchmarks.sink = packed.getMinimalIntersectingElement(probes[i & 1023]);
+        }
+      }
+    });
+
+    final NonOverlappingTimeSpanSet notss = new NonOverlappingTimeSpanSet();
+    for (int i = 0; i < size; i++) {
+      notss.add(new TimeSpan.Span(i * 10L, i * 10L + 5));
+    }
+    Benchmarks.time("NonOverlappingTimeSpanSet.intersects(t)", 100000, new Benchmarks.Op() {
+      public void run(int ops) {
+        for (int i = 0; i < ops; i++) {
+          Benchmarks.sink = notss.intersects(probes[i & 1023]);
+        }
+      }
+    });
+
+    // the first query after a modification pays for an index rebuild
+    Benchmarks.time("add+remove, then intersectingSet(t)", 200, new Benchmarks.Op() {
+      public void run(int ops) {
+        TimeSpan extra = new TimeSpan.Span(range / 2, range / 2 + 5);
+        for (int i = 0; i < ops; i++) {
+          tss.add(extra);
+          tss.remove(extra);
+          Collection c = tss.intersectingSet(probes[i & 1023]);
+          Benchmarks.sink = c;
+        }
+      }
+    });
+  }
+}
@@ -30,6 +30,10 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import org.cougaar.core.component.TestContainerSupport;
+import org.cougaar.core.component.TestPropagatingServiceBroker;
+import org.cougaar.core.component.TestServiceBrokerSupport;
+
 public class UtilTest extends TestCase {
   public void test1() {
     assertEquals(1, 1);
@@ -39,17 +43,37 @@ public class UtilTest extends TestCase {
     TestSuite suite= new TestSuite("Cougaar Utility Class Tests");
     suite.addTest(new TestSuite(TestArguments.class));
     suite.addTest(new TestSuite(TestAnnotations.class));
+    suite.addTest(new TestSuite(TestArrayMap.class));
+    suite.addTest(new TestSuite(TestBitSet2D.class));
     suite.addTest(new TestSuite(TestCircularQueue.class));
+    suite.addTest(new TestSuite(TestConcurrentCircularQueue.class));
+    suite.addTest(new TestSuite(TestConcurrentLRUCache.class));
+    suite.addTest(new TestSuite(TestContainerSupport.class));
     suite.addTest(new TestSuite(TestDBProperties.class));
+    suite.addTest(new TestSuite(TestExecutorTriggerRegistry.class));
+    suite.addTest(new TestSuite(TestFastString.class));
+    suite.addTest(new TestSuite(TestFlatArrayMap.class));
+    suite.addTest(new TestSuite(TestKeyedSet.class));
+    suite.addTest(new TestSuite(TestLRUExpireMap.class));
     suite.addTest(new TestSuite(TestMappings.class));
     suite.addTest(new TestSuite(TestNonOverlappingTimeSpanSet.class));
+    suite.addTest(new TestSuite(TestPooledExecutor.class));
+    suite.addTest(new TestSuite(TestPrimitiveArrayLists.class));
+    suite.addTest(new TestSuite(TestPrimitiveHashSets.class));
+    suite.addTest(new TestSuite(TestPropagatingServiceBroker.class));
     suite.addTest(new TestSuite(TestPropertyTree.class));
     suite.addTest(new TestSuite(TestRarelyModifiedList.class));
+    suite.addTest(new TestSuite(TestRarelyModifiedTimeSpanSet.class));
+    suite.addTest(new TestSuite(TestReusableThreadPool.class));
+    suite.addTest(new TestSuite(TestServiceBrokerSupport.class));
     suite.addTest(new TestSuite(TestShortDateFormat.class));
     suite.addTest(new TestSuite(TestStackMachine.class));
     suite.addTest(new TestSuite(TestStateMachine.class));
+    suite.addTest(new TestSuite(TestStringPool.class));
     suite.addTest(new TestSuite(TestStringUtility.class));
+    suite.addTest(new TestSuite(TestSyncTriggerModel.class));
     suite.addTest(new TestSuite(TestTimeSpanSet.class));
+    suite.addTest(new TestSuite(TestTriggerProfiler.class));
     suite.addTest(new TestSuite(TestWaitQueue.class));
     return suite;
   }
@@ -0,0 +1,110 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Starts 10,000 ReusableThreads that all block until released, and
+ * reports the time until all have started and the heap and thread
+ * count while they wait, first on the {@link PooledExecutor} (whose
+ * overflow spawns platform threads) and then, if the JVM supports
+ * them, on virtual threads.
+ * <p>
+ * Run by hand:<pre>
+ *   java org.cougaar.util.VirtualThreadBenchmark [tasks]
+ * </pre>
+ * Platform thread stacks are not part of the heap, so compare the
+ * thread counts as well as the heap figures.
+ */
+public class VirtualThreadBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int tasks = (args.length > 0 ? Integer.parseInt(args[0]) : 10000);
+    PooledExecutor pooled = PooledExecutor.createDefault(
+        Thread.currentThread().getThreadGroup(), "bench");
+    run("pooled platform threads", tasks, pooled);
+    pooled.shutdown();
+    if (VirtualThreads.isAvailable()) {
+      ExecutorService virtual = VirtualThreads.newExecutor("bench");
+      run("virtual threads", tasks, virtual);
+      virtual.shutdown();
+    } else {
+      System.out.println("virtual threads not supported by this JVM");
+    }
+  }
+
+  private static void run(String name, int tasks,
+                          java.util.concurrent.Executor executor)
+    throws Exception {
+    ReusableThreadPool pool = new ReusableThreadPool(
+        Thread.currentThread().getThreadGroup(), 32, 64, executor);
+    final CountDownLatch started = new CountDownLatch(tasks);
+    final CountDownLatch release = new CountDownLatch(1);
+    Runnable r = new Runnable() {
+      public void run() {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+        }
+      }
+    };
+    long before = usedMemory();
+    int threadsBefore = Thread.activeCount();
+    long t0 = System.nanoTime();
+    for (int i = 0; i < tasks; i++) {
+      pool.getThread(r, "blocked-" + i).start();
+    }
+    started.await();
+    long t1 = System.nanoTime();
+    long after = usedMemory();
+    int threads = Thread.activeCount() - threadsBefore;
+    release.countDown();
+    System.out.println(
+        Benchmarks.pad(name, 32) +
+        String.format("%8.1f ms to start, %8d KB heap, %6d platform threads",
+                      (t1 - t0) / 1e6, (after - before) / 1024, threads));
+  }
+
+  private static long usedMemory() {
+    Runtime rt = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      long u = rt.totalMemory() - rt.freeMemory();
+      if (u < used) used = u;
+    }
+    return used;
+  }
+}
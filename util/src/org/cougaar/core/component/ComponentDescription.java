@@ -29,6 +29,8 @@ import java.io.Serializable;
 import java.net.URL;
 import java.util.Comparator;
 
+import org.cougaar.util.Strings;
+
 /**
  * An immutable description of a loadable component (for example, 
  * a plugin, servlet, etc).
@@ -136,9 +138,9 @@ public final class ComponentDescription implements Serializable {
                               Object lease,
                               Object policy,
                               int priority) {
-    this.name = name;
+    this.name = Strings.pooled(name);
     this.insertionPoint = insertionPoint;
-    this.classname = classname;
+    this.classname = Strings.pooled(classname);
     this.codebase = codebase;
     this.parameter = parameter;
     this.certificate = certificate;
@@ -321,6 +323,16 @@ public int hashCode() {
     }
   }
 
+  /** Canonicalize the name and classname if a StringPool is enabled **/
+  private Object readResolve() {
+    if (Strings.getPool() == null) {
+      return this;
+    }
+    return new ComponentDescription(
+        name, insertionPoint, classname, codebase, parameter,
+        certificate, lease, policy, priority);
+  }
+
   @Override
 public String toString() {
     return "<ComponentDescription "+classname+
@@ -28,10 +28,20 @@ package org.cougaar.core.component;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.cougaar.bootstrap.SystemProperties;
 import org.cougaar.util.Filters;
 import org.cougaar.util.GenericStateModel;
 import org.cougaar.util.GenericStateModelAdapter;
@@ -77,6 +87,14 @@ import org.cougaar.util.log.Logging;
  *       all we need to do is intercept ServiceBroker calls!</li>
  *   <li>Plenty more to do..</li>
  * </ul> 
+ *
+ * @property org.cougaar.core.component.ContainerSupport.parallelLoad
+ * If true, the direct children within each priority band are
+ * initialized concurrently on a shared thread pool (defaults to false).
+ * See {@link #isParallelLoad}.
+ * @property org.cougaar.core.component.ContainerSupport.parallelism
+ * The number of threads used by parallel loading (defaults to the
+ * number of processors).
  */
 public abstract class ContainerSupport
 extends GenericStateModelAdapter
@@ -84,6 +102,21 @@ implements Container, StateObject
 {
   private static final boolean ENABLE_VIEW_SERVICE = true;
 
+  private static final boolean PARALLEL_LOAD =
+    SystemProperties.getBoolean(
+        "org.cougaar.core.component.ContainerSupport.parallelLoad", false);
+
+  private static final int PARALLELISM =
+    SystemProperties.getInt(
+        "org.cougaar.core.component.ContainerSupport.parallelism",
+        Runtime.getRuntime().availableProcessors());
+
+  /** shared by all containers, created on first use **/
+  private static ExecutorService loadPool;
+
+  /** Class to Boolean: does it override add or addComponent? **/
+  private static final Map addOverrides = new ConcurrentHashMap();
+
   protected final ComponentFactory componentFactory = specifyComponentFactory();
   /** this is the prefix that all subcomponents must have as a prefix **/
   protected final String containmentPrefix = specifyContainmentPoint()+".";
@@ -103,6 +136,24 @@ implements Container, StateObject
    **/
   private final RarelyModifiedList boundComponents = new RarelyModifiedList();
 
+  /** Index of the boundComponents with ContainerBinders, used to route
+   * the add and remove of grandchildren by insertion point.
+   * Maps the insertion point of each child's ComponentDescription to
+   * a copy-on-write Route[], and is modified under the boundComponents
+   * lock along with the list.
+   **/
+  private final ConcurrentHashMap routes = new ConcurrentHashMap();
+
+  /** Routes to ContainerBinder children added without a description,
+   * which are offered every grandchild.
+   **/
+  private volatile Route[] anonymousRoutes = NO_ROUTES;
+
+  /** Orders routes by when they were added, guarded by boundComponents **/
+  private long routeCount;
+
+  private static final Route[] NO_ROUTES = new Route[0];
+
   /** a Sorted Collection of child BinderFactory components.
    * Note that we cannot use TreeSet because of the Collection API's
    * braindamaged insistance on conflating identity and order, so
@@ -499,28 +550,17 @@ implements Container, StateObject
 
       return addComponent(cd, cstate);
     } else {                  // more dots: try inserting in subcomponents
-      for (Iterator it = boundComponents.iterator(); it.hasNext(); ) {
-        BoundComponent bc = (BoundComponent) it.next();
-           
-        Binder b = bc.getBinder();
-        if (b instanceof ContainerBinder) {
-          Object bcc = bc.getComponent();
-          if (bcc instanceof ComponentDescription) {
-            ComponentDescription bccd = (ComponentDescription) bcc;
-            if (!(ip.startsWith(bccd.getInsertionPoint()))) {
-              continue;
-            }
-          } else {
-            // non-desc child, but okay
-          }
- 
-          try {
-            boolean ret = ((ContainerBinder)b).add(o);
-            // child already contains or added it
-            return ret;
-          } catch (IncorrectInsertionPointException ipE) {
-            // wrong insertion point
-          }
+      // children whose insertion point is a prefix of ip, including
+      // non-desc children, in the order they were added
+      Route[][] rs = findRoutes(ip, true);
+      int[] pos = new int[rs.length];
+      for (Route r = nextRoute(rs, pos); r != null; r = nextRoute(rs, pos)) {
+        try {
+          boolean ret = r.binder.add(o);
+          // child already contains or added it
+          return ret;
+        } catch (IncorrectInsertionPointException ipE) {
+          // wrong insertion point
         }
       }
     }
@@ -553,6 +593,19 @@ implements Container, StateObject
 
     boolean isDirectChild = (0 >= tail.indexOf('.'));
 
+    if (!isDirectChild) {
+      // child container
+      Route[][] rs = findRoutes(ip, false);
+      int[] pos = new int[rs.length];
+      for (Route r = nextRoute(rs, pos); r != null; r = nextRoute(rs, pos)) {
+        if (r.binder.remove(cd)) {
+          // bail out completely - need not remove anything locally
+          return true;
+        }
+      }
+      return false;
+    }
+
     // find the child and remove it
     Binder removedBinder = null;
     synchronized (boundComponents) {
@@ -564,26 +617,11 @@ implements Container, StateObject
           continue;
         }
         ComponentDescription bccd = (ComponentDescription) bcc;
-        if (isDirectChild) {
-          // at this level in hierarchy
-          if (cd.equals(bccd)) {
-            removedBinder = bc.getBinder();
-            boundComponents.remove(bc); // cannot use it.remove() here
-            break;
-          }
-        } else {
-          // child container
-          String bctail = 
-            bccd.getInsertionPoint().substring(containmentPrefix.length());
-
-          if (tail.startsWith(bctail)) {
-            Binder bcb = bc.getBinder();
-            if ((bcb instanceof ContainerBinder) &&
-                (((ContainerBinder) bcb).remove(cd))) {
-              // bail out completely - need not remove anything locally
-              return true;
-            }
-          }
+        // at this level in hierarchy
+        if (cd.equals(bccd)) {
+          removedBinder = bc.getBinder();
+          removeBoundComponent(bc); // cannot use it.remove() here
+          break;
         }
       }
     }
@@ -663,6 +701,19 @@ implements Container, StateObject
    * @throws ComponentLoadFailure when the component can not be loaded.
    **/
   protected boolean addComponent(Object c, Object cstate) {
+    Binder b = attachComponent(c, cstate).getBinder();
+    if (needsInitialize()) {
+      b.initialize();
+      transitionComponent(b);
+    }
+    return true;
+  }
+
+  /**
+   * Bind a component and add it to our set, without changing its
+   * model state.
+   */
+  private BoundComponent attachComponent(Object c, Object cstate) {
     Binder b = bindComponent(c);
     if (b == null) {
       throw new ComponentLoadFailure("No binder found", c);
@@ -678,27 +729,173 @@ implements Container, StateObject
        ((ViewedServiceBroker) sb).getComponentView() :
        null);
     BoundComponent bc = new BoundComponent(b, c, cv);
-    boundComponents.add(bc);
+    addBoundComponent(bc);
+    return bc;
+  }
 
-    // transition state to match our container's state
+  //
+  // boundComponents and insertion point routes
+  //
+
+  /** A child ContainerBinder that may accept grandchildren **/
+  private static final class Route {
+    final long seq;
+    final BoundComponent bc;
+    final ContainerBinder binder;
+    Route(long seq, BoundComponent bc) {
+      this.seq = seq;
+      this.bc = bc;
+      this.binder = (ContainerBinder) bc.getBinder();
+    }
+  }
+
+  private void addBoundComponent(BoundComponent bc) {
+    synchronized (boundComponents) {
+      boundComponents.add(bc);
+      if (!(bc.getBinder() instanceof ContainerBinder)) {
+        return;
+      }
+      Route r = new Route(routeCount++, bc);
+      Object c = bc.getComponent();
+      if (c instanceof ComponentDescription) {
+        String ip = ((ComponentDescription) c).getInsertionPoint();
+        routes.put(ip, append((Route[]) routes.get(ip), r));
+      } else {
+        anonymousRoutes = append(anonymousRoutes, r);
+      }
+    }
+  }
+
+  private void removeBoundComponent(BoundComponent bc) {
+    synchronized (boundComponents) {
+      if (!boundComponents.remove(bc) ||
+          !(bc.getBinder() instanceof ContainerBinder)) {
+        return;
+      }
+      Object c = bc.getComponent();
+      if (c instanceof ComponentDescription) {
+        String ip = ((ComponentDescription) c).getInsertionPoint();
+        Route[] rs = remove((Route[]) routes.get(ip), bc);
+        if (rs == null) {
+          routes.remove(ip);
+        } else {
+          routes.put(ip, rs);
+        }
+      } else {
+        Route[] rs = remove(anonymousRoutes, bc);
+        anonymousRoutes = (rs == null ? NO_ROUTES : rs);
+      }
+    }
+  }
+
+  private void clearBoundComponents() {
+    synchronized (boundComponents) {
+      boundComponents.clear();
+      routes.clear();
+      anonymousRoutes = NO_ROUTES;
+    }
+  }
+
+  private static Route[] append(Route[] rs, Route r) {
+    if (rs == null) {
+      return new Route[] { r };
+    }
+    Route[] ret = new Route[rs.length + 1];
+    System.arraycopy(rs, 0, ret, 0, rs.length);
+    ret[rs.length] = r;
+    return ret;
+  }
+
+  /** @return a copy of rs without bc, or null if empty **/
+  private static Route[] remove(Route[] rs, BoundComponent bc) {
+    if (rs == null) {
+      return null;
+    }
+    for (int i = 0; i < rs.length; i++) {
+      if (rs[i].bc == bc) {
+        if (rs.length == 1) {
+          return null;
+        }
+        Route[] ret = new Route[rs.length - 1];
+        System.arraycopy(rs, 0, ret, 0, i);
+        System.arraycopy(rs, i + 1, ret, i, ret.length - i);
+        return ret;
+      }
+    }
+    return rs;
+  }
+
+  /**
+   * Find the children whose insertion point is ip or a dotted prefix
+   * of it, e.g. "a.b" and "a.b.c" for "a.b.c".  This is one map
+   * lookup per dot in ip, regardless of the number of children.
+   */
+  private Route[][] findRoutes(String ip, boolean anonymous) {
+    List l = new ArrayList(3);
+    if (anonymous && anonymousRoutes.length > 0) {
+      l.add(anonymousRoutes);
+    }
+    // our children all share our containment prefix
+    int i = containmentPrefix.length();
+    while (true) {
+      int j = ip.indexOf('.', i);
+      Route[] rs = (Route[]) routes.get(j < 0 ? ip : ip.substring(0, j));
+      if (rs != null) {
+        l.add(rs);
+      }
+      if (j < 0) {
+        break;
+      }
+      i = j + 1;
+    }
+    return (Route[][]) l.toArray(new Route[l.size()][]);
+  }
+
+  /**
+   * @return the route with the lowest sequence number at the
+   * positions in rs, and advance its position, or null if none
+   * are left.
+   */
+  private static Route nextRoute(Route[][] rs, int[] pos) {
+    Route next = null;
+    int k = -1;
+    for (int i = 0; i < rs.length; i++) {
+      if (pos[i] < rs[i].length) {
+        Route r = rs[i][pos[i]];
+        if (next == null || r.seq < next.seq) {
+          next = r;
+          k = i;
+        }
+      }
+    }
+    if (k >= 0) {
+      pos[k]++;
+    }
+    return next;
+  }
+
+  /** @return true if a new child must be initialized to match our state **/
+  private boolean needsInitialize() {
+    return getModelState() != GenericStateModel.UNINITIALIZED;
+  }
+
+  /**
+   * Transition an initialized binder to match our container's state.
+   */
+  private void transitionComponent(Binder b) {
     int myState = getModelState();
     boolean suspend = (myState == GenericStateModel.IDLE);
     boolean start = (suspend || myState == GenericStateModel.ACTIVE);
     boolean load = (start || myState == GenericStateModel.LOADED);
-    boolean init = (load || myState != GenericStateModel.UNINITIALIZED);
-    if (init) {
-      b.initialize();
-      if (load) {
-        b.load();
-        if (start) {
-          b.start();
-          if (suspend) {
-            b.suspend();
-          }
+    if (load) {
+      b.load();
+      if (start) {
+        b.start();
+        if (suspend) {
+          b.suspend();
         }
       }
     }
-    return true;
   }
 
   /**
@@ -947,7 +1144,7 @@ public void unload() {
       Binder b = (Binder) childBinders.get(i);
       b.unload();
     }
-    boundComponents.clear();
+    clearBoundComponents();
 
     if (childServiceBroker != null) {
       destroyChildServiceBroker(childServiceBroker);
@@ -1032,16 +1229,293 @@ public void unload() {
 
     List pcd = cds.selectComponentDescriptions(priority);
     if (pcd == null) return;
+
+    if (isParallelLoad() && !Thread.holdsLock(this) && !overridesAdd()) {
+      loadSubComponentsInParallel(pcd);
+      return;
+    }
     
+    Logger l = Logging.getLogger(ContainerSupport.class);
     for (Iterator it = pcd.iterator(); it.hasNext(); ) {
       Object o = it.next();
       if (isSubComponentLoadable(o)) {
+        long t = (l.isDebugEnabled() ? System.nanoTime() : 0);
+        try {
+          add(o);
+        } catch (RuntimeException re) {
+          l.error("Skipping load of "+o+" into "+this, re);
+          continue;
+        }
+        if (l.isDebugEnabled()) {
+          logLoadTime(l, o, System.nanoTime() - t, 0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Should the components within a priority band be loaded in
+   * parallel?
+   * <p>
+   * If true, the direct children of each band are bound and added
+   * in order on the loading thread, then initialized (instantiated,
+   * given their services and initialized) concurrently on a
+   * shared thread pool, and finally loaded and started in order on the
+   * loading thread.  Other descriptions, such as binder factories
+   * and grandchildren, are added in order between these batches.
+   * Bands are still loaded one after the other.
+   * A child that fails to initialize or load, including with an
+   * <code>Error</code> such as a <code>LinkageError</code>, is logged
+   * and removed, so that the rest of the band still loads.  This
+   * differs from sequential loading, where a failed child is logged
+   * but left as {@link #add(Object)} left it, and an
+   * <code>Error</code> propagates to the caller.
+   * <p>
+   * Parallel loading adds the direct children without calling
+   * {@link #add(Object)} or {@link #addComponent(Object,Object)}, so
+   * it is skipped, and the band is loaded sequentially, in containers
+   * that override either method.
+   * <p>
+   * Only enable this if the child components don't depend upon
+   * each other's initialization order.  The default is the
+   * "org.cougaar.core.component.ContainerSupport.parallelLoad"
+   * system property.
+   **/
+  protected boolean isParallelLoad() {
+    return PARALLEL_LOAD;
+  }
+
+  /** @return true if our class overrides add or addComponent **/
+  private boolean overridesAdd() {
+    Class cl = getClass();
+    Boolean b = (Boolean) addOverrides.get(cl);
+    if (b == null) {
+      b = Boolean.valueOf(declaresAdd(cl));
+      addOverrides.put(cl, b);
+    }
+    return b.booleanValue();
+  }
+
+  private static boolean declaresAdd(Class cl) {
+    for (Class c = cl; 
+         c != null && c != ContainerSupport.class;
+         c = c.getSuperclass()) {
+      try {
+        c.getDeclaredMethod("add", new Class[] {Object.class});
+        return true;
+      } catch (NoSuchMethodException nsme) {
+      } catch (SecurityException se) {
+        return true;
+      }
+      try {
+        c.getDeclaredMethod(
+            "addComponent", new Class[] {Object.class, Object.class});
+        return true;
+      } catch (NoSuchMethodException nsme) {
+      } catch (SecurityException se) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void loadSubComponentsInParallel(List pcd) {
+    Logger l = Logging.getLogger(ContainerSupport.class);
+    List batch = new ArrayList();
+    Set seen = new HashSet();
+    for (Iterator it = pcd.iterator(); it.hasNext(); ) {
+      Object o = it.next();
+      if (!isSubComponentLoadable(o)) {
+        continue;
+      }
+      ComponentDescription cd = getDirectChildDescription(o);
+      if (cd == null) {
+        // binder factory, grandchild, etc: keep it in order
+        loadInParallel(l, batch);
+        batch.clear();
+        seen.clear();
         try {
           add(o);
         } catch (RuntimeException re) {
-          Logger l = Logging.getLogger(ContainerSupport.class);
           l.error("Skipping load of "+o+" into "+this, re);
         }
+        continue;
+      }
+      if (!seen.add(cd) || containsComponent(cd)) {
+        // already loaded
+        continue;
+      }
+      Object cstate = 
+        (o instanceof StateTuple ? ((StateTuple) o).getState() : null);
+      try {
+        batch.add(new PendingLoad(o, attachComponent(cd, cstate)));
+      } catch (RuntimeException re) {
+        l.error("Skipping load of "+o+" into "+this, re);
+      }
+    }
+    loadInParallel(l, batch);
+  }
+
+  /**
+   * @return the description if the object would be added as a direct
+   * child component, otherwise null
+   */
+  private ComponentDescription getDirectChildDescription(Object o) {
+    ComponentDescription cd;
+    if (o instanceof ComponentDescription) {
+      cd = (ComponentDescription) o;
+    } else if (o instanceof StateTuple) {
+      cd = ((StateTuple) o).getComponentDescription();
+    } else {
+      return null;
+    }
+    String ip = ((cd != null) ? cd.getInsertionPoint() : null);
+    if (ip == null || !ip.startsWith(containmentPrefix)) {
+      return null;
+    }
+    String tail = ip.substring(containmentPrefix.length());
+    if ("Binder".equals(tail) || "BinderFactory".equals(tail) ||
+        0 < tail.indexOf('.')) {
+      return null;
+    }
+    return cd;
+  }
+
+  /**
+   * Initialize the attached components concurrently, then load and
+   * start them in order.
+   */
+  private void loadInParallel(Logger l, List batch) {
+    int n = batch.size();
+    if (n == 0) {
+      return;
+    }
+    if (!needsInitialize()) {
+      return;
+    }
+    if (n == 1 || Thread.currentThread() instanceof LoadThread) {
+      // a single child, or a nested container already on a pool
+      // thread, where waiting for the pool could deadlock
+      for (int i = 0; i < n; i++) {
+        ((PendingLoad) batch.get(i)).run();
+      }
+    } else {
+      List tasks = new ArrayList(n);
+      for (int i = 0; i < n; i++) {
+        tasks.add(Executors.callable((PendingLoad) batch.get(i)));
+      }
+      try {
+        getLoadPool().invokeAll(tasks);
+      } catch (InterruptedException ie) {
+        // wait for the running initializations, fail the rest
+        for (int i = 0; i < n; i++) {
+          ((PendingLoad) batch.get(i)).cancel(ie);
+        }
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      PendingLoad pl = (PendingLoad) batch.get(i);
+      if (pl.failure != null) {
+        removeBoundComponent(pl.bc);
+        l.error("Skipping load of "+pl.o+" into "+this, pl.failure);
+        continue;
+      }
+      long t = (l.isDebugEnabled() ? System.nanoTime() : 0);
+      try {
+        transitionComponent(pl.bc.getBinder());
+      } catch (Throwable e) {
+        // as in PendingLoad, so the rest of the batch still loads
+        removeBoundComponent(pl.bc);
+        l.error("Skipping load of "+pl.o+" into "+this, e);
+        continue;
+      }
+      if (l.isDebugEnabled()) {
+        logLoadTime(l, pl.o, pl.initTime, System.nanoTime() - t);
+      }
+    }
+  }
+
+  private void logLoadTime(Logger l, Object o, long initNanos, long loadNanos) {
+    l.debug(
+        "Loaded "+o+" into "+this+" in "+
+        ((initNanos + loadNanos) / 1000000)+" millis"+
+        (loadNanos == 0 ? "" :
+         " ("+(initNanos / 1000000)+" initialize, "+
+         (loadNanos / 1000000)+" load/start)"));
+  }
+
+  private static synchronized ExecutorService getLoadPool() {
+    if (loadPool == null) {
+      int n = Math.max(1, PARALLELISM);
+      ThreadPoolExecutor e = new ThreadPoolExecutor(
+          n, n, 60, TimeUnit.SECONDS, new LinkedBlockingQueue(),
+          new ThreadFactory() {
+            private int count;
+            public synchronized Thread newThread(Runnable r) {
+              Thread t = new LoadThread(r, "ContainerSupport-load-"+(++count));
+              t.setDaemon(true);
+              return t;
+            }
+          });
+      e.allowCoreThreadTimeOut(true);
+      loadPool = e;
+    }
+    return loadPool;
+  }
+
+  /** Marks the load pool threads **/
+  private static final class LoadThread extends Thread {
+    LoadThread(Runnable r, String name) {
+      super(r, name);
+    }
+  }
+
+  /** A bound component waiting to be initialized by the load pool **/
+  private static final class PendingLoad implements Runnable {
+    final Object o;
+    final BoundComponent bc;
+    // the loading thread's context class loader
+    private final ClassLoader loader =
+      Thread.currentThread().getContextClassLoader();
+    // set by run, read after invokeAll
+    Throwable failure;
+    long initTime;
+    // guarded by this
+    private boolean ran;
+    PendingLoad(Object o, BoundComponent bc) {
+      this.o = o;
+      this.bc = bc;
+    }
+    void initialize() {
+      long t = System.nanoTime();
+      try {
+        bc.getBinder().initialize();
+      } catch (Throwable e) {
+        // e.g. a LinkageError from instantiating the component
+        failure = e;
+      }
+      initTime = System.nanoTime() - t;
+    }
+    public synchronized void run() {
+      if (ran) {
+        return;
+      }
+      ran = true;
+      Thread thread = Thread.currentThread();
+      ClassLoader old = thread.getContextClassLoader();
+      thread.setContextClassLoader(loader);
+      try {
+        initialize();
+      } finally {
+        thread.setContextClassLoader(old);
+      }
+    }
+    /** Wait for a running initialize, or fail it if it never ran **/
+    synchronized void cancel(InterruptedException ie) {
+      if (!ran) {
+        ran = true;
+        failure = new ComponentLoadFailure("Interrupted", o, ie);
       }
     }
   }
@@ -25,11 +25,30 @@
  */
 package org.cougaar.core.component;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cougaar.bootstrap.SystemProperties;
 
 /** A service broker which implements not just a local SB, but also 
  * a pass-through to another (presumably higher-level) SB.
+ * <p>
+ * Lookups that miss locally are resolved through a per-broker cache,
+ * which remembers the nearest ancestor broker that provides each
+ * service class, or that no ancestor does.  Only ancestors reached
+ * through plain (not overridden) PropagatingServiceBroker,
+ * DelegatingServiceBroker and ServiceBrokerSupport lookups are
+ * skipped, so the result is the same as walking the chain one hop
+ * at a time.  The ServiceAvailableEvents and ServiceRevokedEvents
+ * relayed from the delegate invalidate the cache.
+ *
+ * @property org.cougaar.core.component.PropagatingServiceBroker.cache
+ * Cache the resolution of propagated lookups (defaults to true).
  **/
 
 public class PropagatingServiceBroker
@@ -52,6 +71,31 @@ public class PropagatingServiceBroker
   private ServiceAvailableListener availableListener;
   private ServiceRevokedListener revokedListener;
 
+  private static final boolean DEFAULT_CACHE = 
+    SystemProperties.getBoolean(
+        "org.cougaar.core.component.PropagatingServiceBroker.cache", true);
+
+  private volatile boolean cacheEnabled = DEFAULT_CACHE;
+
+  /** marks a cached miss in "resolved" **/
+  private static final Object NONE = new Object();
+
+  /** Class serviceClass to the ServiceBroker to ask, or NONE **/
+  private final ConcurrentHashMap resolved = new ConcurrentHashMap();
+
+  /** bumped by every service event, to detect racing resolutions **/
+  private final AtomicInteger generation = new AtomicInteger();
+
+  /** getCurrentServiceClasses result and the generation it was built in **/
+  private volatile List cachedClasses;
+  private volatile int cachedClassesGeneration;
+
+  /** for tests and benchmarks **/
+  void setResolutionCacheEnabled(boolean b) {
+    cacheEnabled = b;
+    invalidateAll();
+  }
+
   /**
    * Disconnect this propagating service broker from its parent.
    * <p>
@@ -73,6 +117,7 @@ public class PropagatingServiceBroker
    */
   protected void destroy() {
     disconnectFromDelegate(delegate);
+    invalidateAll();
   }
 
   protected ServiceBroker getDelegate() {
@@ -119,7 +164,11 @@ public class PropagatingServiceBroker
   @Override
 public boolean hasService(Class serviceClass) {
     boolean localp = super.hasService(serviceClass);
-    return localp || delegate.hasService(serviceClass);
+    if (localp) {
+      return true;
+    }
+    Object target = resolve(serviceClass);
+    return (target != NONE && ((ServiceBroker) target).hasService(serviceClass));
   }
 
   /** gets the currently available services for this context.
@@ -128,6 +177,23 @@ public boolean hasService(Class serviceClass) {
    **/
   @Override
 public Iterator getCurrentServiceClasses() {
+    if (cacheEnabled && isPureChain()) {
+      int gen = generation.get();
+      List l = cachedClasses;
+      if (l == null || cachedClassesGeneration != gen) {
+        l = Collections.unmodifiableList(listCurrentServiceClasses());
+        cachedClasses = l;
+        cachedClassesGeneration = gen;
+        if (generation.get() != gen) {
+          cachedClasses = null;
+        }
+      }
+      return l.iterator();
+    }
+    return listCurrentServiceClasses().iterator();
+  }
+
+  private ArrayList listCurrentServiceClasses() {
     ArrayList l = new ArrayList(); // ugh!
     // get the local services
     {
@@ -143,7 +209,7 @@ public Iterator getCurrentServiceClasses() {
         l.add(i.next());
       }
     }
-    return l.iterator();
+    return l;
   }
 
   /** get an instance of the requested service from a service provider associated
@@ -169,16 +235,20 @@ public ServiceResult getService(
       }
     } else {
       // propagate
-      if (delegate instanceof ExtendedServiceBroker) {
+      Object target = resolve(serviceClass);
+      if (target == NONE) {
+        return null;
+      }
+      if (target instanceof ExtendedServiceBroker) {
         ExtendedServiceBroker esb = 
-          (ExtendedServiceBroker) delegate;
+          (ExtendedServiceBroker) target;
         sr =
           esb.getService(
               requestorId, requestorDesc,
               requestor, serviceClass, srl,
               false); // propagation sets recordInView to false!
       } else {
-        service = delegate.getService(requestor, serviceClass, srl);
+        service = ((ServiceBroker) target).getService(requestor, serviceClass, srl);
         sr = new ServiceResult(0, null, service);
       }
     }
@@ -190,25 +260,28 @@ public void releaseService(
       int requestorId, ComponentDescription requestorDesc,
       Object requestor, Class serviceClass, Object service,
       boolean recordInView) {
-    synchronized (servicesLock) {
-      if (super.hasService(serviceClass)) {
-        super.releaseService(
-            requestorId, requestorDesc,
-            requestor, serviceClass, service,
-            recordInView);
-        return;
-      }
+    // no servicesLock, so the local provider isn't called under it
+    if (super.hasService(serviceClass)) {
+      super.releaseService(
+          requestorId, requestorDesc,
+          requestor, serviceClass, service,
+          recordInView);
+      return;
     }
     // else propagate
-    if (delegate instanceof ExtendedServiceBroker) {
+    Object target = resolve(serviceClass);
+    if (target == NONE) {
+      return;
+    }
+    if (target instanceof ExtendedServiceBroker) {
       ExtendedServiceBroker esb = 
-        (ExtendedServiceBroker) delegate;
+        (ExtendedServiceBroker) target;
       esb.releaseService(
           requestorId, requestorDesc,
           requestor, serviceClass, service,
           false); // propagation stops recordInView!
     } else {
-      delegate.releaseService(requestor, serviceClass, service);
+      ((ServiceBroker) target).releaseService(requestor, serviceClass, service);
     }
   }
 
@@ -227,4 +300,147 @@ public void revokeService(Class serviceClass, ServiceProvider serviceProvider) {
     delegate.revokeService(serviceClass, serviceProvider);
   }
 
+  /** Invalidate the cached resolution of the event's service **/
+  @Override
+protected void applyListeners(ServiceEvent se) {
+    generation.incrementAndGet();
+    resolved.remove(se.getService());
+    cachedClasses = null;
+    super.applyListeners(se);
+  }
+
+  private void invalidateAll() {
+    generation.incrementAndGet();
+    resolved.clear();
+    cachedClasses = null;
+  }
+
+  /**
+   * @return the ServiceBroker to propagate a lookup of the given
+   * service class to, or NONE if no ancestor provides it
+   */
+  private Object resolve(Class serviceClass) {
+    if (!cacheEnabled) {
+      return delegate;
+    }
+    Object target = resolved.get(serviceClass);
+    if (target != null) {
+      return target;
+    }
+    int gen = generation.get();
+    target = walk(serviceClass);
+    resolved.put(serviceClass, target);
+    if (generation.get() != gen) {
+      // an event raced with the walk
+      resolved.remove(serviceClass);
+    }
+    return target;
+  }
+
+  /**
+   * Follow the delegates through plain brokers that don't provide the
+   * service class, stopping at the first that does or that may do
+   * something other than pass the lookup along.
+   */
+  private Object walk(Class serviceClass) {
+    ServiceBroker b = delegate;
+    while (true) {
+      Class c = b.getClass();
+      if (b instanceof PropagatingServiceBroker && isPlain(c)) {
+        PropagatingServiceBroker psb = (PropagatingServiceBroker) b;
+        if (psb.hasLocalService(serviceClass)) {
+          return psb;
+        }
+        b = psb.getDelegate();
+      } else if (b instanceof DelegatingServiceBroker && isPlain(c)) {
+        b = ((DelegatingServiceBroker) b).getDelegate();
+      } else if (b instanceof ServiceBrokerSupport && isPlain(c)) {
+        // the root of the chain
+        return (((ServiceBrokerSupport) b).hasLocalService(serviceClass) ? b : NONE);
+      } else {
+        return b;
+      }
+    }
+  }
+
+  /** @return true if every delegate up to the root is plain **/
+  private boolean isPureChain() {
+    ServiceBroker b = delegate;
+    while (true) {
+      if (!isPlain(b.getClass())) {
+        return false;
+      }
+      if (b instanceof PropagatingServiceBroker) {
+        b = ((PropagatingServiceBroker) b).getDelegate();
+      } else if (b instanceof DelegatingServiceBroker) {
+        b = ((DelegatingServiceBroker) b).getDelegate();
+      } else {
+        return (b instanceof ServiceBrokerSupport);
+      }
+    }
+  }
+
+  /** Class to Boolean, see "isPlain" **/
+  private static final ConcurrentHashMap plainClasses = new ConcurrentHashMap();
+
+  private static final Class[] GET_SERVICE = new Class[] {
+    int.class, ComponentDescription.class,
+    Object.class, Class.class, ServiceRevokedListener.class,
+    boolean.class,
+  };
+  private static final Class[] RELEASE_SERVICE = new Class[] {
+    int.class, ComponentDescription.class,
+    Object.class, Class.class, Object.class,
+    boolean.class,
+  };
+  private static final Class[] GET_SERVICE_ALLOW_NULL = GET_SERVICE;
+  private static final Class[] HAS_SERVICE = new Class[] { Class.class };
+  private static final Class[] GET_CLASSES = new Class[0];
+
+  /**
+   * @return true if the broker class doesn't override the lookup
+   * methods of PropagatingServiceBroker, DelegatingServiceBroker or
+   * ServiceBrokerSupport, whichever it extends
+   */
+  private static boolean isPlain(Class c) {
+    Boolean b = (Boolean) plainClasses.get(c);
+    if (b == null) {
+      Class base;
+      if (PropagatingServiceBroker.class.isAssignableFrom(c)) {
+        base = PropagatingServiceBroker.class;
+      } else if (DelegatingServiceBroker.class.isAssignableFrom(c)) {
+        base = DelegatingServiceBroker.class;
+      } else if (ServiceBrokerSupport.class.isAssignableFrom(c)) {
+        base = ServiceBrokerSupport.class;
+      } else {
+        base = null;
+      }
+      boolean plain = 
+        (base != null &&
+         isInherited(c, base, "getService", GET_SERVICE) &&
+         isInherited(c, base, "releaseService", RELEASE_SERVICE) &&
+         isInherited(c, base, "hasService", HAS_SERVICE) &&
+         isInherited(c, base, "getCurrentServiceClasses", GET_CLASSES) &&
+         (base == DelegatingServiceBroker.class ||
+          isInherited(c, base, "getServiceAllowNull", GET_SERVICE_ALLOW_NULL)));
+      b = (plain ? Boolean.TRUE : Boolean.FALSE);
+      plainClasses.put(c, b);
+    }
+    return b.booleanValue();
+  }
+
+  /** @return true if no class from c up to (excluding) base declares the method **/
+  private static boolean isInherited(Class c, Class base, String name, Class[] params) {
+    for (Class x = c; x != base && x != null; x = x.getSuperclass()) {
+      try {
+        Method m = x.getDeclaredMethod(name, params);
+        if (m != null) {
+          return false;
+        }
+      } catch (NoSuchMethodException e) {
+        // keep looking
+      }
+    }
+    return true;
+  }
 }
@@ -28,48 +28,57 @@ package org.cougaar.core.component;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /** Simple implementation of Cougaar component services layer.  
  * No propagation, nothing fancy.
+ * <p>
+ * Service lookups take no lock.  Unless the provider is a
+ * {@link ThreadSafeServiceProvider}, calls to it are synchronized
+ * on the provider.
+ * <p>
+ * A ServiceRevokedListener passed to "getService" is kept with the
+ * service class, and dropped when the requestor releases the service
+ * or the service is revoked.
  * @see org.cougaar.core.component.ServiceBroker
  **/
 
 public class ServiceBrokerSupport 
   implements ExtendedServiceBroker 
 {
-  /** the current set of Listeners.  Elements are of type ServiceListener **/
-  private ArrayList listeners = new ArrayList();
+  /** the current set of Listeners.  Elements are of type ServiceListener.
+   * Copy-on-write, so events are delivered without copying or locking.
+   **/
+  private final CopyOnWriteArrayList listeners = new CopyOnWriteArrayList();
 
   /** add a ServiceListener to this ServiceBroker Context **/
   public void addServiceListener(ServiceListener sl) {
     if (sl == null) 
       throw new IllegalArgumentException("Add of null ServiceListener");
-    synchronized (listeners) {
-      listeners.add(sl);
-    }
+    listeners.add(sl);
   }
       
   /** remove a services listener **/
   public void removeServiceListener(ServiceListener sl) {
     if (sl == null) 
       throw new IllegalArgumentException("Remove of null ServiceListener");
-    synchronized (listeners) {
-      listeners.remove(sl);
-    }
+    listeners.remove(sl);
   }
   
   /** Apply each listener appropriately to the event **/
   protected void applyListeners(ServiceEvent se) {
-    // Copy out the listeners while synchronized. but don't call the
-    // listeners while synchronized. Avoids a deadlock when the
-    // service broker is used within the listener.
-    ServiceListener[] listenerArray;
-    synchronized (listeners) {
-      listenerArray = new ServiceListener[listeners.size()];
-      listenerArray = (ServiceListener[]) listeners.toArray(listenerArray);
+    // The listeners aren't called while synchronized. Avoids a 
+    // deadlock when the service broker is used within the listener.
+    if (se instanceof ServiceRevokedEvent) {
+      RevokedListeners rl = (RevokedListeners)
+        revokedListeners.get(((ServiceRevokedEvent) se).getService());
+      if (rl != null) {
+        rl.revoked((ServiceRevokedEvent) se);
+      }
     }
-    for (int i = 0; i < listenerArray.length; i++) {
-      applyListener(listenerArray[i], se);
+    for (Iterator iter = listeners.iterator(); iter.hasNext(); ) {
+      applyListener((ServiceListener) iter.next(), se);
     }
   }
 
@@ -88,10 +97,10 @@ public class ServiceBrokerSupport
   }
 
   /** the current set of services.  A map of Class serviceClass to ServiceProvider
-   * Access to services is guarded by servicesLock.
+   * Changes to services are guarded by servicesLock, reads take no lock.
    **/
-  private final HashMap services = new HashMap(89);
-  /** Lock for services.  Protected so that extending classes can 
+  private final ConcurrentHashMap services = new ConcurrentHashMap(89);
+  /** Lock for changes to services.  Protected so that extending classes can 
    * synchronize over multiple calls.
    **/
   protected final Object servicesLock = new Object();
@@ -154,9 +163,12 @@ public class ServiceBrokerSupport
   public boolean hasService(Class serviceClass) {
     if (serviceClass == null)
       throw new IllegalArgumentException("serviceClass null");
-    synchronized (servicesLock) {
-      return (null != services.get(serviceClass));
-    }
+    return services.containsKey(serviceClass);
+  }
+
+  /** is the service provided by this broker itself, without propagation? **/
+  final boolean hasLocalService(Class serviceClass) {
+    return services.containsKey(serviceClass);
   }
 
   /** gets the currently available services for this context.
@@ -164,10 +176,8 @@ public class ServiceBrokerSupport
    **/
   public Iterator getCurrentServiceClasses() {
     //We could cache the answer if this turns out to be a hot spot.
-    synchronized (servicesLock) {
-      ArrayList l = new ArrayList(services.keySet());
-      return l.iterator();
-    }
+    ArrayList l = new ArrayList(services.keySet());
+    return l.iterator();
   }
 
   /** get an instance of the requested service from a service provider associated
@@ -216,33 +226,28 @@ public class ServiceBrokerSupport
     if (serviceClass == null) throw new IllegalArgumentException("null serviceClass");
 
     Object service;
-    Entry e;
-    ServiceProvider sp;
-    synchronized (servicesLock) {
-      e = (Entry) services.get(serviceClass);
-      if (e == null) return null; // bail
-      sp = e.getServiceProvider();
-    }
-    // ugh, not sure about this "sp" lock!
-    synchronized (sp) {
+    Entry e = (Entry) services.get(serviceClass);
+    if (e == null) return null; // bail
+    ServiceProvider sp = e.getServiceProvider();
+    if (sp instanceof ThreadSafeServiceProvider) {
       service = sp.getService(this, requestor, serviceClass);
-      if (service != null && !(service instanceof NullService)) {
-        if (! serviceClass.isAssignableFrom(service.getClass())) {
-          throw new ClassCastException("ServiceProvider "+sp+
-                                       " returned a Service ("+service+
-                                       ") which is not an instance of "+serviceClass);
-        }
+    } else {
+      // ugh, not sure about this "sp" lock!
+      synchronized (sp) {
+        service = sp.getService(this, requestor, serviceClass);
       }
-      // if we're going to succeed and they passed a revoked listener...
-      if (srl != null) {
-        addServiceListener(new ServiceRevokedListener() {
-            public void serviceRevoked(ServiceRevokedEvent re) {
-              if (serviceClass.equals(re.getService()))
-                srl.serviceRevoked(re);
-            }
-          });
+    }
+    if (service != null && !(service instanceof NullService)) {
+      if (! serviceClass.isAssignableFrom(service.getClass())) {
+        throw new ClassCastException("ServiceProvider "+sp+
+                                     " returned a Service ("+service+
+                                     ") which is not an instance of "+serviceClass);
       }
     }
+    // if we succeeded and they passed a revoked listener...
+    if (srl != null && service != null && !(service instanceof NullService)) {
+      addRevokedListener(serviceClass, requestor, service, srl);
+    }
     return new ServiceResult(
         e.getId(),
         e.getComponentDescription(),
@@ -262,18 +267,142 @@ public class ServiceBrokerSupport
     if (requestor == null) throw new IllegalArgumentException("null requestor");
     if (serviceClass == null) throw new IllegalArgumentException("null serviceClass");
 
-    ServiceProvider sp;
-    synchronized (servicesLock) {
-      Entry e = (Entry) services.get(serviceClass);
-      sp = (e == null ? null : e.getServiceProvider());
+    RevokedListeners rl = (RevokedListeners) revokedListeners.get(serviceClass);
+    if (rl != null) {
+      rl.remove(requestor, service);
     }
-    if (sp != null) {
+    Entry e = (Entry) services.get(serviceClass);
+    ServiceProvider sp = (e == null ? null : e.getServiceProvider());
+    if (sp instanceof ThreadSafeServiceProvider) {
+      sp.releaseService(this, requestor, serviceClass, service);
+    } else if (sp != null) {
       synchronized (sp) {
         sp.releaseService(this, requestor, serviceClass, service);
       }
     }
   }
 
+  /** Class serviceClass to the RevokedListeners of its requestors **/
+  private final ConcurrentHashMap revokedListeners = new ConcurrentHashMap();
+
+  private void addRevokedListener(
+      Class serviceClass, Object requestor, Object service,
+      ServiceRevokedListener srl) {
+    RevokedListeners rl = (RevokedListeners) revokedListeners.get(serviceClass);
+    if (rl == null) {
+      RevokedListeners nrl = new RevokedListeners();
+      rl = (RevokedListeners) revokedListeners.putIfAbsent(serviceClass, nrl);
+      if (rl == null) {
+        rl = nrl;
+      }
+    }
+    rl.add(requestor, service, srl);
+  }
+
+  /** @return the number of revocation listeners for obtained, unreleased
+   * services of the given class
+   **/
+  protected int getRevokedListenerCount(Class serviceClass) {
+    RevokedListeners rl = (RevokedListeners) revokedListeners.get(serviceClass);
+    return (rl == null ? 0 : rl.size());
+  }
+
+  /**
+   * The ServiceRevokedListeners passed to "getService" for one service
+   * class, keyed by requestor and service identity, so "releaseService"
+   * can remove them.  The entries are dropped once the service is
+   * revoked, since the listeners have then been told.
+   **/
+  private static final class RevokedListeners {
+    /** Registration to ServiceRevokedListener or ArrayList of them **/
+    private final HashMap map = new HashMap();
+    private int size;
+
+    synchronized void add(
+        Object requestor, Object service, ServiceRevokedListener srl) {
+      Registration key = new Registration(requestor, service);
+      Object o = map.get(key);
+      if (o == null) {
+        map.put(key, srl);
+      } else if (o instanceof ArrayList) {
+        ((ArrayList) o).add(srl);
+      } else {
+        ArrayList l = new ArrayList(2);
+        l.add(o);
+        l.add(srl);
+        map.put(key, l);
+      }
+      size++;
+    }
+
+    synchronized void remove(Object requestor, Object service) {
+      Registration key = new Registration(requestor, service);
+      Object o = map.get(key);
+      if (o == null) {
+        return;
+      }
+      if (o instanceof ArrayList) {
+        ArrayList l = (ArrayList) o;
+        l.remove(l.size() - 1);
+        if (l.size() == 1) {
+          map.put(key, l.get(0));
+        }
+      } else {
+        map.remove(key);
+      }
+      size--;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    void revoked(ServiceRevokedEvent re) {
+      Object[] a;
+      synchronized (this) {
+        if (map.isEmpty()) {
+          return;
+        }
+        a = map.values().toArray();
+        map.clear();
+        size = 0;
+      }
+      // call outside the lock, see "applyListeners"
+      for (int i = 0; i < a.length; i++) {
+        Object o = a[i];
+        if (o instanceof ArrayList) {
+          ArrayList l = (ArrayList) o;
+          for (int j = 0; j < l.size(); j++) {
+            ((ServiceRevokedListener) l.get(j)).serviceRevoked(re);
+          }
+        } else {
+          ((ServiceRevokedListener) o).serviceRevoked(re);
+        }
+      }
+    }
+  }
+
+  /** A requestor and service pair, compared by identity **/
+  private static final class Registration {
+    private final Object requestor;
+    private final Object service;
+    Registration(Object requestor, Object service) {
+      this.requestor = requestor;
+      this.service = service;
+    }
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Registration)) return false;
+      Registration r = (Registration) o;
+      return (requestor == r.requestor && service == r.service);
+    }
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(requestor) * 31 + 
+        System.identityHashCode(service);
+    }
+  }
+
   private static final class Entry {
     private final int id;
     private final ComponentDescription desc;
@@ -75,7 +75,7 @@ implements ExtendedServiceBroker {
     delegate.addServiceListener(sl);
   }
   public void removeServiceListener(ServiceListener sl) {
-    delegate.addServiceListener(sl);
+    delegate.removeServiceListener(sl);
   }
   public boolean addService(
       Class serviceClass, ServiceProvider serviceProvider) {
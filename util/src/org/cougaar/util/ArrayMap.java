@@ -46,23 +46,56 @@ import java.util.Set;
  *       <tt>createEntry(Object key, Object value)</tt>.</li>
  *   <li>There are index-based "getters", such as <tt>getKey(int)</tt>.
  * </ol>
+ * <p>
+ * Small maps are searched linearly, which is faster than hashing for
+ * a handful of entries.  Once a map holds "indexThreshold" or more
+ * entries, key lookups go through an open-addressing hash index over
+ * the entry list, built lazily on the first lookup.  Appending a new
+ * key updates the index in place; any other structural change drops
+ * it, to be rebuilt by the next lookup.
+ * <p>
+ * The default threshold is set by the system property:
+ * <pre>
+ *   -Dorg.cougaar.util.ArrayMap.indexThreshold=16
+ * </pre>
  *
  * @see java.util.Map
  */
 public class ArrayMap 
-  implements Map, Cloneable, java.io.Serializable {
+  implements Map, Cloneable, java.io.Serializable, KeyIndex.Keys {
 
   /**
    * Use an <code>ArrayList</code> to hold the <code>Map.Entry</code>
    * elements.
    *
-   * This could be optimized for lookup speed, but a simple ArrayList 
-   * should be fine for our needs.
+   * Key lookups are linear until the map reaches the index threshold.
    */
-  private final ArrayList l;
+  private ArrayList l;
 
-  public ArrayMap(int initialCapacity) {
+  /**
+   * Size at which key lookups switch to the hash index, or zero for
+   * the default (which is also what older serialized forms read as).
+   */
+  private final int indexThreshold;
+
+  /**
+   * Open-addressing hash index of entry positions, offset by one so
+   * that zero marks an empty slot.  Null if not yet built or dropped
+   * after a structural change.
+   */
+  private transient int[] index;
+
+  public ArrayMap(int initialCapacity, int indexThreshold) {
+    if (indexThreshold < 0) {
+      throw new IllegalArgumentException(
+          "Negative indexThreshold: "+indexThreshold);
+    }
     l = new ArrayList(initialCapacity);
+    this.indexThreshold = indexThreshold;
+  }
+
+  public ArrayMap(int initialCapacity) {
+    this(initialCapacity, 0);
   }
 
   public ArrayMap() {
@@ -125,27 +158,7 @@ public class ArrayMap
   }
 
   public boolean containsKey(Object key) {
-    // search for key
-    int n = l.size();
-    if (key == null) {
-      for (int i = 0; i < n; i++) {
-        Map.Entry meI = (Map.Entry)l.get(i);
-        if (meI.getKey() == null) {
-          // found matching entry
-          return true;
-        }
-      }
-    } else {
-      for (int i = 0; i < n; i++) {
-        Map.Entry meI = (Map.Entry)l.get(i);
-        if (key.equals(meI.getKey())) {
-          // found matching entry
-          return true;
-        }
-      }
-    }
-    // no such entry
-    return false;
+    return (indexOfKey(key) >= 0);
   }
 
   public boolean containsValue(Object value) {
@@ -181,31 +194,10 @@ public class ArrayMap
    * @see #getValue(int) for a indexed lookup
    */
   public Object get(Object key) {
-    // search for key
-    int n = l.size();
-    if (key == null) {
-      for (int i = 0; i < n; i++) {
-        Map.Entry meI = (Map.Entry)l.get(i);
-        if (meI.getKey() == null) {
-          // found matching entry
-          //
-          // note that value can be null -- use "containsKey(key)"
-          //   to distinguish these cases
-          return meI.getValue();
-        }
-      }
-    } else {
-      for (int i = 0; i < n; i++) {
-        Map.Entry meI = (Map.Entry)l.get(i);
-        if (key.equals(meI.getKey())) {
-          // found matching entry
-          //
-          return meI.getValue();
-        }
-      }
-    }
-    // no such entry
-    return null;
+    int i = indexOfKey(key);
+    // note that value can be null -- use "containsKey(key)"
+    //   to distinguish these cases
+    return ((i >= 0) ? ((Map.Entry)l.get(i)).getValue() : null);
   }
 
   /**
@@ -222,61 +214,78 @@ public class ArrayMap
 
   public Object put(Object key, Object value) {
     // see if key is already listed
-    int n = l.size();
-    for (int i = 0; i < n; i++) {
-      Map.Entry meI = (Map.Entry)l.get(i);
-      if (key.equals(meI.getKey())) {
-        // found matching entry, replace value
-        return meI.setValue(value);
-      }
+    int i = indexOfKey(key);
+    if (i >= 0) {
+      // found matching entry, replace value
+      return ((Map.Entry)l.get(i)).setValue(value);
     }
     // create a new entry
     Map.Entry newME = createEntry(key, value);
     l.add(newME);
+    if (index != null) {
+      // appending keeps the other positions, so just add this one
+      index = KeyIndex.append(index, key, l.size() - 1);
+    }
     // no old value
     return null;
   }
 
   public Object remove(Object key) {
-    // search for key
+    int i = indexOfKey(key);
+    if (i < 0) {
+      // no such entry
+      return null;
+    }
+    // note that value can be null -- use "containsKey(key)"
+    //   to distinguish these cases
+    Map.Entry meI = (Map.Entry)l.remove(i);
+    index = null;
+    return meI.getValue();
+  }
+
+  /**
+   * Find the position of the entry for the given key.
+   *
+   * @return the entry's offset, or -1 if there is no such entry
+   */
+  private int indexOfKey(Object key) {
     int n = l.size();
-    if (key == null) {
-      for (int i = 0; i < n; i++) {
-        Map.Entry meI = (Map.Entry)l.get(i);
-        if (meI.getKey() == null) {
-          // found matching entry
-          //
-          // note that value can be null -- use "containsKey(key)"
-          //   to distinguish these cases
-          l.remove(i);
-          return meI.getValue();
-        }
-      }
-    } else {
-      for (int i = 0; i < n; i++) {
-        Map.Entry meI = (Map.Entry)l.get(i);
-        if (key.equals(meI.getKey())) {
-          // found matching entry
-          //
-          // note that value can be null -- use "containsKey(key)"
-          //   to distinguish these cases
-          l.remove(i);
-          return meI.getValue();
-        }
+    int[] idx = null;
+    if (KeyIndex.isIndexed(n, indexThreshold)) {
+      idx = index;
+      if (idx == null) {
+        idx = KeyIndex.build(this, n);
+        index = idx;
       }
     }
-    // no such entry
-    return null;
+    return KeyIndex.find(this, n, idx, key);
   }
 
+  /**
+   * Returns a shallow copy of this map:  the keys and values are not
+   * cloned, but the clone has its own entries, so changes to either
+   * map are not seen by the other.
+   */
   @Override
 public Object clone() {
+    ArrayMap am;
     try { 
-      return super.clone();
+      am = (ArrayMap)super.clone();
     } catch (CloneNotSupportedException e) { 
       // this shouldn't happen, since we are Cloneable
       throw new InternalError();
     }
+    int n = l.size();
+    am.l = new ArrayList(n);
+    for (int i = 0; i < n; i++) {
+      Map.Entry meI = (Map.Entry)l.get(i);
+      am.l.add(am.createEntry(meI.getKey(), meI.getValue()));
+    }
+    am.index = null;
+    am.keySet = null;
+    am.entrySet = null;
+    am.values = null;
+    return am;
   }
 
   //
@@ -293,6 +302,7 @@ public Object clone() {
 
   public void clear() {
     l.clear();
+    index = null;
   }
 
   private transient Set keySet = null;
@@ -314,6 +324,7 @@ public Object clone() {
             }
             public void remove() {
               lIter.remove();
+              index = null;
             }
           };
         }
@@ -353,6 +364,7 @@ public Object clone() {
             }
             public void remove() {
               lIter.remove();
+              index = null;
             }
           };
         }
@@ -378,18 +390,26 @@ public Object clone() {
       entrySet = new AbstractSet() {
         @Override
       public Iterator iterator() {
-          return l.iterator();
+          final Iterator lIter = l.iterator();
+          return new Iterator() {
+            public boolean hasNext() {
+              return lIter.hasNext();
+            }
+            public Object next() {
+              return lIter.next();
+            }
+            public void remove() {
+              lIter.remove();
+              index = null;
+            }
+          };
         }
 
         @Override
       public boolean contains(Object o) {
           if (o instanceof Map.Entry) {
-            int n = l.size();
-            for (int i = 0; i < n; i++) {
-              if (o.equals(l.get(i))) {
-                return true;
-              }
-            }
+            int i = indexOfKey(((Map.Entry)o).getKey());
+            return ((i >= 0) && o.equals(l.get(i)));
           }
           return false;
         }
@@ -397,12 +417,11 @@ public Object clone() {
         @Override
       public boolean remove(Object o) {
           if (o instanceof Map.Entry) {
-            int n = l.size();
-            for (int i = 0; i < n; i++) {
-              if (o.equals(l.get(i))) {
-                l.remove(i);
-                return true;
-              }
+            int i = indexOfKey(((Map.Entry)o).getKey());
+            if ((i >= 0) && o.equals(l.get(i))) {
+              l.remove(i);
+              index = null;
+              return true;
             }
           }
           return false;
@@ -25,54 +25,276 @@
  */
 package org.cougaar.util;
 
-import java.util.BitSet;
-
 /**
  * A two dimensional set of bits. Like java.io.util.Bitset but the
  * bits are addressed in two dimensions. The set is grown as needed to
  * accomodate indices in either dimension. Indices must be positive.
+ * <p>
+ * The bits are kept in 64 x 64 tiles, one <code>long</code> per tile
+ * row, in a sparse map from tile position to tile.  Only tiles with
+ * some bit set are kept, so growing in either dimension never copies
+ * existing bits, and large mostly-empty grids stay small.  Row, 
+ * column and rectangle operations work a word at a time.
+ * <p>
+ * Ranges are half-open, as in <code>java.util.BitSet</code>: 
+ * [x0, x1) by [y0, y1).  This class is not synchronized.
  **/
 public class BitSet2D {
-  private BitSet theSet = new BitSet();
-  int height = 100;
+  private static final int SHIFT = 6;
+  private static final int SIZE = 1 << SHIFT;
+  private static final int MASK = SIZE - 1;
+
+  /** tiles keyed by (tileX, tileY), each a long[SIZE] of rows **/
+  private final LongHashMap tiles;
 
+  /**
+   * @param height a hint for the expected height; the set grows as
+   *   needed in either dimension
+   */
   public BitSet2D(int height) {
-    this.height = height;
+    tiles = new LongHashMap(Math.max(1, height >> SHIFT));
   }
 
   public BitSet2D() {
-    this.height = 8;
-  }
-
-  private int index(int x, int y) {
-    if (y >= height) {
-      BitSet newSet = new BitSet();
-      int newheight = y + 1;
-      for (int i = 0, n = theSet.size(); i < n; i++) {
-        int xx = i / height;
-        int yy = i % height;
-        int ii = yy + newheight * xx;
-        if (theSet.get(i)) {
-          newSet.set(ii);
+    tiles = new LongHashMap();
+  }
+
+  public boolean get(int x, int y) {
+    check(x, y);
+    long[] tile = (long[]) tiles.get(key(x >> SHIFT, y >> SHIFT));
+    return (tile != null && (tile[y & MASK] & (1L << (x & MASK))) != 0);
+  }
+
+  public void set(int x, int y) {
+    check(x, y);
+    tile(x >> SHIFT, y >> SHIFT)[y & MASK] |= (1L << (x & MASK));
+  }
+
+  public void clear(int x, int y) {
+    check(x, y);
+    long k = key(x >> SHIFT, y >> SHIFT);
+    long[] tile = (long[]) tiles.get(k);
+    if (tile != null) {
+      int row = y & MASK;
+      tile[row] &= ~(1L << (x & MASK));
+      if (tile[row] == 0 && isEmpty(tile)) {
+        tiles.remove(k);
+      }
+    }
+  }
+
+  /** Set the bits [x0, x1) of row y **/
+  public void setRow(int y, int x0, int x1) {
+    set(x0, y, x1, y + 1);
+  }
+
+  /** Clear the bits [x0, x1) of row y **/
+  public void clearRow(int y, int x0, int x1) {
+    clear(x0, y, x1, y + 1);
+  }
+
+  /** Set the bits [y0, y1) of column x **/
+  public void setColumn(int x, int y0, int y1) {
+    set(x, y0, x + 1, y1);
+  }
+
+  /** Clear the bits [y0, y1) of column x **/
+  public void clearColumn(int x, int y0, int y1) {
+    clear(x, y0, x + 1, y1);
+  }
+
+  /** Set all bits in the rectangle [x0, x1) by [y0, y1) **/
+  public void set(int x0, int y0, int x1, int y1) {
+    if (!checkRange(x0, y0, x1, y1)) {
+      return;
+    }
+    for (int tx = x0 >> SHIFT, txEnd = (x1 - 1) >> SHIFT; tx <= txEnd; tx++) {
+      long bits = wordMask(tx, x0, x1);
+      for (int ty = y0 >> SHIFT, tyEnd = (y1 - 1) >> SHIFT; ty <= tyEnd; ty++) {
+        long[] tile = tile(tx, ty);
+        for (int r = rowFrom(ty, y0), rEnd = rowTo(ty, y1); r < rEnd; r++) {
+          tile[r] |= bits;
+        }
+      }
+    }
+  }
+
+  /** Clear all bits in the rectangle [x0, x1) by [y0, y1) **/
+  public void clear(int x0, int y0, int x1, int y1) {
+    if (!checkRange(x0, y0, x1, y1)) {
+      return;
+    }
+    for (int tx = x0 >> SHIFT, txEnd = (x1 - 1) >> SHIFT; tx <= txEnd; tx++) {
+      long bits = wordMask(tx, x0, x1);
+      for (int ty = y0 >> SHIFT, tyEnd = (y1 - 1) >> SHIFT; ty <= tyEnd; ty++) {
+        long k = key(tx, ty);
+        long[] tile = (long[]) tiles.get(k);
+        if (tile == null) {
+          continue;
+        }
+        for (int r = rowFrom(ty, y0), rEnd = rowTo(ty, y1); r < rEnd; r++) {
+          tile[r] &= ~bits;
+        }
+        if (isEmpty(tile)) {
+          tiles.remove(k);
+        }
+      }
+    }
+  }
+
+  /** Clear all bits **/
+  public void clear() {
+    tiles.clear();
+  }
+
+  /** @return true if no bit is set **/
+  public boolean isEmpty() {
+    // tiles are dropped once empty
+    return tiles.isEmpty();
+  }
+
+  /** @return the number of bits set **/
+  public int cardinality() {
+    final int[] n = new int[1];
+    tiles.forEach(new LongHashMap.EntryThunk() {
+      public void apply(long key, Object value) {
+        long[] tile = (long[]) value;
+        for (int r = 0; r < SIZE; r++) {
+          n[0] += Long.bitCount(tile[r]);
+        }
+      }
+    });
+    return n[0];
+  }
+
+  /** @return the number of bits set in the rectangle [x0, x1) by [y0, y1) **/
+  public int cardinality(int x0, int y0, int x1, int y1) {
+    if (!checkRange(x0, y0, x1, y1)) {
+      return 0;
+    }
+    int n = 0;
+    for (int tx = x0 >> SHIFT, txEnd = (x1 - 1) >> SHIFT; tx <= txEnd; tx++) {
+      long bits = wordMask(tx, x0, x1);
+      for (int ty = y0 >> SHIFT, tyEnd = (y1 - 1) >> SHIFT; ty <= tyEnd; ty++) {
+        long[] tile = (long[]) tiles.get(key(tx, ty));
+        if (tile == null) {
+          continue;
+        }
+        for (int r = rowFrom(ty, y0), rEnd = rowTo(ty, y1); r < rEnd; r++) {
+          n += Long.bitCount(tile[r] & bits);
+        }
+      }
+    }
+    return n;
+  }
+
+  /** Keep only the bits that are also set in the other set **/
+  public void and(BitSet2D other) {
+    long[] keys = tiles.keys();
+    for (int i = 0; i < keys.length; i++) {
+      long[] tile = (long[]) tiles.get(keys[i]);
+      long[] otile = (long[]) other.tiles.get(keys[i]);
+      if (otile == null) {
+        tiles.remove(keys[i]);
+        continue;
+      }
+      for (int r = 0; r < SIZE; r++) {
+        tile[r] &= otile[r];
+      }
+      if (isEmpty(tile)) {
+        tiles.remove(keys[i]);
+      }
+    }
+  }
+
+  /** Set the bits that are set in the other set **/
+  public void or(BitSet2D other) {
+    other.tiles.forEach(new LongHashMap.EntryThunk() {
+      public void apply(long key, Object value) {
+        long[] otile = (long[]) value;
+        long[] tile = (long[]) tiles.get(key);
+        if (tile == null) {
+          tiles.put(key, otile.clone());
         } else {
-          newSet.clear(ii);
+          for (int r = 0; r < SIZE; r++) {
+            tile[r] |= otile[r];
+          }
         }
       }
-      theSet = newSet;
-      height = newheight;
+    });
+  }
+
+  /** Clear the bits that are set in the other set **/
+  public void andNot(BitSet2D other) {
+    long[] keys = tiles.keys();
+    for (int i = 0; i < keys.length; i++) {
+      long[] otile = (long[]) other.tiles.get(keys[i]);
+      if (otile == null) {
+        continue;
+      }
+      long[] tile = (long[]) tiles.get(keys[i]);
+      for (int r = 0; r < SIZE; r++) {
+        tile[r] &= ~otile[r];
+      }
+      if (isEmpty(tile)) {
+        tiles.remove(keys[i]);
+      }
     }
-    return y + height * x;
   }
 
-  public boolean get(int x, int y) {
-    return theSet.get(index(x, y));
+  private long[] tile(int tx, int ty) {
+    long k = key(tx, ty);
+    long[] tile = (long[]) tiles.get(k);
+    if (tile == null) {
+      tile = new long[SIZE];
+      tiles.put(k, tile);
+    }
+    return tile;
   }
 
-  public void set(int x, int y) {
-    theSet.set(index(x, y));
+  private static long key(int tx, int ty) {
+    return (((long) tx) << 32) | (ty & 0xffffffffL);
   }
 
-  public void clear(int x, int y) {
-    theSet.clear(index(x, y));
+  /** @return the bits of tile column tx that lie in [x0, x1) **/
+  private static long wordMask(int tx, int x0, int x1) {
+    int base = tx << SHIFT;
+    int from = Math.max(x0 - base, 0);
+    int to = Math.min(x1 - base, SIZE);
+    long hi = ((to == SIZE) ? -1L : ((1L << to) - 1));
+    return hi & (-1L << from);
+  }
+
+  private static int rowFrom(int ty, int y0) {
+    return Math.max(y0 - (ty << SHIFT), 0);
+  }
+
+  private static int rowTo(int ty, int y1) {
+    return Math.min(y1 - (ty << SHIFT), SIZE);
+  }
+
+  private static boolean isEmpty(long[] tile) {
+    for (int r = 0; r < SIZE; r++) {
+      if (tile[r] != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void check(int x, int y) {
+    if (x < 0 || y < 0) {
+      throw new IndexOutOfBoundsException("("+x+", "+y+")");
+    }
+  }
+
+  /** @return false if the range is empty **/
+  private static boolean checkRange(int x0, int y0, int x1, int y1) {
+    check(x0, y0);
+    if (x1 < x0 || y1 < y0) {
+      throw new IndexOutOfBoundsException(
+          "["+x0+", "+x1+") by ["+y0+", "+y1+")");
+    }
+    return (x1 > x0 && y1 > y0);
   }
 }
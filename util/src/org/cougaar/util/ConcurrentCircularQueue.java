@@ -0,0 +1,317 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A bounded, thread-safe circular queue with lock-free
+ * multi-producer / multi-consumer <tt>offer</tt> and <tt>poll</tt>.
+ * <p>
+ * Unlike {@link CircularQueue}, which leaves synchronization to the
+ * caller and enlarges its array when full, this queue has a fixed
+ * capacity (rounded up to a power of two).  When full, <tt>offer</tt>
+ * either fails or, if the queue was created to overwrite, discards
+ * the oldest element to make room, so that the queue keeps the most
+ * recent "capacity" elements.
+ * <p>
+ * Each slot carries a sequence number that tells producers and
+ * consumers whose turn it is, so a producer and a consumer only ever
+ * contend on the shared head or tail counter, never on a lock.  The
+ * counters are padded so that they don't share a cache line.
+ * <p>
+ * <tt>size</tt>, <tt>peek</tt> and the iterator are snapshots that
+ * may be stale by the time they return; the iterator does not
+ * support removal.  Null elements are not allowed.
+ **/
+public class ConcurrentCircularQueue<E> extends AbstractQueue<E> {
+
+  private final int mask;
+  private final boolean overwrite;
+
+  /** The elements, published by the matching sequence update. **/
+  private final Object[] elements;
+
+  /**
+   * Per-slot sequence numbers.  Slot (pos &amp; mask) is free for the
+   * producer of position pos when its sequence is pos, and holds that
+   * position's element when its sequence is pos+1.
+   **/
+  private final AtomicLongArray sequences;
+
+  /** Next position to poll. **/
+  private final Counter head = new Counter();
+
+  /** Next position to offer. **/
+  private final Counter tail = new Counter();
+
+  public ConcurrentCircularQueue(int capacity) {
+    this(capacity, false);
+  }
+
+  /**
+   * @param capacity the minimum capacity, rounded up to a power of two
+   * @param overwrite if true, offering to a full queue discards the 
+   *   oldest element rather than failing
+   **/
+  public ConcurrentCircularQueue(int capacity, boolean overwrite) {
+    if (capacity < 1 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("Illegal capacity: "+capacity);
+    }
+    int cap = 1;
+    while (cap < capacity) {
+      cap <<= 1;
+    }
+    mask = cap - 1;
+    this.overwrite = overwrite;
+    elements = new Object[cap];
+    sequences = new AtomicLongArray(cap);
+    for (int i = 0; i < cap; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /** @return the fixed capacity of the queue **/
+  public int capacity() {
+    return mask + 1;
+  }
+
+  /** @return true if a full queue discards its oldest element **/
+  public boolean isOverwriting() {
+    return overwrite;
+  }
+
+  /**
+   * Add an element at the tail of the queue.
+   *
+   * @return false if the queue is full and not overwriting
+   **/
+  public boolean offer(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    while (true) {
+      long pos = tail.get();
+      int i = (int) pos & mask;
+      long dif = sequences.get(i) - pos;
+      if (dif == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          elements[i] = e;
+          sequences.set(i, pos + 1);
+          return true;
+        }
+      } else if (dif < 0) {
+        // full, or a consumer has yet to release the slot
+        if (!overwrite) {
+          return false;
+        }
+        if (pos - head.get() > mask) {
+          poll();
+        }
+      }
+      // else another producer took this position; retry
+    }
+  }
+
+  /**
+   * Remove the element at the head of the queue.
+   *
+   * @return the element, or null if the queue is empty
+   **/
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    while (true) {
+      long pos = head.get();
+      int i = (int) pos & mask;
+      long dif = sequences.get(i) - (pos + 1);
+      if (dif == 0) {
+        if (head.compareAndSet(pos, pos + 1)) {
+          E e = (E) elements[i];
+          elements[i] = null;     // allow gc
+          sequences.set(i, pos + mask + 1);
+          return e;
+        }
+      } else if (dif < 0) {
+        // empty
+        return null;
+      }
+      // else another consumer took this position; retry
+    }
+  }
+
+  /**
+   * Same as <tt>poll</tt>, named as in {@link CircularQueue#next}.
+   **/
+  public E next() {
+    return poll();
+  }
+
+  @SuppressWarnings("unchecked")
+  public E peek() {
+    while (true) {
+      long pos = head.get();
+      int i = (int) pos & mask;
+      long dif = sequences.get(i) - (pos + 1);
+      if (dif < 0) {
+        return null;
+      }
+      E e = (E) elements[i];
+      if (dif == 0 && e != null && head.get() == pos) {
+        return e;
+      }
+    }
+  }
+
+  /**
+   * Remove up to <tt>max</tt> elements, oldest first, and add them to
+   * the given collection.
+   *
+   * @return the number of elements transferred
+   **/
+  public int drainTo(Collection<? super E> c, int max) {
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    int n = 0;
+    while (n < max) {
+      E e = poll();
+      if (e == null) {
+        break;
+      }
+      c.add(e);
+      n++;
+    }
+    return n;
+  }
+
+  /**
+   * Remove all available elements and add them to the given collection.
+   *
+   * @return the number of elements transferred
+   **/
+  public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+public int size() {
+    while (true) {
+      long h = head.get();
+      long t = tail.get();
+      if (head.get() == h) {
+        long n = t - h;
+        return (int) (n < 0 ? 0 : (n > (mask + 1) ? (mask + 1) : n));
+      }
+    }
+  }
+
+  @Override
+public boolean isEmpty() {
+    return peek() == null;
+  }
+
+  @Override
+public void clear() {
+    while (poll() != null) {
+    }
+  }
+
+  /**
+   * @return an iterator over a snapshot of the elements, which does
+   *   not support removal
+   **/
+  @Override
+@SuppressWarnings("unchecked")
+  public Iterator<E> iterator() {
+    List<E> l = new ArrayList<E>(size());
+    long h = head.get();
+    long t = tail.get();
+    for (long pos = h; pos < t; pos++) {
+      int i = (int) pos & mask;
+      if (sequences.get(i) != pos + 1) {
+        // consumed or not yet published
+        continue;
+      }
+      E e = (E) elements[i];
+      if (e != null && sequences.get(i) == pos + 1) {
+        l.add(e);
+      }
+    }
+    final Iterator<E> iter = l.iterator();
+    return new Iterator<E>() {
+      public boolean hasNext() {
+        return iter.hasNext();
+      }
+      public E next() {
+        return iter.next();
+      }
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+public String toString() {
+    return "{ConcurrentCircularQueue "+size()+"/"+(mask + 1)+"}";
+  }
+
+  //
+  // A position counter, padded on both sides to keep it on its own
+  // cache line.  Superclass fields are laid out before subclass 
+  // fields, so the padding can't be reordered around the value.
+  //
+
+  static class LhsPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+  }
+
+  static class Value extends LhsPadding {
+    protected volatile long value;
+  }
+
+  static final class Counter extends Value {
+    protected long p9, p10, p11, p12, p13, p14, p15;
+
+    private static final AtomicLongFieldUpdater<Value> UPDATER =
+      AtomicLongFieldUpdater.newUpdater(Value.class, "value");
+
+    long get() {
+      return value;
+    }
+
+    boolean compareAndSet(long expect, long update) {
+      return UPDATER.compareAndSet(this, expect, update);
+    }
+  }
+}
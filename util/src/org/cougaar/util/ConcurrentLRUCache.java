@@ -0,0 +1,445 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe, size-bounded cache with optional per-entry
+ * expiration, for use where {@link LRUCache} or {@link LRUExpireMap}
+ * would need a global lock around every access.
+ * <p>
+ * Reads never lock:  entries are found through a
+ * <code>ConcurrentHashMap</code>, and a hit only sets the entry's
+ * "referenced" bit (if not already set) instead of relinking an
+ * access-ordered list.  Writes lock one of several segments, chosen
+ * by the key's hash.  Each segment holds an equal share of the
+ * maximum size and evicts with the CLOCK ("second chance") 
+ * approximation of LRU:  the clock hand skips and clears referenced 
+ * entries, and evicts the first unreferenced or expired one.
+ * <p>
+ * Since the bound is enforced per segment, a skewed key distribution
+ * may evict before the cache as a whole is full.
+ * <p>
+ * Expiration follows {@link LRUExpireMap}:  entries are put with an
+ * expiration time, are never returned once expired, and are removed
+ * lazily by lookups, evictions or "trim()".  An 
+ * <code>LRUExpireMap.Config</code> and <code>Watcher</code> can be 
+ * used unchanged.  Null keys are not allowed.
+ * <p>
+ * Hit, miss, eviction and expiration counts are kept in striped
+ * counters, so that counting doesn't become the point of contention.
+ */
+public class ConcurrentLRUCache {
+
+  private static final long NEVER = Long.MAX_VALUE;
+
+  private final LRUExpireMap.Config config;
+  private final LRUExpireMap.Watcher watcher;
+
+  private final ConcurrentHashMap map;
+  private final Segment[] segments;
+  private final int segmentMask;
+
+  private final StripedCounter hits = new StripedCounter();
+  private final StripedCounter misses = new StripedCounter();
+  private final StripedCounter evictions = new StripedCounter();
+  private final StripedCounter expirations = new StripedCounter();
+
+  public ConcurrentLRUCache(final int maxSize) {
+    this(
+        new LRUExpireMap.Config() {
+          public int initialSize() { return Math.min(maxSize, 1024); }
+          public int maxSize() { return maxSize; }
+          public long minBypassTime() { return 0; }
+        },
+        null);
+  }
+
+  public ConcurrentLRUCache(
+      LRUExpireMap.Config config, LRUExpireMap.Watcher watcher) {
+    this(config, watcher, defaultSegments(config.maxSize()));
+  }
+
+  /**
+   * @param nsegments the number of independently locked segments, 
+   *   rounded up to a power of two but no more than maxSize
+   */
+  public ConcurrentLRUCache(
+      LRUExpireMap.Config config, LRUExpireMap.Watcher watcher,
+      int nsegments) {
+    int maxSize = config.maxSize();
+    if (maxSize < 1) {
+      throw new IllegalArgumentException(
+          "Max size must be positive, not "+maxSize);
+    }
+    if (nsegments < 1) {
+      throw new IllegalArgumentException(
+          "Segment count must be positive, not "+nsegments);
+    }
+    this.config = config;
+    this.watcher = watcher;
+    int n = 1;
+    while (n < nsegments && (n << 1) <= maxSize) {
+      n <<= 1;
+    }
+    map = new ConcurrentHashMap(
+        Math.max(16, config.initialSize()), 0.75f, n);
+    segments = new Segment[n];
+    for (int i = 0; i < n; i++) {
+      // spread the remainder so that the shares add up to maxSize
+      int share = (maxSize / n) + ((i < (maxSize % n)) ? 1 : 0);
+      segments[i] = new Segment(share);
+    }
+    segmentMask = n - 1;
+  }
+
+  /**
+   * Enough segments to spread writes over the processors, but not so
+   * many that each segment's share is too small to approximate LRU.
+   */
+  private static int defaultSegments(int maxSize) {
+    int n = 1;
+    int target = 4 * Runtime.getRuntime().availableProcessors();
+    while (n < target && (maxSize / (n << 1)) >= 16) {
+      n <<= 1;
+    }
+    return n;
+  }
+
+  /** @return the value, or null if absent or expired */
+  public Object get(Object key) {
+    return get(key, false);
+  }
+
+  /**
+   * Get a value with an optional "bypass the cache" flag, as in
+   * {@link LRUExpireMap#get(Object,boolean)}.
+   */
+  public Object get(Object key, boolean bypass) {
+    Node node = (Node) map.get(key);
+    if (node == null) {
+      misses.increment();
+      return null;
+    }
+    if (node.expireTime != NEVER || bypass) {
+      long now = System.currentTimeMillis();
+      if (node.expireTime < now) {
+        misses.increment();
+        segmentFor(key).expire(node);
+        return null;
+      }
+      if (bypass && (node.putTime + config.minBypassTime() < now)) {
+        misses.increment();
+        return null;
+      }
+    }
+    if (!node.referenced) {
+      node.referenced = true;
+    }
+    hits.increment();
+    return node.value;
+  }
+
+  /**
+   * Get the expiration time for an entry.
+   *
+   * @return -1 if the entry is not in the cache or has expired, or
+   *   <tt>Long.MAX_VALUE</tt> if it never expires.
+   */
+  public long getExpirationTime(Object key) {
+    Node node = (Node) map.get(key);
+    if (node == null ||
+        (node.expireTime != NEVER &&
+         node.expireTime < System.currentTimeMillis())) {
+      return -1;
+    }
+    return node.expireTime;
+  }
+
+  /**
+   * Put an entry that never expires.
+   *
+   * @return the old value if one was replaced
+   */
+  public Object put(Object key, Object value) {
+    return put(key, value, NEVER);
+  }
+
+  /**
+   * Put an entry in the cache with an expiration time.
+   * <p>
+   * If it has already expired, this method removes the old
+   * value (even if it hasn't expired) and ignores the new value.
+   *
+   * @return the old value if one was replaced
+   */
+  public Object put(Object key, Object value, long expireTime) {
+    if (key == null) {
+      throw new NullPointerException();
+    }
+    long now = System.currentTimeMillis();
+    if (expireTime <= now) {
+      return remove(key);
+    }
+    return segmentFor(key).put(key, new Node(key, value, now, expireTime));
+  }
+
+  /** @return the removed value, or null */
+  public Object remove(Object key) {
+    return segmentFor(key).remove(key);
+  }
+
+  /** @return the number of entries, including expired ones not yet removed */
+  public int size() {
+    return map.size();
+  }
+
+  public boolean isEmpty() {
+    return map.isEmpty();
+  }
+
+  public void clear() {
+    for (int i = 0; i < segments.length; i++) {
+      segments[i].clear();
+    }
+  }
+
+  /**
+   * Remove all expired entries.
+   *
+   * @return true if anything was removed
+   */
+  public boolean trim() {
+    int origSize = size();
+    int nfreed = 0;
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < segments.length; i++) {
+      nfreed += segments[i].trim(now);
+    }
+    if (watcher != null) {
+      watcher.noteTrim(nfreed, origSize);
+    }
+    return (nfreed > 0);
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  public long getExpirationCount() {
+    return expirations.get();
+  }
+
+  @Override
+public String toString() {
+    return 
+      "{ConcurrentLRUCache size="+size()+
+      "/"+config.maxSize()+
+      " hits="+getHitCount()+
+      " misses="+getMissCount()+
+      " evictions="+getEvictionCount()+
+      " expirations="+getExpirationCount()+
+      "}";
+  }
+
+  private Segment segmentFor(Object key) {
+    // spread the high bits, as in HashMap
+    int h = key.hashCode();
+    h ^= (h >>> 20) ^ (h >>> 12);
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return segments[h & segmentMask];
+  }
+
+  private static final class Node {
+    final Object key;
+    final Object value;
+    final long putTime;
+    final long expireTime;
+    /** set by reads, cleared by the clock hand */
+    volatile boolean referenced;
+    /** position in the segment's clock, or -1; guarded by the segment */
+    int slot = -1;
+
+    Node(Object key, Object value, long putTime, long expireTime) {
+      this.key = key;
+      this.value = value;
+      this.putTime = putTime;
+      this.expireTime = expireTime;
+    }
+  }
+
+  /**
+   * A share of the entries, with its own lock and clock.
+   */
+  private final class Segment {
+    private final int capacity;
+    private Node[] clock;
+    private int count;
+    private int hand;
+
+    Segment(int capacity) {
+      this.capacity = capacity;
+      this.clock = new Node[Math.min(capacity, 16)];
+    }
+
+    synchronized Object put(Object key, Node node) {
+      Node old = (Node) map.put(key, node);
+      if (old != null) {
+        // take over the old entry's place in the clock
+        node.slot = old.slot;
+        clock[node.slot] = node;
+        old.slot = -1;
+        return old.value;
+      }
+      if (count >= capacity) {
+        evict();
+      }
+      if (count == clock.length) {
+        Node[] a = new Node[Math.min(capacity, (count << 1) + 1)];
+        System.arraycopy(clock, 0, a, 0, count);
+        clock = a;
+      }
+      node.slot = count;
+      clock[count++] = node;
+      return null;
+    }
+
+    synchronized Object remove(Object key) {
+      Node node = (Node) map.remove(key);
+      if (node == null) {
+        return null;
+      }
+      unlink(node);
+      return node.value;
+    }
+
+    /** Remove an entry found expired by a reader, if still present. */
+    void expire(Node node) {
+      synchronized (this) {
+        if (!map.remove(node.key, node)) {
+          return;
+        }
+        unlink(node);
+      }
+      expirations.increment();
+      if (watcher != null) {
+        watcher.noteExpire(
+            node.key, node.value, node.putTime, node.expireTime);
+      }
+    }
+
+    synchronized int trim(long now) {
+      int nfreed = 0;
+      for (int i = count - 1; i >= 0; i--) {
+        Node node = clock[i];
+        if (node.expireTime < now) {
+          map.remove(node.key, node);
+          unlink(node);
+          noteExpired(node);
+          nfreed++;
+        }
+      }
+      return nfreed;
+    }
+
+    synchronized void clear() {
+      for (int i = 0; i < count; i++) {
+        Node node = clock[i];
+        map.remove(node.key, node);
+        node.slot = -1;
+        clock[i] = null;
+      }
+      count = 0;
+      hand = 0;
+    }
+
+    /**
+     * Advance the clock hand to the first expired or unreferenced
+     * entry, giving referenced entries a second chance, and remove it.
+     */
+    private void evict() {
+      long now = System.currentTimeMillis();
+      while (true) {
+        if (hand >= count) {
+          hand = 0;
+        }
+        Node node = clock[hand];
+        if (node.expireTime < now) {
+          map.remove(node.key, node);
+          unlink(node);
+          noteExpired(node);
+          return;
+        }
+        if (node.referenced) {
+          node.referenced = false;
+          hand++;
+          continue;
+        }
+        map.remove(node.key, node);
+        unlink(node);
+        evictions.increment();
+        if (watcher != null) {
+          watcher.noteEvict(
+              node.key, node.value, node.putTime, node.expireTime);
+        }
+        return;
+      }
+    }
+
+    private void noteExpired(Node node) {
+      expirations.increment();
+      if (watcher != null) {
+        watcher.noteExpire(
+            node.key, node.value, node.putTime, node.expireTime);
+      }
+    }
+
+    /** Remove a node from the clock by moving the last one into its place. */
+    private void unlink(Node node) {
+      int i = node.slot;
+      if (i < 0) {
+        return;
+      }
+      node.slot = -1;
+      Node last = clock[--count];
+      clock[count] = null;
+      if (i < count) {
+        clock[i] = last;
+        last.slot = i;
+      }
+    }
+  }
+}
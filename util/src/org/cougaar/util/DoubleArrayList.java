@@ -0,0 +1,471 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable array of <code>double</code>s, a primitive sibling of
+ * {@link ArrayListFoundation} that holds its elements unboxed.
+ * <p>
+ * Like ArrayListFoundation, the storage is protected so that
+ * subclasses have direct access, and nothing is synchronized.
+ * Iterate by index, which allocates nothing:<pre>
+ *   for (int i = 0, n = list.size(); i &lt; n; i++) {
+ *     double v = list.get(i);
+ *     ...
+ *   }
+ * </pre>
+ * Legacy callers that need a <code>java.util.List</code> can use
+ * {@link #asList}, which boxes on access.
+ *
+ * @see ArrayListFoundation
+ */
+public class DoubleArrayList
+  implements Cloneable, java.io.Serializable 
+{
+  /**
+    * 
+    */
+   private static final long serialVersionUID = 1L;
+
+  /**
+   * The array buffer into which the elements are stored.  The capacity
+   * is the length of this array buffer.
+   */
+  protected transient double elementData[];
+
+  /**
+   * The number of elements the list contains.
+   */
+  protected transient int size;
+
+  /**
+   * Constructs an empty list with the specified initial capacity.
+   *
+   * @param   initialCapacity   the initial capacity of the list.
+   */
+  public DoubleArrayList(int initialCapacity) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException(
+          "Illegal Capacity: "+initialCapacity);
+    }
+    elementData = new double[initialCapacity];
+  }
+
+  /**
+   * Constructs an empty list.
+   */
+  public DoubleArrayList() {
+    this(10);
+  }
+
+  /**
+   * Constructs a list containing a copy of the given elements.
+   */
+  public DoubleArrayList(double[] a) {
+    size = a.length;
+    elementData = new double[(size*110)/100]; // Allow 10% room for growth
+    System.arraycopy(a, 0, elementData, 0, size);
+  }
+
+  /**
+   * Trims the capacity of this list to be the list's current size.
+   */
+  public void trimToSize() {
+    if (size < elementData.length) {
+      double oldData[] = elementData;
+      elementData = new double[size];
+      System.arraycopy(oldData, 0, elementData, 0, size);
+    }
+  }
+
+  /**
+   * Increases the capacity of this list, if necessary, to ensure that
+   * it can hold at least the number of elements specified by the
+   * minimum capacity argument.
+   *
+   * @param   minCapacity   the desired minimum capacity.
+   */
+  public void ensureCapacity(int minCapacity) {
+    int oldCapacity = elementData.length;
+    if (minCapacity > oldCapacity) {
+      double oldData[] = elementData;
+      int newCapacity = (oldCapacity * 3)/2 + 1;
+      if (newCapacity < minCapacity)
+        newCapacity = minCapacity;
+      elementData = new double[newCapacity];
+      System.arraycopy(oldData, 0, elementData, 0, size);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(double elem) {
+    return indexOf(elem) >= 0;
+  }
+
+  /**
+   * @return the index of the first occurrence of the value, or -1 
+   */
+  public int indexOf(double elem) {
+    for (int i = 0; i < size; i++)
+      if (compare(elementData[i], elem) == 0)
+        return i;
+    return -1;
+  }
+
+  /**
+   * @return the index of the last occurrence of the value, or -1 
+   */
+  public int lastIndexOf(double elem) {
+    for (int i = size-1; i >= 0; i--)
+      if (compare(elementData[i], elem) == 0)
+        return i;
+    return -1;
+  }
+
+  /**
+   * Returns the element at the specified position in this list.
+   *
+   * @throws    IndexOutOfBoundsException if index is out of range <tt>(index
+   * 		  &lt; 0 || index &gt;= size())</tt>.
+   */
+  public double get(int index) {
+    RangeCheck(index);
+    return elementData[index];
+  }
+
+  /**
+   * Replaces the element at the specified position in this list.
+   *
+   * @return the element previously at the specified position.
+   */
+  public double set(int index, double element) {
+    RangeCheck(index);
+    double oldValue = elementData[index];
+    elementData[index] = element;
+    return oldValue;
+  }
+
+  /**
+   * Appends the specified element to the end of this list.
+   */
+  public void add(double v) {
+    ensureCapacity(size + 1);
+    elementData[size++] = v;
+  }
+
+  /**
+   * Inserts the specified element at the specified position in this
+   * list, shifting any subsequent elements to the right.
+   */
+  public void add(int index, double element) {
+    if (index > size || index < 0)
+      throw new IndexOutOfBoundsException(
+                                          "Index: "+index+", Size: "+size);
+    ensureCapacity(size+1);
+    System.arraycopy(elementData, index, elementData, index + 1,
+                     size - index);
+    elementData[index] = element;
+    size++;
+  }
+
+  /**
+   * Appends all of the given elements to the end of this list.
+   */
+  public void addAll(double[] a) {
+    ensureCapacity(size + a.length);
+    System.arraycopy(a, 0, elementData, size, a.length);
+    size += a.length;
+  }
+
+  /**
+   * Appends all of the elements of the given list to the end of this
+   * list.
+   */
+  public void addAll(DoubleArrayList l) {
+    int numNew = l.size;
+    ensureCapacity(size + numNew);
+    System.arraycopy(l.elementData, 0, elementData, size, numNew);
+    size += numNew;
+  }
+
+  /**
+   * Removes the element at the specified position in this list,
+   * shifting any subsequent elements to the left.
+   *
+   * @return the element that was removed from the list.
+   */
+  public double removeAt(int index) {
+    RangeCheck(index);
+    double oldValue = elementData[index];
+    int numMoved = size - index - 1;
+    if (numMoved > 0)
+      System.arraycopy(elementData, index+1, elementData, index,
+                       numMoved);
+    size--;
+    return oldValue;
+  }
+
+  /**
+   * Removes the first occurrence of the given value.
+   *
+   * @return true if the value was found
+   */
+  public boolean removeElement(double elem) {
+    int i = indexOf(elem);
+    if (i < 0) {
+      return false;
+    }
+    removeAt(i);
+    return true;
+  }
+
+  /**
+   * Removes all of the elements from this list, keeping its capacity.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Sorts the elements into ascending order.
+   */
+  public void sort() {
+    Arrays.sort(elementData, 0, size);
+  }
+
+  /**
+   * Searches this list, which must be sorted, for the given value.
+   *
+   * @return the index of the value, if it is contained in the list;
+   *   otherwise <tt>(-(<i>insertion point</i>) - 1)</tt>, as in
+   *   <code>Arrays.binarySearch</code>.
+   */
+  public int binarySearch(double key) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(elementData[mid], key);
+      if (cmp < 0)
+        low = mid + 1;
+      else if (cmp > 0)
+        high = mid - 1;
+      else
+        return mid;
+    }
+    return -(low + 1);
+  }
+
+  /**
+   * @return a new array containing the elements in order
+   */
+  public double[] toArray() {
+    double[] result = new double[size];
+    System.arraycopy(elementData, 0, result, 0, size);
+    return result;
+  }
+
+  /**
+   * Copies the elements into the given array, if it is big enough, 
+   * otherwise into a new array.
+   *
+   * @return the array holding the elements
+   */
+  public double[] toArray(double[] a) {
+    if (a.length < size)
+      a = new double[size];
+    System.arraycopy(elementData, 0, a, 0, size);
+    return a;
+  }
+
+  /**
+   * Returns a <code>java.util.List</code> of <code>Double</code>s backed
+   * by this list.  Changes to either are seen by the other, and the
+   * view supports the optional modification operations, but every
+   * access boxes or unboxes an element.
+   */
+  public List asList() {
+    return new ListView();
+  }
+
+  private class ListView extends AbstractList implements RandomAccess {
+    @Override
+    public int size() {
+      return size;
+    }
+    @Override
+    public Object get(int index) {
+      return Double.valueOf(DoubleArrayList.this.get(index));
+    }
+    @Override
+    public Object set(int index, Object element) {
+      return Double.valueOf(DoubleArrayList.this.set(index, ((Double)element).doubleValue()));
+    }
+    @Override
+    public void add(int index, Object element) {
+      DoubleArrayList.this.add(index, ((Double)element).doubleValue());
+    }
+    @Override
+    public Object remove(int index) {
+      return Double.valueOf(removeAt(index));
+    }
+    @Override
+    public int indexOf(Object o) {
+      return ((o instanceof Double) ? DoubleArrayList.this.indexOf(((Double)o).doubleValue()) : -1);
+    }
+    @Override
+    public int lastIndexOf(Object o) {
+      return ((o instanceof Double) ? DoubleArrayList.this.lastIndexOf(((Double)o).doubleValue()) : -1);
+    }
+    @Override
+    public boolean contains(Object o) {
+      return (indexOf(o) >= 0);
+    }
+    @Override
+    public void clear() {
+      DoubleArrayList.this.clear();
+    }
+  }
+
+  @Override
+public Object clone() {
+    try { 
+      DoubleArrayList v = (DoubleArrayList)super.clone();
+      v.elementData = new double[size];
+      System.arraycopy(elementData, 0, v.elementData, 0, size);
+      return v;
+    } catch (CloneNotSupportedException e) { 
+      // this shouldn't happen, since we are Cloneable
+      throw new InternalError();
+    }
+  }
+
+  /**
+   * Equal to another DoubleArrayList with the same elements in the same order.
+   */
+  @Override
+public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof DoubleArrayList)) {
+      return false;
+    }
+    DoubleArrayList l = (DoubleArrayList)o;
+    if (l.size != size) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (compare(elementData[i], l.elementData[i]) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The same hash code as a <code>java.util.List</code> of the boxed
+   * elements.
+   */
+  @Override
+public int hashCode() {
+    int hashCode = 1;
+    for (int i = 0; i < size; i++) {
+      hashCode = 31*hashCode + hash(elementData[i]);
+    }
+    return hashCode;
+  }
+
+  @Override
+public String toString() {
+    StringBuffer buf = new StringBuffer();
+    buf.append("[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        buf.append(", ");
+      }
+      buf.append(elementData[i]);
+    }
+    buf.append("]");
+    return buf.toString();
+  }
+
+  /**
+   * Compare as <code>Double.compare</code> does, so that NaN equals
+   * itself and sorts last, and -0.0 sorts before 0.0, consistent with
+   * <code>Arrays.sort</code> and <code>Double.equals</code>.
+   */
+  private static int compare(double a, double b) {
+    return Double.compare(a, b);
+  }
+
+  private static int hash(double v) {
+    long bits = Double.doubleToLongBits(v);
+    return (int)(bits ^ (bits >>> 32));
+  }
+
+  /**
+   * Check if the given index is in range.  If not, throw an appropriate
+   * runtime exception.
+   */
+  private void RangeCheck(int index) {
+    if (index >= size || index < 0)
+      throw new IndexOutOfBoundsException(
+                                          "Index: "+index+", Size: "+size);
+  }
+
+  private void writeObject(ObjectOutputStream s) throws IOException {
+    s.defaultWriteObject();
+    s.writeInt(size);
+    for (int i = 0; i < size; i++)
+      s.writeDouble(elementData[i]);
+  }
+
+  private void readObject(ObjectInputStream s)
+    throws IOException, ClassNotFoundException {
+    s.defaultReadObject();
+    size = s.readInt();
+    elementData = new double[size];
+    for (int i = 0; i < size; i++)
+      elementData[i] = s.readDouble();
+  }
+}
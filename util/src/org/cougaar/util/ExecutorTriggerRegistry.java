@@ -0,0 +1,137 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+package org.cougaar.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link TriggerRegistry} that runs each triggered client on an
+ * <code>Executor</code>.
+ * <p>
+ * Repeated "trigger()" calls made before the client runs are merged
+ * into a single run.  A trigger that arrives while the client is 
+ * running schedules another run, which may overlap the current one,
+ * so clients should be wrapped in a {@link SyncTriggerModelImpl} as
+ * the TriggerRegistry API recommends.
+ * <p>
+ * Either the returned registry trigger or the client trigger itself
+ * (as {@link SyncTriggerModelImpl} passes) may be unregistered.
+ * <p>
+ * The default executor is a {@link PooledExecutor}, or a virtual
+ * thread per run if {@link VirtualThreads#isEnabled}.
+ **/
+public class ExecutorTriggerRegistry implements TriggerRegistry {
+
+  private final Executor executor;
+
+  /** client Trigger to Registration **/
+  private final ConcurrentHashMap registrations = new ConcurrentHashMap();
+
+  public ExecutorTriggerRegistry() {
+    this(createDefaultExecutor("TriggerRegistry"));
+  }
+
+  public ExecutorTriggerRegistry(Executor executor) {
+    if (executor == null) {
+      throw new IllegalArgumentException("Null executor");
+    }
+    this.executor = executor;
+  }
+
+  /** @return a virtual thread executor if enabled, otherwise a 
+   * PooledExecutor configured by the org.cougaar.ReusableThread properties
+   **/
+  public static Executor createDefaultExecutor(String name) {
+    if (VirtualThreads.isEnabled()) {
+      return VirtualThreads.newExecutor(name);
+    }
+    return PooledExecutor.createDefault(
+        Thread.currentThread().getThreadGroup(), name);
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  public Trigger register(Trigger clientTrigger) {
+    if (clientTrigger == null) {
+      throw new IllegalArgumentException("Null trigger");
+    }
+    Registration r = new Registration(clientTrigger);
+    registrations.put(clientTrigger, r);
+    return r;
+  }
+
+  public void unregister(Trigger trigger) {
+    Registration r;
+    if (trigger instanceof Registration &&
+        ((Registration) trigger).owner() == this) {
+      r = (Registration) trigger;
+      registrations.remove(r.client, r);
+    } else {
+      r = (Registration) registrations.remove(trigger);
+      if (r == null) {
+        throw new IllegalArgumentException(
+            "Trigger not registered here");
+      }
+    }
+    r.cancelled = true;
+  }
+
+  private final class Registration implements Trigger, Runnable {
+    final Trigger client;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    volatile boolean cancelled;
+
+    Registration(Trigger client) {
+      this.client = client;
+    }
+
+    ExecutorTriggerRegistry owner() {
+      return ExecutorTriggerRegistry.this;
+    }
+
+    public void trigger() {
+      if (!cancelled && pending.compareAndSet(false, true)) {
+        try {
+          executor.execute(this);
+        } catch (RuntimeException e) {
+          pending.set(false);
+          throw e;
+        }
+      }
+    }
+
+    public void run() {
+      pending.set(false);
+      if (!cancelled) {
+        client.trigger();
+      }
+    }
+  }
+}
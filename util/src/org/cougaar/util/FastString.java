@@ -33,6 +33,21 @@ import java.io.ObjectOutput;
 
 /** A string wrapper which serializes the enclosed string more
  * efficiently... maybe.
+ * <p>
+ * Each character is written as a single byte (upper bits ignored),
+ * preceded by a short length.  Strings longer than Short.MAX_VALUE
+ * are written with a -1 short followed by an int length, so streams
+ * containing only short strings are unchanged from earlier releases.
+ * <p>
+ * The copy buffers are per-thread, so concurrent streams do not
+ * serialize on a shared lock, and each string is handed to the stream
+ * as a single bulk write.
+ * <p>
+ * Strings read from a stream are passed through the current
+ * {@link Deduplicator}.  By default this is the shared 
+ * {@link StringPool} if {@link Strings#getPool} has one, otherwise
+ * strings shorter than 18 characters are interned, as this class
+ * always has.
  **/
 
 public class FastString implements Externalizable {
@@ -45,38 +60,115 @@ public String toString() {
     return string;
   }
 
-  private static final int BUFSIZE = Short.MAX_VALUE;
-  private static final byte[] srcbuf = new byte[BUFSIZE];
+  /** Maps a freshly read string to a canonical equal instance.
+   * Implementations must be thread-safe.
+   **/
+  public interface Deduplicator {
+    String dedup(String s);
+  }
+
+  /** String.intern() for strings shorter than 18 chars **/
+  public static final Deduplicator INTERN_SHORT = new Deduplicator() {
+      public String dedup(String s) {
+        return (s.length() < 18 ? s.intern() : s);
+      }
+    };
+
+  /** The default Deduplicator: the shared StringPool if enabled, else INTERN_SHORT **/
+  public static final Deduplicator DEFAULT = new Deduplicator() {
+      public String dedup(String s) {
+        StringPool p = Strings.getPool();
+        return (p == null ? INTERN_SHORT.dedup(s) : p.intern(s));
+      }
+    };
+
+  private static volatile Deduplicator deduplicator = DEFAULT;
+
+  /** Set the Deduplicator applied to strings as they are read.
+   * A null value disables deduplication.
+   **/
+  public static void setDeduplicator(Deduplicator d) {
+    deduplicator = d;
+  }
+
+  public static Deduplicator getDeduplicator() {
+    return deduplicator;
+  }
+
+  /** Marker short for the long (int) length form **/
+  private static final int LONG_LENGTH = -1;
+
+  /** Per-thread buffers larger than this are not retained between calls **/
+  private static final int MAX_RETAINED = 1<<16;
+
+  private static final class Buffers {
+    byte[] bytes = new byte[256];
+    char[] chars = new char[256];
+  }
+
+  private static final ThreadLocal buffers = new ThreadLocal() {
+      @Override
+    protected Object initialValue() {
+        return new Buffers();
+      }
+    };
 
   public final void readExternal(ObjectInput in) throws IOException {
     int l = in.readShort();
-    synchronized (srcbuf) {
-      in.readFully(srcbuf,0,l);
+    if (l == LONG_LENGTH) {
+      l = in.readInt();
+    }
+    if (l < 0) {
+      throw new IOException("Bad FastString length "+l);
+    }
 
-      string=new String(srcbuf,0,l);
+    Buffers b = (Buffers) buffers.get();
+    byte[] src = b.bytes;
+    char[] dst = b.chars;
+    if (src.length < l) {
+      src = new byte[l];
+      dst = new char[l];
+      if (l <= MAX_RETAINED) {
+        b.bytes = src;
+        b.chars = dst;
+      }
+    }
+    in.readFully(src,0,l);
+    for (int i=0; i<l; i++) {
+      dst[i] = (char) (src[i] & 0xff);
     }
+    String s = new String(dst,0,l);
 
-    // intern short strings
-    if (l < 18) string=string.intern();
+    Deduplicator d = deduplicator;
+    string = (d == null ? s : d.dedup(s));
   }
 
-  private static final char[] dstbuf = new char[BUFSIZE];
-
   public final void writeExternal(ObjectOutput out) throws IOException {
-    int l = string.length();
-    if (l > BUFSIZE)
-      throw new IOException("Attempt to serialize a FastString of length "+l+
-                            " (limit is "+BUFSIZE+").\n"+
-                            "  First 60 characters are \""+string.substring(0,60)+
-                            "...\"");
-    out.writeShort(l);
-    char[] dst = dstbuf;        // localize the buffer reference
-    synchronized (dst) {
-      string.getChars(0, l, dst, 0);
-      for (int i=0; i<l; i++) {
-        out.write(dst[i]);      // upper bits ignored
+    String s = string;
+    int l = s.length();
+    if (l > Short.MAX_VALUE) {
+      out.writeShort(LONG_LENGTH);
+      out.writeInt(l);
+    } else {
+      out.writeShort(l);
+    }
+
+    Buffers b = (Buffers) buffers.get();
+    char[] src = b.chars;
+    byte[] dst = b.bytes;
+    if (src.length < l) {
+      src = new char[l];
+      dst = new byte[l];
+      if (l <= MAX_RETAINED) {
+        b.chars = src;
+        b.bytes = dst;
       }
     }
+    s.getChars(0, l, src, 0);
+    for (int i=0; i<l; i++) {
+      dst[i] = (byte) src[i];   // upper bits ignored
+    }
+    out.write(dst, 0, l);
   }
 
 }
@@ -0,0 +1,555 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An insertion-ordered <code>Map</code> like {@link ArrayMap}, but
+ * with its keys and values stored in a single interleaved
+ * <code>Object[]</code> (key0, value0, key1, value1, ...) rather than
+ * as one <code>Map.Entry</code> object per mapping.
+ * <p>
+ * This saves the header and fields of an entry object per mapping,
+ * which dominates the footprint of the many tiny maps an agent keeps.
+ * <code>Map.Entry</code> views are created only while iterating
+ * <tt>entrySet()</tt> or calling <tt>get(int)</tt>; they read and
+ * write through to the array and are only valid until the next
+ * structural change.
+ * <p>
+ * As in ArrayMap, key lookups are linear until the map reaches
+ * "indexThreshold" entries, and then go through a hash index of
+ * positions.  The default threshold is shared with ArrayMap:
+ * <pre>
+ *   -Dorg.cougaar.util.ArrayMap.indexThreshold=16
+ * </pre>
+ * <p>
+ * Unlike ArrayMap, the (key, value) types can't be restricted by
+ * overriding the entry factory, since there are no stored entries.
+ *
+ * @see ArrayMap
+ */
+public class FlatArrayMap 
+  extends AbstractMap
+  implements Cloneable, java.io.Serializable, KeyIndex.Keys {
+
+  /**
+    * 
+    */
+   private static final long serialVersionUID = 1L;
+
+  private static final Object[] EMPTY = new Object[0];
+
+  /** The interleaved keys and values. */
+  private transient Object[] kv;
+
+  /** The number of mappings. */
+  private transient int size;
+
+  /** The number of structural changes, for fail-fast iterators. */
+  private transient int modCount;
+
+  /**
+   * Size at which key lookups switch to the hash index, or zero for
+   * the default.
+   */
+  private final int indexThreshold;
+
+  /**
+   * Open-addressing hash index of positions, offset by one so that 
+   * zero marks an empty slot.  Null if not yet built or dropped after
+   * a structural change.
+   */
+  private transient int[] index;
+
+  private transient Set keys;
+  private transient Collection vals;
+  private transient Set entries;
+
+  public FlatArrayMap(int initialCapacity, int indexThreshold) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException(
+          "Negative initialCapacity: "+initialCapacity);
+    }
+    if (indexThreshold < 0) {
+      throw new IllegalArgumentException(
+          "Negative indexThreshold: "+indexThreshold);
+    }
+    kv = ((initialCapacity > 0) ? new Object[initialCapacity << 1] : EMPTY);
+    this.indexThreshold = indexThreshold;
+  }
+
+  public FlatArrayMap(int initialCapacity) {
+    this(initialCapacity, 0);
+  }
+
+  public FlatArrayMap() {
+    this(4);
+  }
+
+  public FlatArrayMap(Map t) {
+    this(t.size());
+    putAll(t);
+  }
+
+  @Override
+public int size() {
+    return size;
+  }
+
+  @Override
+public boolean isEmpty() {
+    return (size == 0);
+  }
+
+  @Override
+public boolean containsKey(Object key) {
+    return (indexOfKey(key) >= 0);
+  }
+
+  @Override
+public boolean containsValue(Object value) {
+    for (int i = 1, n = (size << 1); i < n; i += 2) {
+      Object v = kv[i];
+      if ((value == null) ? (v == null) : value.equals(v)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+public Object get(Object key) {
+    int i = indexOfKey(key);
+    return ((i >= 0) ? kv[(i << 1) + 1] : null);
+  }
+
+  @Override
+public Object put(Object key, Object value) {
+    int i = indexOfKey(key);
+    if (i >= 0) {
+      // found matching entry, replace value
+      int vi = (i << 1) + 1;
+      Object oldValue = kv[vi];
+      kv[vi] = value;
+      return oldValue;
+    }
+    ensureCapacity(size + 1);
+    i = size++;
+    kv[i << 1] = key;
+    kv[(i << 1) + 1] = value;
+    modCount++;
+    if (index != null) {
+      // appending keeps the other positions, so just add this one
+      index = KeyIndex.append(index, key, i);
+    }
+    // no old value
+    return null;
+  }
+
+  @Override
+public Object remove(Object key) {
+    int i = indexOfKey(key);
+    if (i < 0) {
+      return null;
+    }
+    Object oldValue = kv[(i << 1) + 1];
+    removeAt(i);
+    return oldValue;
+  }
+
+  @Override
+public void clear() {
+    for (int i = 0, n = (size << 1); i < n; i++) {
+      kv[i] = null;
+    }
+    size = 0;
+    modCount++;
+    index = null;
+  }
+
+  /**
+   * Make room for at least the given number of mappings.
+   */
+  public void ensureCapacity(int minCapacity) {
+    int cap = (kv.length >> 1);
+    if (minCapacity > cap) {
+      int newCap = ((cap * 3) >> 1) + 1;
+      if (newCap < minCapacity) {
+        newCap = minCapacity;
+      }
+      Object[] a = new Object[newCap << 1];
+      System.arraycopy(kv, 0, a, 0, (size << 1));
+      kv = a;
+    }
+  }
+
+  /**
+   * Trim the capacity down to the current number of mappings.
+   */
+  public void trimToSize() {
+    if (kv.length > (size << 1)) {
+      Object[] a = ((size > 0) ? new Object[size << 1] : EMPTY);
+      System.arraycopy(kv, 0, a, 0, (size << 1));
+      kv = a;
+    }
+  }
+
+  /**
+   * Get a <code>Map.Entry</code> view of the mapping at the specified
+   * offset of the <tt>entrySet().iterator()</tt>.
+   *
+   * @see ArrayMap#get(int)
+   */
+  public Map.Entry get(int index) {
+    checkIndex(index);
+    return new FlatEntry(index);
+  }
+
+  /**
+   * @see #get(int)
+   */
+  public Object getKey(int index) {
+    checkIndex(index);
+    return kv[index << 1];
+  }
+
+  /**
+   * @see #get(int)
+   */
+  public Object getValue(int index) {
+    checkIndex(index);
+    return kv[(index << 1) + 1];
+  }
+
+  private void checkIndex(int i) {
+    if ((i < 0) || (i >= size)) {
+      throw new IndexOutOfBoundsException(
+          "Index: "+i+", Size: "+size);
+    }
+  }
+
+  private void removeAt(int i) {
+    int n = (size << 1);
+    int from = ((i + 1) << 1);
+    System.arraycopy(kv, from, kv, (i << 1), (n - from));
+    kv[n - 2] = null;
+    kv[n - 1] = null;
+    size--;
+    modCount++;
+    index = null;
+  }
+
+  /**
+   * Find the position of the mapping for the given key.
+   *
+   * @return the mapping's offset, or -1 if there is no such mapping
+   */
+  private int indexOfKey(Object key) {
+    int n = size;
+    int[] idx = null;
+    if (KeyIndex.isIndexed(n, indexThreshold)) {
+      idx = index;
+      if (idx == null) {
+        idx = KeyIndex.build(this, n);
+        index = idx;
+      }
+    }
+    return KeyIndex.find(this, n, idx, key);
+  }
+
+  /**
+   * Returns a shallow copy of this map:  the keys and values are not
+   * cloned.
+   */
+  @Override
+public Object clone() {
+    FlatArrayMap m;
+    try { 
+      m = (FlatArrayMap)super.clone();
+    } catch (CloneNotSupportedException e) { 
+      // this shouldn't happen, since we are Cloneable
+      throw new InternalError();
+    }
+    m.kv = kv.clone();
+    m.modCount = 0;
+    m.index = null;
+    m.keys = null;
+    m.vals = null;
+    m.entries = null;
+    return m;
+  }
+
+  @Override
+public Set keySet() {
+    if (keys == null) {
+      keys = new AbstractSet() {
+        @Override
+      public Iterator iterator() {
+          return new Itr() {
+            @Override
+            protected Object element(int i) {
+              return kv[i << 1];
+            }
+          };
+        }
+        @Override
+      public int size() {
+          return size;
+        }
+        @Override
+      public boolean contains(Object o) {
+          return containsKey(o);
+        }
+        @Override
+      public boolean remove(Object o) {
+          int i = indexOfKey(o);
+          if (i < 0) {
+            return false;
+          }
+          removeAt(i);
+          return true;
+        }
+        @Override
+      public void clear() {
+          FlatArrayMap.this.clear();
+        }
+      };
+    }
+    return keys;
+  }
+
+  @Override
+public Collection values() {
+    if (vals == null) {
+      vals = new AbstractCollection() {
+        @Override
+      public Iterator iterator() {
+          return new Itr() {
+            @Override
+            protected Object element(int i) {
+              return kv[(i << 1) + 1];
+            }
+          };
+        }
+        @Override
+      public int size() {
+          return size;
+        }
+        @Override
+      public boolean contains(Object o) {
+          return containsValue(o);
+        }
+        @Override
+      public void clear() {
+          FlatArrayMap.this.clear();
+        }
+      };
+    }
+    return vals;
+  }
+
+  @Override
+public Set entrySet() {
+    if (entries == null) {
+      entries = new AbstractSet() {
+        @Override
+      public Iterator iterator() {
+          return new Itr() {
+            @Override
+            protected Object element(int i) {
+              return new FlatEntry(i);
+            }
+          };
+        }
+        @Override
+      public boolean contains(Object o) {
+          return (indexOfEntry(o) >= 0);
+        }
+        @Override
+      public boolean remove(Object o) {
+          int i = indexOfEntry(o);
+          if (i < 0) {
+            return false;
+          }
+          removeAt(i);
+          return true;
+        }
+        @Override
+      public int size() {
+          return size;
+        }
+        @Override
+      public void clear() {
+          FlatArrayMap.this.clear();
+        }
+      };
+    }
+    return entries;
+  }
+
+  private int indexOfEntry(Object o) {
+    if (o instanceof Map.Entry) {
+      Map.Entry me = (Map.Entry)o;
+      int i = indexOfKey(me.getKey());
+      if (i >= 0) {
+        Object v = kv[(i << 1) + 1];
+        Object value = me.getValue();
+        if ((value == null) ? (v == null) : value.equals(v)) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Fail-fast iterator over positions, which supports removal.
+   */
+  private abstract class Itr implements Iterator {
+    private int next = 0;
+    private int last = -1;
+    private int expectedModCount = modCount;
+
+    protected abstract Object element(int i);
+
+    public boolean hasNext() {
+      return (next < size);
+    }
+
+    public Object next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      last = next++;
+      return element(last);
+    }
+
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      removeAt(last);
+      next = last;
+      last = -1;
+      expectedModCount = modCount;
+    }
+  }
+
+  /**
+   * A <code>Map.Entry</code> view of one position in the array.
+   */
+  private final class FlatEntry implements Map.Entry {
+    private final int i;
+
+    FlatEntry(int i) {
+      this.i = i;
+    }
+
+    public Object getKey() {
+      return kv[i << 1];
+    }
+
+    public Object getValue() {
+      return kv[(i << 1) + 1];
+    }
+
+    public Object setValue(Object newValue) {
+      int vi = (i << 1) + 1;
+      Object oldValue = kv[vi];
+      kv[vi] = newValue;
+      return oldValue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry me = (Map.Entry)o;
+      Object key = getKey();
+      Object value = getValue();
+      return
+        (((key != null) ?
+          (key.equals(me.getKey())) :
+          (me.getKey() == null)) &&
+         ((value != null) ?
+          (value.equals(me.getValue())) :
+          (me.getValue() == null)));
+    }
+
+    @Override
+    public int hashCode() {
+      Object key = getKey();
+      Object value = getValue();
+      return 
+        (((key != null) ? key.hashCode() : 0) ^
+         ((value != null) ? value.hashCode() : 0));
+    }
+
+    @Override
+    public String toString() {
+      return getKey()+"="+getValue();
+    }
+  }
+
+  private void writeObject(ObjectOutputStream os) throws IOException {
+    os.defaultWriteObject();
+    os.writeInt(size);
+    for (int i = 0, n = (size << 1); i < n; i++) {
+      os.writeObject(kv[i]);
+    }
+  }
+
+  private void readObject(ObjectInputStream is)
+    throws IOException, ClassNotFoundException {
+    is.defaultReadObject();
+    int n = is.readInt();
+    kv = ((n > 0) ? new Object[n << 1] : EMPTY);
+    for (int i = 0; i < (n << 1); i++) {
+      kv[i] = is.readObject();
+    }
+    size = n;
+  }
+}
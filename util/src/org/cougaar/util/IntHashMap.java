@@ -0,0 +1,267 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+/**
+ * A hash map from <code>int</code> keys to objects that stores the
+ * keys unboxed, in an open-addressing table with linear probing.
+ * <p>
+ * Lookups and updates allocate nothing (apart from growing the
+ * table), and {@link #forEach} visits the entries without an iterator
+ * or boxing.  The order of iteration is unspecified.  Null values are
+ * allowed, so use <tt>containsKey</tt> to tell them from absent keys.
+ * This implementation is not synchronized.
+ *
+ * @see IntHashSet
+ */
+public class IntHashMap {
+
+  /** Called for each entry by {@link #forEach} **/
+  public interface EntryThunk {
+    void apply(int key, Object value);
+  }
+
+  /** Marks a free slot; that key itself is tracked by hasZero **/
+  private static final int FREE = 0;
+
+  private int[] keys;
+  private Object[] values;
+  private boolean hasZero;
+  private Object zeroValue;
+  private int size;
+  /** grow when the table holds more than this many entries **/
+  private int threshold;
+
+  public IntHashMap() {
+    this(16);
+  }
+
+  /**
+   * @param expectedSize the number of entries to hold without growing
+   */
+  public IntHashMap(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Illegal size: "+expectedSize);
+    }
+    allocate(IntHashSet.capacityFor(expectedSize));
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(int key) {
+    return (key == FREE) ? hasZero : (indexOf(key) >= 0);
+  }
+
+  /** @return the value, or null if absent **/
+  public Object get(int key) {
+    if (key == FREE) {
+      return zeroValue;
+    }
+    int i = indexOf(key);
+    return ((i >= 0) ? values[i] : null);
+  }
+
+  /** @return the previous value, or null if none **/
+  public Object put(int key, Object value) {
+    if (key == FREE) {
+      Object old = zeroValue;
+      zeroValue = value;
+      if (!hasZero) {
+        hasZero = true;
+        size++;
+      }
+      return old;
+    }
+    int[] tab = keys;
+    int mask = tab.length - 1;
+    int i = hash(key) & mask;
+    for (; tab[i] != FREE; i = (i + 1) & mask) {
+      if (tab[i] == key) {
+        Object old = values[i];
+        values[i] = value;
+        return old;
+      }
+    }
+    tab[i] = key;
+    values[i] = value;
+    if (++size > threshold) {
+      rehash(tab.length << 1);
+    }
+    return null;
+  }
+
+  /** @return the removed value, or null if none **/
+  public Object remove(int key) {
+    if (key == FREE) {
+      Object old = zeroValue;
+      if (hasZero) {
+        hasZero = false;
+        zeroValue = null;
+        size--;
+      }
+      return old;
+    }
+    int i = indexOf(key);
+    if (i < 0) {
+      return null;
+    }
+    Object old = values[i];
+    shiftBack(i);
+    size--;
+    return old;
+  }
+
+  public void clear() {
+    int[] tab = keys;
+    for (int i = 0; i < tab.length; i++) {
+      tab[i] = FREE;
+      values[i] = null;
+    }
+    hasZero = false;
+    zeroValue = null;
+    size = 0;
+  }
+
+  /**
+   * Apply the thunk to each entry.  The map must not be modified
+   * until this returns.
+   */
+  public void forEach(EntryThunk thunk) {
+    if (hasZero) {
+      thunk.apply(FREE, zeroValue);
+    }
+    int[] tab = keys;
+    for (int i = 0; i < tab.length; i++) {
+      if (tab[i] != FREE) {
+        thunk.apply(tab[i], values[i]);
+      }
+    }
+  }
+
+  /** @return the keys, in no particular order **/
+  public int[] keys() {
+    int[] a = new int[size];
+    int n = 0;
+    if (hasZero) {
+      a[n++] = FREE;
+    }
+    int[] tab = keys;
+    for (int i = 0; i < tab.length; i++) {
+      if (tab[i] != FREE) {
+        a[n++] = tab[i];
+      }
+    }
+    return a;
+  }
+
+  @Override
+public String toString() {
+    final StringBuffer buf = new StringBuffer();
+    buf.append("{");
+    forEach(new EntryThunk() {
+      public void apply(int key, Object value) {
+        if (buf.length() > 1) {
+          buf.append(", ");
+        }
+        buf.append(key).append("=").append(value);
+      }
+    });
+    buf.append("}");
+    return buf.toString();
+  }
+
+  private int indexOf(int key) {
+    int[] tab = keys;
+    int mask = tab.length - 1;
+    for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+      int e = tab[i];
+      if (e == key) {
+        return i;
+      }
+      if (e == FREE) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * Empty slot i, moving later entries of its probe chain back so
+   * that no lookup stops early at the hole.
+   */
+  private void shiftBack(int i) {
+    int[] tab = keys;
+    int mask = tab.length - 1;
+    for (int j = (i + 1) & mask; tab[j] != FREE; j = (j + 1) & mask) {
+      int home = hash(tab[j]) & mask;
+      // move entry j into the hole unless its home lies in (i, j]
+      if ((j > i) ? (home <= i || home > j) : (home <= i && home > j)) {
+        tab[i] = tab[j];
+        values[i] = values[j];
+        i = j;
+      }
+    }
+    tab[i] = FREE;
+    values[i] = null;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldKeys = keys;
+    Object[] oldValues = values;
+    allocate(capacity);
+    int[] tab = keys;
+    int mask = capacity - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      int k = oldKeys[j];
+      if (k != FREE) {
+        int i = hash(k) & mask;
+        while (tab[i] != FREE) {
+          i = (i + 1) & mask;
+        }
+        tab[i] = k;
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    values = new Object[capacity];
+    threshold = (capacity >> 2) * 3;
+  }
+
+  private static int hash(int v) {
+    // Fibonacci hashing, so sequential ids spread over the table
+    int h = v * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
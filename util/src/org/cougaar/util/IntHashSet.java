@@ -0,0 +1,251 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+/**
+ * A hash set of <code>int</code>s that stores them unboxed, in an
+ * open-addressing table with linear probing.
+ * <p>
+ * Adding, testing and removing allocate nothing (apart from growing
+ * the table), and {@link #forEach} visits the elements without an
+ * iterator or boxing.  The order of iteration is unspecified.
+ * This implementation is not synchronized.
+ *
+ * @see IntHashMap
+ */
+public class IntHashSet {
+
+  /** Marks a free slot; the value itself is tracked by hasZero **/
+  private static final int FREE = 0;
+
+  private int[] table;
+  private boolean hasZero;
+  private int size;
+  /** grow when the table holds more than this many elements **/
+  private int threshold;
+
+  public IntHashSet() {
+    this(16);
+  }
+
+  /**
+   * @param expectedSize the number of elements to hold without growing
+   */
+  public IntHashSet(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Illegal size: "+expectedSize);
+    }
+    allocate(capacityFor(expectedSize));
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(int v) {
+    if (v == FREE) {
+      return hasZero;
+    }
+    int[] tab = table;
+    int mask = tab.length - 1;
+    for (int i = hash(v) & mask; ; i = (i + 1) & mask) {
+      int e = tab[i];
+      if (e == v) {
+        return true;
+      }
+      if (e == FREE) {
+        return false;
+      }
+    }
+  }
+
+  /** @return true if the element was not already present **/
+  public boolean add(int v) {
+    if (v == FREE) {
+      if (hasZero) {
+        return false;
+      }
+      hasZero = true;
+      size++;
+      return true;
+    }
+    int[] tab = table;
+    int mask = tab.length - 1;
+    int i = hash(v) & mask;
+    for (; tab[i] != FREE; i = (i + 1) & mask) {
+      if (tab[i] == v) {
+        return false;
+      }
+    }
+    tab[i] = v;
+    if (++size > threshold) {
+      rehash(tab.length << 1);
+    }
+    return true;
+  }
+
+  /** @return true if the element was present **/
+  public boolean remove(int v) {
+    if (v == FREE) {
+      if (!hasZero) {
+        return false;
+      }
+      hasZero = false;
+      size--;
+      return true;
+    }
+    int[] tab = table;
+    int mask = tab.length - 1;
+    for (int i = hash(v) & mask; ; i = (i + 1) & mask) {
+      int e = tab[i];
+      if (e == FREE) {
+        return false;
+      }
+      if (e == v) {
+        shiftBack(i);
+        size--;
+        return true;
+      }
+    }
+  }
+
+  public void clear() {
+    int[] tab = table;
+    for (int i = 0; i < tab.length; i++) {
+      tab[i] = FREE;
+    }
+    hasZero = false;
+    size = 0;
+  }
+
+  /**
+   * Apply the thunk to each element.  The set must not be modified
+   * until this returns.
+   */
+  public void forEach(IntThunk thunk) {
+    if (hasZero) {
+      thunk.apply(FREE);
+    }
+    int[] tab = table;
+    for (int i = 0; i < tab.length; i++) {
+      int e = tab[i];
+      if (e != FREE) {
+        thunk.apply(e);
+      }
+    }
+  }
+
+  /** @return the elements, in no particular order **/
+  public int[] toArray() {
+    int[] a = new int[size];
+    int n = 0;
+    if (hasZero) {
+      a[n++] = FREE;
+    }
+    int[] tab = table;
+    for (int i = 0; i < tab.length; i++) {
+      if (tab[i] != FREE) {
+        a[n++] = tab[i];
+      }
+    }
+    return a;
+  }
+
+  @Override
+public String toString() {
+    StringBuffer buf = new StringBuffer();
+    buf.append("[");
+    int[] a = toArray();
+    for (int i = 0; i < a.length; i++) {
+      if (i > 0) {
+        buf.append(", ");
+      }
+      buf.append(a[i]);
+    }
+    buf.append("]");
+    return buf.toString();
+  }
+
+  /**
+   * Empty slot i, moving later elements of its probe chain back so
+   * that no lookup stops early at the hole.
+   */
+  private void shiftBack(int i) {
+    int[] tab = table;
+    int mask = tab.length - 1;
+    for (int j = (i + 1) & mask; tab[j] != FREE; j = (j + 1) & mask) {
+      int home = hash(tab[j]) & mask;
+      // move tab[j] into the hole unless its home lies in (i, j]
+      if ((j > i) ? (home <= i || home > j) : (home <= i && home > j)) {
+        tab[i] = tab[j];
+        i = j;
+      }
+    }
+    tab[i] = FREE;
+  }
+
+  private void rehash(int capacity) {
+    int[] old = table;
+    allocate(capacity);
+    int[] tab = table;
+    int mask = capacity - 1;
+    for (int j = 0; j < old.length; j++) {
+      int e = old[j];
+      if (e != FREE) {
+        int i = hash(e) & mask;
+        while (tab[i] != FREE) {
+          i = (i + 1) & mask;
+        }
+        tab[i] = e;
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    table = new int[capacity];
+    threshold = (capacity >> 2) * 3;
+  }
+
+  /** @return a power of two with room for the size at 3/4 load **/
+  static int capacityFor(int size) {
+    int cap = 8;
+    while (((cap >> 2) * 3) < size && cap < (1 << 30)) {
+      cap <<= 1;
+    }
+    return cap;
+  }
+
+  private static int hash(int v) {
+    // Fibonacci hashing, so sequential ids spread over the table
+    int h = v * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import org.cougaar.bootstrap.SystemProperties;
+
+/**
+ * The open-addressing hash index of key positions shared by
+ * {@link ArrayMap} and {@link FlatArrayMap}.
+ * <p>
+ * An index is an int[] whose length is a power of two, holding entry
+ * positions offset by one so that zero marks an empty slot.  The maps
+ * own their index and drop it after any structural change other than
+ * an append.
+ **/
+final class KeyIndex {
+
+  /** Default size at which key lookups switch to the hash index. */
+  static final int DEFAULT_THRESHOLD =
+    SystemProperties.getInt("org.cougaar.util.ArrayMap.indexThreshold", 16);
+
+  private KeyIndex() {}
+
+  /** A map whose keys are addressed by position. **/
+  interface Keys {
+    Object getKey(int i);
+  }
+
+  /**
+   * @param threshold the map's index threshold, or zero for the default
+   * @return true if a map of n entries should use the index
+   */
+  static boolean isIndexed(int n, int threshold) {
+    return n >= ((threshold > 0) ? threshold : DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * Find the position of the given key among the first n keys.
+   *
+   * @param idx the index, or null to search linearly
+   * @return the key's position, or -1 if there is no such key
+   */
+  static int find(Keys keys, int n, int[] idx, Object key) {
+    if (idx != null) {
+      int mask = idx.length - 1;
+      for (int s = hash(key) & mask; ; s = (s + 1) & mask) {
+        int p = idx[s];
+        if (p == 0) {
+          return -1;
+        }
+        Object k = keys.getKey(p - 1);
+        if ((key == null) ? (k == null) : key.equals(k)) {
+          return p - 1;
+        }
+      }
+    }
+    if (key == null) {
+      for (int i = 0; i < n; i++) {
+        if (keys.getKey(i) == null) {
+          return i;
+        }
+      }
+    } else {
+      for (int i = 0; i < n; i++) {
+        if (key.equals(keys.getKey(i))) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Build an index of the first n keys, with room for the map to
+   * double before the table is more than half full.
+   */
+  static int[] build(Keys keys, int n) {
+    int cap = 4;
+    while (cap < (n << 2)) {
+      cap <<= 1;
+    }
+    int[] idx = new int[cap];
+    for (int i = 0; i < n; i++) {
+      put(idx, keys.getKey(i), i);
+    }
+    return idx;
+  }
+
+  /**
+   * Add an appended key at position i, if the index still has room.
+   *
+   * @return the index, or null if it must be rebuilt
+   */
+  static int[] append(int[] idx, Object key, int i) {
+    if (((i + 1) << 1) > idx.length) {
+      return null;
+    }
+    put(idx, key, i);
+    return idx;
+  }
+
+  private static void put(int[] idx, Object key, int i) {
+    int mask = idx.length - 1;
+    int s = hash(key) & mask;
+    while (idx[s] != 0) {
+      s = (s + 1) & mask;
+    }
+    idx[s] = i + 1;
+  }
+
+  private static int hash(Object key) {
+    if (key == null) {
+      return 0;
+    }
+    // spread the high bits, as in HashMap
+    int h = key.hashCode();
+    h ^= (h >>> 20) ^ (h >>> 12);
+    return h ^ (h >>> 7) ^ (h >>> 4);
+  }
+}
@@ -26,16 +26,18 @@
 package org.cougaar.util;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * KeyedSet is a custom collection which looks like a Set,
  * but allows redefinition of the key to use.  The default key
  * is the identity operation.
+ *
+ * @see OpenKeyedSet for a more compact, unsynchronized alternative
  **/
 
 public class KeyedSet
@@ -54,15 +56,43 @@ public class KeyedSet
     addAll(c);
   }
 
+  /**
+   * Make this set safe for concurrent use, by moving the elements to
+   * a <code>ConcurrentHashMap</code>.  Lookups don't lock, updates
+   * lock only part of the map, and iterators are weakly consistent
+   * rather than fail-fast.
+   */
   public KeyedSet makeSynchronized() {
-    inner = Collections.synchronizedMap(inner);
+    if (!(inner instanceof ConcurrentHashMap)) {
+      inner = new ConcurrentHashMap(inner);
+    }
     return this;
   }
 
   public void clear() { inner.clear(); }
-  public boolean contains(Object o) { return inner.containsValue(o); }
+  /**
+   * Looks up the element by its key, rather than scanning.  An object
+   * that "getKey(..)" rejects with a ClassCastException is not
+   * contained.
+   **/
+  public boolean contains(Object o) {
+    if (o == null) return false;
+    Object key;
+    try {
+      key = getKey(o);
+    } catch (ClassCastException cce) {
+      return false;
+    }
+    if (key == null) return false;
+    Object e = inner.get(key);
+    return (e == o || (e != null && e.equals(o)));
+  }
   public boolean containsAll(Collection c) {
-    return inner.values().containsAll(c);
+    for (Iterator i = c.iterator(); i.hasNext();) {
+      if (!contains(i.next()))
+        return false;
+    }
+    return true;
   }
   public boolean isEmpty() { return inner.isEmpty(); }
   public Iterator iterator() { return inner.values().iterator(); }
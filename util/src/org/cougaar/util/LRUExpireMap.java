@@ -26,10 +26,17 @@
 
 package org.cougaar.util;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.cougaar.util.log.Logging;
 
 /**
  * An LRUExpireMap is a simple least-recently-used cache that also
@@ -42,6 +49,16 @@ import java.util.Map;
  * <p>
  * The caller must synchronized access on this map.
  * <p>
+ * Entries are also kept in a heap ordered by expiration time, so
+ * "trim()" only visits the expired entries.  Entries removed through
+ * an iterator of the map's views are not seen by the heap, and stay
+ * in it (but not in the map) until their expiration time passes.
+ * <p>
+ * An optional background reaper, started with "startReaper(..)",
+ * trims the map periodically on a shared timer thread, so the
+ * watcher's "noteExpire(..)" and "noteTrim(..)" calls are made off 
+ * the caller's thread.  The reaper synchronizes on the map.
+ * <p>
  * If you just want a simple LRU cache then see the javadocs for
  * <tt>LinkedHashMap</tt>, where you can override the
  * "removeEldestEntry(..)" method.
@@ -78,6 +95,16 @@ public class LRUExpireMap extends LinkedHashMap {
   protected final Config config;
   protected final Watcher watcher;
 
+  /** The entries in a binary heap, ordered by expiration time */
+  private transient Expirable[] heap = new Expirable[16];
+  private transient int heapSize;
+
+  /** Our periodic trim task, or null if not started */
+  private transient TimerTask reaper;
+
+  /** Shared by all maps' reapers, created on first use */
+  private static Timer reaperTimer;
+
   public LRUExpireMap(Config config, Watcher watcher) {
     super(config.initialSize(), 0.75f, true);
     this.config = config;
@@ -173,8 +200,33 @@ public Object put(Object key, Object value) {
     } else {
       Expirable eo = new Expirable(value, now, expireTime);
       oldEO = (Expirable) super.put(key, eo);
+      index(key, eo);
+    }
+    if (oldEO == null) {
+      return null;
+    }
+    unindex(oldEO);
+    return oldEO.value;
+  }
+
+  @Override
+public Object remove(Object key) {
+    Expirable eo = (Expirable) super.remove(key);
+    if (eo == null) {
+      return null;
     }
-    return (oldEO == null ? null : oldEO.value);
+    unindex(eo);
+    return eo;
+  }
+
+  @Override
+public void clear() {
+    super.clear();
+    for (int i = 0; i < heapSize; i++) {
+      heap[i].slot = -1;
+      heap[i] = null;
+    }
+    heapSize = 0;
   }
 
   /**
@@ -204,6 +256,7 @@ protected boolean removeEldestEntry(Map.Entry eldest) {
             eo.putTime,
             eo.expireTime);
       }
+      unindex(eo);
       return true;
     }
     if (trim()) {
@@ -211,12 +264,15 @@ protected boolean removeEldestEntry(Map.Entry eldest) {
       return false;
     }
     // remove the eldest entry
-    if (eo != null && watcher != null) {
-      watcher.noteEvict(
-          eldest.getKey(),
-          eo.value,
-          eo.putTime,
-          eo.expireTime);
+    if (eo != null) {
+      if (watcher != null) {
+        watcher.noteEvict(
+            eldest.getKey(),
+            eo.value,
+            eo.putTime,
+            eo.expireTime);
+      }
+      unindex(eo);
     }
     return true;
   }
@@ -226,7 +282,10 @@ protected boolean removeEldestEntry(Map.Entry eldest) {
    * <p>
    * This can optionally be called on a periodic timer, but
    * it's not necessary -- the cache will limit its size based
-   * upon the config's "maxSize()".
+   * upon the config's "maxSize()".  See "startReaper(..)".
+   * <p>
+   * The cost is proportional to the number of expired entries,
+   * not the size of the map.
    *
    * @return true if anything was removed
    */
@@ -237,21 +296,23 @@ protected boolean removeEldestEntry(Map.Entry eldest) {
     }
     int nfreed = 0;
     long now = System.currentTimeMillis();
-    for (Iterator iter = entrySet().iterator();
-        iter.hasNext();
-        ) {
-      Map.Entry me = (Map.Entry) iter.next();
-      Expirable eo = (Expirable) me.getValue();
-      if (eo.expireTime < now) {
-        if (watcher != null) {
-          watcher.noteExpire(
-              me.getKey(),
-              eo.value,
-              eo.putTime,
-              eo.expireTime);
-        }
-        iter.remove();
-        ++nfreed;
+    while (heapSize > 0 && heap[0].expireTime < now) {
+      Expirable eo = heap[0];
+      unindex(eo);
+      Object key = eo.key;
+      if (super.get(key) != eo) {
+        // already removed through an iterator
+        continue;
+      }
+      // remove first, so a failing watcher leaves the map consistent
+      super.remove(key);
+      ++nfreed;
+      if (watcher != null) {
+        watcher.noteExpire(
+            key,
+            eo.value,
+            eo.putTime,
+            eo.expireTime);
       }
     }
     if (watcher != null) {
@@ -260,6 +321,159 @@ protected boolean removeEldestEntry(Map.Entry eldest) {
     return (nfreed > 0);
   }
 
+  /**
+   * Start trimming this map every <tt>period</tt> milliseconds on a
+   * shared background thread, replacing any earlier reaper.
+   * <p>
+   * The reaper holds the map's lock while it trims, and only trims
+   * if some entry has expired.  It doesn't keep the map from being
+   * garbage collected.
+   */
+  public synchronized void startReaper(long period) {
+    if (period <= 0) {
+      throw new IllegalArgumentException(
+          "Reaper period must be positive, not "+period);
+    }
+    stopReaper();
+    reaper = new Reaper(this);
+    try {
+      getReaperTimer().schedule(reaper, period, period);
+    } catch (IllegalStateException e) {
+      // the shared timer died, e.g. from an Error in a watcher
+      getNewReaperTimer().schedule(reaper, period, period);
+    }
+  }
+
+  /** Stop the reaper, if one was started. */
+  public synchronized void stopReaper() {
+    if (reaper != null) {
+      reaper.cancel();
+      reaper = null;
+    }
+  }
+
+  private static synchronized Timer getReaperTimer() {
+    if (reaperTimer == null) {
+      reaperTimer = new Timer("LRUExpireMap reaper", true);
+    }
+    return reaperTimer;
+  }
+
+  private static synchronized Timer getNewReaperTimer() {
+    reaperTimer = null;
+    return getReaperTimer();
+  }
+
+  private static final class Reaper extends TimerTask {
+    private final WeakReference ref;
+    Reaper(LRUExpireMap map) {
+      ref = new WeakReference(map);
+    }
+    @Override
+    public void run() {
+      LRUExpireMap map = (LRUExpireMap) ref.get();
+      if (map == null) {
+        cancel();
+        return;
+      }
+      try {
+        synchronized (map) {
+          if (map.heapSize > 0 &&
+              map.heap[0].expireTime < System.currentTimeMillis()) {
+            map.trim();
+          }
+        }
+      } catch (RuntimeException e) {
+        // don't let one map's watcher kill the shared timer
+        Logging.getLogger(LRUExpireMap.class).error(
+            "LRUExpireMap reaper trim failed", e);
+      }
+    }
+  }
+
+  //
+  // expiration-time heap
+  //
+
+  private void index(Object key, Expirable eo) {
+    eo.key = key;
+    if (heapSize == heap.length) {
+      Expirable[] a = new Expirable[heapSize << 1];
+      System.arraycopy(heap, 0, a, 0, heapSize);
+      heap = a;
+    }
+    eo.slot = heapSize;
+    heap[heapSize++] = eo;
+    siftUp(eo.slot);
+  }
+
+  private void unindex(Expirable eo) {
+    int i = eo.slot;
+    if (i < 0) {
+      // never indexed, or already removed
+      return;
+    }
+    eo.slot = -1;
+    Expirable last = heap[--heapSize];
+    heap[heapSize] = null;
+    if (i < heapSize) {
+      heap[i] = last;
+      last.slot = i;
+      siftDown(i);
+      if (heap[i] == last) {
+        siftUp(i);
+      }
+    }
+  }
+
+  private void siftUp(int i) {
+    Expirable eo = heap[i];
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      Expirable p = heap[parent];
+      if (p.expireTime <= eo.expireTime) {
+        break;
+      }
+      heap[i] = p;
+      p.slot = i;
+      i = parent;
+    }
+    heap[i] = eo;
+    eo.slot = i;
+  }
+
+  private void siftDown(int i) {
+    Expirable eo = heap[i];
+    int half = heapSize >>> 1;
+    while (i < half) {
+      int child = (i << 1) + 1;
+      Expirable c = heap[child];
+      int right = child + 1;
+      if (right < heapSize && heap[right].expireTime < c.expireTime) {
+        child = right;
+        c = heap[child];
+      }
+      if (eo.expireTime <= c.expireTime) {
+        break;
+      }
+      heap[i] = c;
+      c.slot = i;
+      i = child;
+    }
+    heap[i] = eo;
+    eo.slot = i;
+  }
+
+  private void readObject(ObjectInputStream in)
+    throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    heap = new Expirable[Math.max(16, size())];
+    for (Iterator iter = entrySet().iterator(); iter.hasNext(); ) {
+      Map.Entry me = (Map.Entry) iter.next();
+      index(me.getKey(), (Expirable) me.getValue());
+    }
+  }
+
   /**
    * All entries are of this type.
    * <p>
@@ -275,6 +489,10 @@ protected boolean removeEldestEntry(Map.Entry eldest) {
       public final Object value;
       public final long putTime;
       public final long expireTime;
+      /** the entry's key, for removal when it expires */
+      private transient Object key;
+      /** position in the map's expiration heap, or -1 */
+      private transient int slot = -1;
       public Expirable(
           Object value,
           long now,
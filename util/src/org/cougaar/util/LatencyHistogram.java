@@ -0,0 +1,141 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+package org.cougaar.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of durations, in nanoseconds, with one
+ * bucket per power of two.
+ * <p>
+ * Bucket 0 counts zero durations and bucket <i>b</i> &gt; 0 counts
+ * durations in [2<sup>b-1</sup>, 2<sup>b</sup>), so percentiles are
+ * reported as the upper bound of their bucket, within a factor of
+ * two.  Recording is a few atomic increments and never allocates.
+ **/
+public class LatencyHistogram {
+
+  /** The number of buckets **/
+  public static final int BUCKETS = 64;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  /** Record one duration.  Negative values are counted as zero. **/
+  public void record(long nanos) {
+    if (nanos < 0) nanos = 0;
+    counts.incrementAndGet(bucketFor(nanos));
+    count.incrementAndGet();
+    totalNanos.addAndGet(nanos);
+    long m;
+    while (nanos > (m = maxNanos.get())) {
+      if (maxNanos.compareAndSet(m, nanos)) break;
+    }
+  }
+
+  /** @return the bucket index for a non-negative duration **/
+  public static int bucketFor(long nanos) {
+    return 64 - Long.numberOfLeadingZeros(nanos);
+  }
+
+  /** @return the largest duration counted by bucket b **/
+  public static long getBucketUpperBound(int b) {
+    return (b == 0 ? 0 : (b >= 63 ? Long.MAX_VALUE : (1L << b) - 1));
+  }
+
+  /** @return the number of durations counted in bucket b **/
+  public long getBucketCount(int b) {
+    return counts.get(b);
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getTotalNanos() {
+    return totalNanos.get();
+  }
+
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  /** @return the mean duration, or 0 if nothing has been recorded **/
+  public long getMeanNanos() {
+    long n = count.get();
+    return (n == 0 ? 0 : totalNanos.get() / n);
+  }
+
+  /**
+   * @param p a fraction between 0 and 1, e.g. 0.99
+   * @return the upper bound of the bucket holding the p'th quantile,
+   *   or 0 if nothing has been recorded
+   **/
+  public long getPercentileNanos(double p) {
+    if (p < 0.0 || p > 1.0) {
+      throw new IllegalArgumentException("Invalid percentile: "+p);
+    }
+    long[] c = new long[BUCKETS];
+    long n = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      c[b] = counts.get(b);
+      n += c[b];
+    }
+    if (n == 0) return 0;
+    long rank = (long) Math.ceil(p * n);
+    if (rank < 1) rank = 1;
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += c[b];
+      if (seen >= rank) {
+        return Math.min(getBucketUpperBound(b), maxNanos.get());
+      }
+    }
+    return maxNanos.get();
+  }
+
+  /** Clear all counts.  Not atomic with respect to concurrent records. **/
+  public void reset() {
+    for (int b = 0; b < BUCKETS; b++) {
+      counts.set(b, 0);
+    }
+    count.set(0);
+    totalNanos.set(0);
+    maxNanos.set(0);
+  }
+
+  @Override
+public String toString() {
+    return "(count="+getCount()+
+      " mean="+getMeanNanos()+
+      " p50="+getPercentileNanos(0.5)+
+      " p99="+getPercentileNanos(0.99)+
+      " max="+getMaxNanos()+" ns)";
+  }
+}
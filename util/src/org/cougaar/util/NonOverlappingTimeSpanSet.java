@@ -78,8 +78,11 @@ public boolean add(Object o) {
       throw new ClassCastException();
     }
 
-    Collection collection = intersectingSet((TimeSpan)o);
-    if (collection.size() != 0) {
+    // the spans are disjoint, so only the last one to start before
+    // o ends can overlap it
+    TimeSpan ts = (TimeSpan) o;
+    int i = lowerBound(ts.getEndTime());
+    if (i > 0 && endTimeAt(i-1) > ts.getStartTime()) {
       throw new IllegalArgumentException();
     } else {
       return super.add(o);
@@ -87,25 +90,31 @@ public boolean add(Object o) {
   }
 
 
+  /** Add the elements one at a time, so that each is checked for
+   * overlap; the bulk merge of TimeSpanSet would bypass add().
+   **/
+  @Override
+public boolean addAll(Collection c) {
+    boolean hasChanged = false;
+    for (Iterator i = c.iterator(); i.hasNext(); ) {
+      if (add(i.next()))
+        hasChanged = true;
+    }
+    return hasChanged;
+  }
+
+
   /** 
    * @return the element which intersects with 
    * the specified time. Will return null if time is not
    * covered by the set.
    **/
   public TimeSpan intersects(final long time) {
-    Collection collection = intersectingSet(time);
-
-    switch (collection.size()) {
-      
-    case 0:
-      return null;
-      
-    case 1:
-      return (TimeSpan)(collection.iterator().next());
-
-    default:
-      throw new RuntimeException("Overlapping elements");
-    }
+    // the spans are disjoint, so only the last one to start at or
+    // before time can contain it
+    int i = upperBound(time);
+    if (i == 0 || time >= endTimeAt(i-1)) return null;
+    return (TimeSpan) elementData[i-1];
   }
   
   
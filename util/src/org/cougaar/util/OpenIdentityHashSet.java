@@ -0,0 +1,272 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash set based upon object "==" identity, like 
+ * {@link IdentityHashSet}, but storing the elements directly in an
+ * open-addressing table rather than as keys of an
+ * <code>IdentityHashMap</code>, and probing with
+ * <code>System.identityHashCode</code>.
+ * <p>
+ * {@link #forEach} visits the elements without an iterator.  Null is
+ * a valid element.  This implementation is not synchronized.
+ */
+public class OpenIdentityHashSet extends AbstractSet {
+
+  /** Stands in for a null element **/
+  private static final Object NULL = new Object();
+
+  /** Marks a removed element, so that probe chains stay intact **/
+  private static final Object REMOVED = new Object();
+
+  /** The elements, null for never-used slots, or REMOVED **/
+  private Object[] table;
+  private int size;
+  /** The number of REMOVED slots **/
+  private int removed;
+  private int modCount;
+
+  public OpenIdentityHashSet() {
+    this(16);
+  }
+
+  /**
+   * @param expectedSize the number of elements to hold without growing
+   */
+  public OpenIdentityHashSet(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Illegal size: "+expectedSize);
+    }
+    table = new Object[capacityFor(expectedSize)];
+  }
+
+  public OpenIdentityHashSet(Collection c) {
+    this(c.size());
+    addAll(c);
+  }
+
+  @Override
+public int size() {
+    return size;
+  }
+
+  @Override
+public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+public boolean contains(Object o) {
+    return indexOf((o == null) ? NULL : o) >= 0;
+  }
+
+  @Override
+public boolean add(Object o) {
+    Object x = ((o == null) ? NULL : o);
+    Object[] tab = table;
+    int mask = tab.length - 1;
+    int free = -1;
+    for (int i = hash(x) & mask; ; i = (i + 1) & mask) {
+      Object e = tab[i];
+      if (e == x) {
+        return false;
+      }
+      if (e == null) {
+        if (free < 0) {
+          free = i;
+        }
+        break;
+      }
+      if (e == REMOVED && free < 0) {
+        free = i;
+      }
+    }
+    if (tab[free] == REMOVED) {
+      removed--;
+    }
+    tab[free] = x;
+    size++;
+    modCount++;
+    if ((size + removed) * 3 > (tab.length << 1)) {
+      rehash();
+    }
+    return true;
+  }
+
+  @Override
+public boolean remove(Object o) {
+    int i = indexOf((o == null) ? NULL : o);
+    if (i < 0) {
+      return false;
+    }
+    removeAt(i);
+    return true;
+  }
+
+  @Override
+public void clear() {
+    Object[] tab = table;
+    for (int i = 0; i < tab.length; i++) {
+      tab[i] = null;
+    }
+    size = 0;
+    removed = 0;
+    modCount++;
+  }
+
+  /**
+   * Apply the thunk to each element.  The set must not be modified
+   * until this returns.
+   */
+  public void forEach(Thunk thunk) {
+    Object[] tab = table;
+    for (int i = 0; i < tab.length; i++) {
+      Object e = tab[i];
+      if (e != null && e != REMOVED) {
+        thunk.apply((e == NULL) ? null : e);
+      }
+    }
+  }
+
+  @Override
+public Iterator iterator() {
+    return new Iterator() {
+      private int next = advance(0);
+      private int last = -1;
+      private int expectedModCount = modCount;
+
+      private int advance(int i) {
+        Object[] tab = table;
+        while (i < tab.length && (tab[i] == null || tab[i] == REMOVED)) {
+          i++;
+        }
+        return i;
+      }
+
+      public boolean hasNext() {
+        return next < table.length;
+      }
+
+      public Object next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (next >= table.length) {
+          throw new NoSuchElementException();
+        }
+        last = next;
+        next = advance(next + 1);
+        Object e = table[last];
+        return (e == NULL) ? null : e;
+      }
+
+      public void remove() {
+        if (last < 0) {
+          throw new IllegalStateException();
+        }
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        // leaves a REMOVED marker, so the table doesn't move
+        removeAt(last);
+        last = -1;
+        expectedModCount = modCount;
+      }
+    };
+  }
+
+  private int indexOf(Object x) {
+    Object[] tab = table;
+    int mask = tab.length - 1;
+    for (int i = hash(x) & mask; ; i = (i + 1) & mask) {
+      Object e = tab[i];
+      if (e == x) {
+        return i;
+      }
+      if (e == null) {
+        return -1;
+      }
+    }
+  }
+
+  private void removeAt(int i) {
+    Object[] tab = table;
+    if (tab[(i + 1) & (tab.length - 1)] == null) {
+      // end of a probe chain, so no marker is needed
+      tab[i] = null;
+    } else {
+      tab[i] = REMOVED;
+      removed++;
+    }
+    size--;
+    modCount++;
+  }
+
+  /**
+   * Rebuild the table without REMOVED markers, growing if needed, so
+   * that it is at most half full.  Adds rehash at two thirds full.
+   */
+  private void rehash() {
+    Object[] old = table;
+    Object[] tab = new Object[capacityFor(size)];
+    int mask = tab.length - 1;
+    for (int j = 0; j < old.length; j++) {
+      Object e = old[j];
+      if (e != null && e != REMOVED) {
+        int i = hash(e) & mask;
+        while (tab[i] != null) {
+          i = (i + 1) & mask;
+        }
+        tab[i] = e;
+      }
+    }
+    table = tab;
+    removed = 0;
+  }
+
+  /** @return a power of two at least twice the size **/
+  private static int capacityFor(int size) {
+    int cap = 8;
+    while (cap < (size << 1) && cap < (1 << 30)) {
+      cap <<= 1;
+    }
+    return cap;
+  }
+
+  private static int hash(Object o) {
+    // identity hashes are spread well, but often in the low bits only
+    int h = System.identityHashCode(o);
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link KeyedSet} alternative that stores only the elements, in an
+ * open-addressing hash table, instead of wrapping a
+ * <code>HashMap</code> from keys to elements.
+ * <p>
+ * The table is kept between two and four times the number of
+ * elements, so each element costs two to four table references
+ * (usually 8 to 16 bytes), instead of a table reference plus a map
+ * entry holding the key, element, hash and next link.  Keys are not
+ * stored: "getKey(..)" is called on the elements met while probing,
+ * so it should be cheap, and must return the same key for as long as
+ * the element is in the set.  Lookups, including <tt>contains</tt>, are 
+ * by key and take constant expected time.
+ * <p>
+ * As in KeyedSet, elements with a null key are not added, and adding
+ * an element replaces any element with an equal key.  This 
+ * implementation is not synchronized.
+ **/
+public class OpenKeyedSet extends AbstractSet {
+
+  /** Marks a removed element, so that probe chains stay intact **/
+  private static final Object REMOVED = new Object();
+
+  /** The elements, null for never-used slots, or REMOVED **/
+  private Object[] table;
+  /** The number of elements **/
+  private int size;
+  /** The number of REMOVED slots **/
+  private int removed;
+  private int modCount;
+
+  public OpenKeyedSet() {
+    this(32);
+  }
+
+  /**
+   * @param s the expected number of elements
+   */
+  public OpenKeyedSet(int s) {
+    if (s < 0) {
+      throw new IllegalArgumentException("Illegal size: "+s);
+    }
+    table = new Object[capacityFor(s)];
+  }
+
+  public OpenKeyedSet(Collection c) {
+    this(c.size());
+    addAll(c);
+  }
+
+  /** override this method to get a more useful key **/
+  protected Object getKey(Object o) {
+    return o;
+  }
+
+  /**
+   * Find the element with the given key.
+   *
+   * @return the element, or null if there is none
+   **/
+  public Object find(Object key) {
+    if (key == null) {
+      return null;
+    }
+    int i = indexOf(key);
+    return ((i >= 0) ? table[i] : null);
+  }
+
+  @Override
+public int size() {
+    return size;
+  }
+
+  @Override
+public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+public boolean contains(Object o) {
+    if (o == null) {
+      return false;
+    }
+    Object key;
+    try {
+      key = getKey(o);
+    } catch (ClassCastException cce) {
+      // not an element type of this set
+      return false;
+    }
+    Object e = find(key);
+    return (e == o || (e != null && e.equals(o)));
+  }
+
+  /**
+   * Add the element, replacing any element with an equal key.
+   *
+   * @return true if the set changed, i.e. unless the same element
+   *   was already present or the element's key is null
+   **/
+  @Override
+public boolean add(Object o) {
+    Object key = getKey(o);
+    if (key == null) {
+      return false;
+    }
+    Object[] tab = table;
+    int mask = tab.length - 1;
+    int free = -1;
+    for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+      Object e = tab[i];
+      if (e == null) {
+        if (free < 0) {
+          free = i;
+        }
+        break;
+      }
+      if (e == REMOVED) {
+        if (free < 0) {
+          free = i;
+        }
+      } else if (key.equals(getKey(e))) {
+        tab[i] = o;
+        return (e != o);
+      }
+    }
+    if (tab[free] == REMOVED) {
+      removed--;
+    }
+    tab[free] = o;
+    size++;
+    modCount++;
+    if (((size + removed) << 1) > tab.length) {
+      rehash();
+    }
+    return true;
+  }
+
+  /**
+   * Remove the element with the same key as the given object.
+   *
+   * @return true if an element was removed
+   **/
+  @Override
+public boolean remove(Object o) {
+    if (o == null) {
+      return false;
+    }
+    Object key = getKey(o);
+    if (key == null) {
+      return false;
+    }
+    int i = indexOf(key);
+    if (i < 0) {
+      return false;
+    }
+    removeAt(i);
+    return true;
+  }
+
+  @Override
+public void clear() {
+    Object[] tab = table;
+    for (int i = 0; i < tab.length; i++) {
+      tab[i] = null;
+    }
+    size = 0;
+    removed = 0;
+    modCount++;
+  }
+
+  @Override
+public Iterator iterator() {
+    return new Iterator() {
+      private int next = advance(0);
+      private int last = -1;
+      private int expectedModCount = modCount;
+
+      private int advance(int i) {
+        Object[] tab = table;
+        while (i < tab.length && (tab[i] == null || tab[i] == REMOVED)) {
+          i++;
+        }
+        return i;
+      }
+
+      public boolean hasNext() {
+        return next < table.length;
+      }
+
+      public Object next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (next >= table.length) {
+          throw new NoSuchElementException();
+        }
+        last = next;
+        next = advance(next + 1);
+        return table[last];
+      }
+
+      public void remove() {
+        if (last < 0) {
+          throw new IllegalStateException();
+        }
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        // leaves a REMOVED marker, so the table doesn't move
+        removeAt(last);
+        last = -1;
+        expectedModCount = modCount;
+      }
+    };
+  }
+
+  /** @return the slot holding the element with the key, or -1 **/
+  private int indexOf(Object key) {
+    Object[] tab = table;
+    int mask = tab.length - 1;
+    for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+      Object e = tab[i];
+      if (e == null) {
+        return -1;
+      }
+      if (e != REMOVED && key.equals(getKey(e))) {
+        return i;
+      }
+    }
+  }
+
+  private void removeAt(int i) {
+    Object[] tab = table;
+    if (tab[(i + 1) & (tab.length - 1)] == null) {
+      // end of a probe chain, so no marker is needed
+      tab[i] = null;
+    } else {
+      tab[i] = REMOVED;
+      removed++;
+    }
+    size--;
+    modCount++;
+  }
+
+  /** Rebuild the table without REMOVED markers, growing if needed **/
+  private void rehash() {
+    Object[] old = table;
+    Object[] tab = new Object[capacityFor(size)];
+    int mask = tab.length - 1;
+    for (int j = 0; j < old.length; j++) {
+      Object e = old[j];
+      if (e != null && e != REMOVED) {
+        int i = hash(getKey(e)) & mask;
+        while (tab[i] != null) {
+          i = (i + 1) & mask;
+        }
+        tab[i] = e;
+      }
+    }
+    table = tab;
+    removed = 0;
+  }
+
+  /** @return a power of two at least four times the size **/
+  private static int capacityFor(int size) {
+    int cap = 8;
+    while (cap < (size << 2) && cap < (1 << 30)) {
+      cap <<= 1;
+    }
+    return cap;
+  }
+
+  private static int hash(Object key) {
+    // spread the high bits, as in HashMap
+    int h = key.hashCode();
+    h ^= (h >>> 20) ^ (h >>> 12);
+    return h ^ (h >>> 7) ^ (h >>> 4);
+  }
+}
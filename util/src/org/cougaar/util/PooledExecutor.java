@@ -0,0 +1,316 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+package org.cougaar.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cougaar.bootstrap.SystemProperties;
+
+/**
+ * A <code>ThreadPoolExecutor</code> with a bounded work queue, a
+ * named rejection policy and per-pool metrics, used by
+ * {@link ReusableThreadPool}.
+ * <p>
+ * The pool keeps <i>core</i> daemon threads alive, and adds threads
+ * up to <i>max</i> only when the work queue is full, as with any
+ * ThreadPoolExecutor.  A queue capacity of zero hands each task
+ * directly to an idle or new thread.  Threads above the core size
+ * exit after being idle for a minute.
+ * <p>
+ * When both the threads and the queue are exhausted the rejection
+ * policy applies: {@link #SPAWN} runs the task on a new, unpooled
+ * thread (the old ReusableThreadPool behavior), {@link #CALLER_RUNS}
+ * runs it in the submitting thread, {@link #ABORT} throws a 
+ * <code>RejectedExecutionException</code>, and {@link #DISCARD} and
+ * {@link #DISCARD_OLDEST} drop a task.
+ * <p>
+ * Metrics:  {@link #getQueueDepth}, <code>getActiveCount()</code>,
+ * {@link #getRejectedCount}, and two {@link LatencyHistogram}s:  the
+ * queue latency of each task, from <code>execute</code> until it
+ * starts running, and the run time of each task completed by a pool
+ * thread.  To time the queue wait, <code>execute</code> wraps each
+ * task, so <code>getQueue()</code> holds the wrappers;
+ * {@link #remove} and {@link #shutdownNow} accept and return the
+ * original tasks.
+ *
+ * @property org.cougaar.ReusableThread.initialPoolSize Core size of
+ * the default pool (defaults to 32).
+ * @property org.cougaar.ReusableThread.maximumPoolSize Maximum size of
+ * the default pool (defaults to 64).
+ * @property org.cougaar.ReusableThread.queueSize Work queue capacity of
+ * the default pool (defaults to 0, a direct hand-off).
+ * @property org.cougaar.ReusableThread.rejectionPolicy Rejection policy
+ * of the default pool: spawn, callerRuns, abort, discard or
+ * discardOldest (defaults to spawn).  {@link ReusableThreadPool} uses
+ * abort in place of the discard policies.
+ **/
+public class PooledExecutor extends ThreadPoolExecutor {
+
+  public static final String SPAWN = "spawn";
+  public static final String CALLER_RUNS = "callerRuns";
+  public static final String ABORT = "abort";
+  public static final String DISCARD = "discard";
+  public static final String DISCARD_OLDEST = "discardOldest";
+
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private final ThreadGroup group;
+  private final String name;
+  private volatile String rejectionPolicy;
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final LatencyHistogram queueLatency = new LatencyHistogram();
+  private final AtomicLong rejected = new AtomicLong();
+  private final ThreadLocal startTime = new ThreadLocal() {
+      @Override
+    protected Object initialValue() {
+        return new long[1];
+      }
+    };
+
+  /**
+   * @param group the ThreadGroup of the pool threads
+   * @param name the prefix of the pool thread names
+   * @param core the number of threads to keep alive
+   * @param max the maximum number of pool threads
+   * @param queueCapacity the work queue bound, or 0 for a direct hand-off
+   * @param rejectionPolicy one of the policy names, e.g. {@link #SPAWN}
+   **/
+  public PooledExecutor(ThreadGroup group, String name, int core, int max,
+                        int queueCapacity, String rejectionPolicy) {
+    super(Math.min(core, max), max, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+          createQueue(queueCapacity), new Factory(group, name));
+    this.group = group;
+    this.name = name;
+    setRejectionPolicy(rejectionPolicy);
+  }
+
+  public PooledExecutor(String name, int core, int max,
+                        int queueCapacity, String rejectionPolicy) {
+    this(Thread.currentThread().getThreadGroup(), name, core, max,
+         queueCapacity, rejectionPolicy);
+  }
+
+  /** Create a pool configured by the org.cougaar.ReusableThread properties **/
+  public static PooledExecutor createDefault(ThreadGroup group, String name) {
+    return createDefault(
+        group, name,
+        SystemProperties.getInt("org.cougaar.ReusableThread.initialPoolSize", 32),
+        SystemProperties.getInt("org.cougaar.ReusableThread.maximumPoolSize", 64));
+  }
+
+  /**
+   * Create a pool of the given size, with the queue and rejection
+   * policy of the org.cougaar.ReusableThread properties
+   **/
+  public static PooledExecutor createDefault(ThreadGroup group, String name,
+                                             int core, int max) {
+    return new PooledExecutor(
+        group, name, core, max,
+        SystemProperties.getInt("org.cougaar.ReusableThread.queueSize", 0),
+        SystemProperties.getProperty("org.cougaar.ReusableThread.rejectionPolicy", SPAWN));
+  }
+
+  private static BlockingQueue createQueue(int capacity) {
+    if (capacity <= 0) {
+      return new SynchronousQueue();
+    }
+    return new ArrayBlockingQueue(capacity);
+  }
+
+  private static RejectedExecutionHandler createHandler(
+      ThreadGroup group, String name, String policy) {
+    if (SPAWN.equals(policy)) {
+      return new Spawn(group, name);
+    } else if (CALLER_RUNS.equals(policy)) {
+      return new ThreadPoolExecutor.CallerRunsPolicy();
+    } else if (ABORT.equals(policy)) {
+      return new ThreadPoolExecutor.AbortPolicy();
+    } else if (DISCARD.equals(policy)) {
+      return new ThreadPoolExecutor.DiscardPolicy();
+    } else if (DISCARD_OLDEST.equals(policy)) {
+      return new ThreadPoolExecutor.DiscardOldestPolicy();
+    }
+    throw new IllegalArgumentException("Unknown rejection policy: "+policy);
+  }
+
+  public String getName() { return name; }
+
+  /** @return the rejection policy name, e.g. {@link #SPAWN} **/
+  public String getRejectionPolicy() { return rejectionPolicy; }
+
+  /** Replace the rejection policy, e.g. with {@link #ABORT} **/
+  public void setRejectionPolicy(String policy) {
+    setRejectedExecutionHandler(
+        new Counting(createHandler(group, name, policy)));
+    rejectionPolicy = policy;
+  }
+
+  /** @return the number of tasks waiting for a thread **/
+  public int getQueueDepth() { return getQueue().size(); }
+
+  /** @return the number of times the rejection policy has been applied **/
+  public long getRejectedCount() { return rejected.get(); }
+
+  /** @return the run times of tasks completed by pool threads **/
+  public LatencyHistogram getLatencyHistogram() { return latency; }
+
+  /** @return the times from execute until tasks started running **/
+  public LatencyHistogram getQueueLatencyHistogram() { return queueLatency; }
+
+  /** Wrap the task, to time how long it waits for a thread **/
+  @Override
+public void execute(Runnable task) {
+    if (task == null) {
+      throw new NullPointerException();
+    }
+    super.execute(new Timed(task, System.nanoTime()));
+  }
+
+  /** Remove a queued task, given the task passed to execute **/
+  @Override
+public boolean remove(Runnable task) {
+    for (Iterator i = getQueue().iterator(); i.hasNext(); ) {
+      Object o = i.next();
+      if (o == task || (o instanceof Timed && ((Timed) o).task == task)) {
+        return super.remove((Runnable) o);
+      }
+    }
+    return false;
+  }
+
+  /** @return the tasks that never ran, as passed to execute **/
+  @Override
+public List shutdownNow() {
+    List l = super.shutdownNow();
+    List ret = new ArrayList(l.size());
+    for (int i = 0, n = l.size(); i < n; i++) {
+      Object o = l.get(i);
+      ret.add(o instanceof Timed ? ((Timed) o).task : o);
+    }
+    return ret;
+  }
+
+  @Override
+protected void beforeExecute(Thread t, Runnable r) {
+    super.beforeExecute(t, r);
+    ((long[]) startTime.get())[0] = System.nanoTime();
+  }
+
+  @Override
+protected void afterExecute(Runnable r, Throwable t) {
+    latency.record(System.nanoTime() - ((long[]) startTime.get())[0]);
+    super.afterExecute(r, t);
+  }
+
+  @Override
+public String toString() {
+    return "(PooledExecutor "+name+
+      " threads="+getPoolSize()+
+      " active="+getActiveCount()+
+      " queued="+getQueueDepth()+
+      " rejected="+getRejectedCount()+
+      " queueLatency="+queueLatency+
+      " latency="+latency+")";
+  }
+
+  /**
+   * A task stamped with its execute time.  It records its queue
+   * latency when it starts, on a pool thread or wherever the rejection
+   * policy runs it.
+   **/
+  private final class Timed implements Runnable {
+    private final Runnable task;
+    private final long queuedAt;
+    Timed(Runnable task, long queuedAt) {
+      this.task = task;
+      this.queuedAt = queuedAt;
+    }
+    public void run() {
+      queueLatency.record(System.nanoTime() - queuedAt);
+      task.run();
+    }
+    @Override
+    public String toString() {
+      return task.toString();
+    }
+  }
+
+  private static final class Factory implements ThreadFactory {
+    private final ThreadGroup group;
+    private final String name;
+    private final AtomicInteger n = new AtomicInteger();
+    Factory(ThreadGroup group, String name) {
+      this.group = group;
+      this.name = name;
+    }
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(group, r, name+"-"+n.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+
+  /** Run rejected tasks on a new, unpooled daemon thread **/
+  private static final class Spawn implements RejectedExecutionHandler {
+    private final ThreadGroup group;
+    private final String name;
+    Spawn(ThreadGroup group, String name) {
+      this.group = group;
+      this.name = name+"-overflow";
+    }
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+      if (e.isShutdown()) {
+        throw new java.util.concurrent.RejectedExecutionException(
+            "PooledExecutor has been shut down");
+      }
+      Thread t = new Thread(group, r, name);
+      t.setDaemon(true);
+      t.start();
+    }
+  }
+
+  private final class Counting implements RejectedExecutionHandler {
+    private final RejectedExecutionHandler h;
+    Counting(RejectedExecutionHandler h) {
+      this.h = h;
+    }
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+      rejected.incrementAndGet();
+      h.rejectedExecution(r, e);
+    }
+  }
+}
@@ -0,0 +1,367 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+
+package org.cougaar.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * A "double buffered" TimeSpanSet, optimized for cases where the
+ * contents are queried by many threads but rarely change.
+ * <p>
+ * The contents are held in an immutable TimeSpanSet snapshot.  Each
+ * modification copies the current snapshot, changes the copy, builds
+ * its interval index and publishes it with a single volatile write,
+ * all while holding the lock on this set.  Queries just read the
+ * current snapshot, so they never block, never see a half-made
+ * change, and never cause ConcurrentModificationExceptions.
+ * <p>
+ * Compared with SynchronizedTimeSpanSet, reads scale with the number
+ * of threads, but every modification costs a copy of the whole set:
+ * batch changes with addAll where possible.
+ * @note If consistency between calls to accessors is required, use
+ * {@link #getUnmodifiableSet()} and query the returned set.
+ * @see RarelyModifiedList
+ **/
+public class RarelyModifiedTimeSpanSet extends TimeSpanSet {
+
+  /**
+    * 
+    */
+   private static final long serialVersionUID = 1L;
+
+  /** the current contents; replaced, never modified, once published **/
+  private volatile Snapshot back;
+
+// constructors
+  public RarelyModifiedTimeSpanSet() {
+    super(0);
+    back = new Snapshot(0).freeze();
+  }
+
+  public RarelyModifiedTimeSpanSet(int i) {
+    // no reason to actually pay attention to this
+    this();
+  }
+
+  public RarelyModifiedTimeSpanSet(Collection c) {
+    super(0);
+    Snapshot s = new Snapshot(c.size());
+    s.addAll(c);
+    back = s.freeze();
+  }
+
+  /** @return an immutable TimeSpanSet of the current contents, which
+   * is unaffected by later modifications of this set.
+   **/
+  public final TimeSpanSet getUnmodifiableSet() {
+    return back;
+  }
+
+  /** make a mutable copy of the current contents.
+   * @note callers must synchronize on this.
+   **/
+  private Snapshot copy() {
+    Snapshot s = new Snapshot(back.size());
+    s.unsafeUpdate(back);
+    return s;
+  }
+
+  // modifications
+
+  @Override
+public synchronized boolean add(Object o) {
+    Snapshot s = copy();
+    if (!s.add(o)) return false;
+    back = s.freeze();
+    return true;
+  }
+
+  @Override
+public synchronized boolean addAll(Collection c) {
+    Snapshot s = copy();
+    if (!s.addAll(c)) return false;
+    back = s.freeze();
+    return true;
+  }
+
+  @Override
+public synchronized boolean remove(Object o) {
+    Snapshot s = copy();
+    if (!s.remove(o)) return false;
+    back = s.freeze();
+    return true;
+  }
+
+  @Override
+public synchronized Object remove(int index) {
+    Snapshot s = copy();
+    Object o = s.remove(index);
+    back = s.freeze();
+    return o;
+  }
+
+  @Override
+public synchronized boolean removeAll(Collection c) {
+    Snapshot s = copy();
+    if (!s.removeAll(c)) return false;
+    back = s.freeze();
+    return true;
+  }
+
+  @Override
+public synchronized boolean retainAll(Collection c) {
+    Snapshot s = copy();
+    if (!s.retainAll(c)) return false;
+    back = s.freeze();
+    return true;
+  }
+
+  @Override
+public synchronized void clear() {
+    back = new Snapshot(0).freeze();
+  }
+
+  @Override
+protected synchronized boolean unsafeUpdate(Collection c) {
+    Snapshot s = new Snapshot(c.size());
+    boolean changed = s.unsafeUpdate(c);
+    back = s.freeze();
+    return changed;
+  }
+
+  @Override
+public void ensureCapacity(int minCapacity) {
+    // the snapshots are sized as they are made
+  }
+
+  @Override
+public void trimToSize() {
+    // the snapshots are sized as they are made
+  }
+
+  // queries - all unsynchronized
+
+  @Override
+public int size() {
+    return back.size();
+  }
+
+  @Override
+public boolean isEmpty() {
+    return back.isEmpty();
+  }
+
+  @Override
+public Object get(int index) {
+    return back.get(index);
+  }
+
+  @Override
+public boolean contains(Object o) {
+    return back.contains(o);
+  }
+
+  @Override
+public boolean containsAll(Collection c) {
+    return back.containsAll(c);
+  }
+
+  @Override
+public int indexOf(Object o) {
+    return back.indexOf(o);
+  }
+
+  @Override
+public int lastIndexOf(Object o) {
+    return back.lastIndexOf(o);
+  }
+
+  @Override
+public Iterator iterator() {
+    return back.iterator();
+  }
+
+  @Override
+public ListIterator listIterator() {
+    return back.listIterator();
+  }
+
+  @Override
+public ListIterator listIterator(int index) {
+    return back.listIterator(index);
+  }
+
+  /** @return a read-only view of the current snapshot **/
+  @Override
+public List subList(int fromIndex, int toIndex) {
+    return Collections.unmodifiableList(back.subList(fromIndex, toIndex));
+  }
+
+  @Override
+public Object[] toArray() {
+    return back.toArray();
+  }
+
+  @Override
+public Object[] toArray(Object a[]) {
+    return back.toArray(a);
+  }
+
+  @Override
+public Object first() {
+    return back.first();
+  }
+
+  @Override
+public Object last() {
+    return back.last();
+  }
+
+  @Override
+public Collection filter(UnaryPredicate predicate) {
+    return back.filter(predicate);
+  }
+
+  @Override
+public Object getMinimalIntersectingElement(long time) {
+    return back.getMinimalIntersectingElement(time);
+  }
+
+  @Override
+protected Collection select(int relation, long startTime, long endTime) {
+    return back.select(relation, startTime, endTime);
+  }
+
+  @Override
+public boolean equals(Object o) {
+    return back.equals(o);
+  }
+
+  @Override
+public int hashCode() {
+    return back.hashCode();
+  }
+
+  @Override
+public String toString() {
+    return back.toString();
+  }
+
+  @Override
+public Object clone() {
+    RarelyModifiedTimeSpanSet v = (RarelyModifiedTimeSpanSet) super.clone();
+    // the snapshot is immutable, so it may be shared
+    return v;
+  }
+
+  private void readObject(ObjectInputStream in)
+    throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    back.freeze();
+  }
+
+  /** A TimeSpanSet which refuses modification once frozen. **/
+  private static final class Snapshot extends TimeSpanSet {
+    private static final long serialVersionUID = 1L;
+
+    private boolean frozen = false;
+
+    Snapshot(int i) {
+      super(i);
+    }
+
+    /** Stop all modification and build the index, so that readers
+     * never write to the set.
+     **/
+    Snapshot freeze() {
+      frozen = true;
+      prepareIndex();
+      return this;
+    }
+
+    private void check() {
+      if (frozen) {
+        throw new UnsupportedOperationException(
+            "RarelyModifiedTimeSpanSet snapshots may not be modified");
+      }
+    }
+
+    @Override
+    public boolean add(Object o) {
+      check();
+      return super.add(o);
+    }
+
+    @Override
+    public boolean addAll(Collection c) {
+      check();
+      return super.addAll(c);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      check();
+      return super.remove(o);
+    }
+
+    @Override
+    public Object remove(int index) {
+      check();
+      return super.remove(index);
+    }
+
+    @Override
+    public void clear() {
+      check();
+      super.clear();
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+      check();
+      super.removeRange(fromIndex, toIndex);
+    }
+
+    @Override
+    public void ensureCapacity(int minCapacity) {
+      check();
+      super.ensureCapacity(minCapacity);
+    }
+
+    @Override
+    public void trimToSize() {
+      check();
+      super.trimToSize();
+    }
+  }
+}
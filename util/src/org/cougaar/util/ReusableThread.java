@@ -29,6 +29,27 @@ package org.cougaar.util;
 /**
  * A Thread class which can be restarted to rerun it's (settable)
  * runnable object.
+ * <p>
+ * A ReusableThread is a handle:  it is never started as a thread of
+ * its own.  {@link #start} runs {@link #run} on one of the pool's 
+ * executor threads, which takes the ReusableThread's name and priority
+ * for the duration.  Once the Runnable returns, the handle is reclaimed
+ * and may be started again.
+ * <p>
+ * Since the handle is not itself a live thread:
+ * <ul>
+ *   <li><code>Thread.currentThread()</code> inside the Runnable is the
+ *       executor thread, not the ReusableThread.</li>
+ *   <li>{@link #interrupt} and {@link #isInterrupted} are forwarded to
+ *       the executor thread while the Runnable runs.  An interrupt
+ *       after <code>start()</code> but before the Runnable begins is
+ *       delivered when it begins.</li>
+ *   <li><code>isAlive()</code>, <code>join()</code> and
+ *       <code>getState()</code> are final in Thread and describe the
+ *       never-started handle:  <code>isAlive()</code> is always false
+ *       and <code>join()</code> returns at once.  Use {@link #isRunning}
+ *       and {@link #waitFor} instead.</li>
+ * </ul>
  **/
 
 public class ReusableThread extends Thread {
@@ -38,17 +59,18 @@ public class ReusableThread extends Thread {
   /** our runnable object, or null if we haven't been assigned one **/
   private Runnable runnable = null;
   
-  /** Has this thread already be actually started yet?
+  /** are we actively running the runnable? 
    * access needs to be guarded by runLock.
    **/
-  private boolean isStarted = false;
-
-  /** are we actively running the runnable? **/
   private boolean isRunning = false;
 
-  /** guards isRunning, synced while actually executing and waits when
-   * suspended.
-   **/
+  /** the executor thread running us, or null.  Guarded by runLock. **/
+  private Thread worker = null;
+
+  /** interrupted before the worker picked us up?  Guarded by runLock. **/
+  private boolean pendingInterrupt = false;
+
+  /** guards isRunning.  Never held while the runnable executes. **/
   private Object runLock = new Object();
 
   public void setRunnable(Runnable r) {
@@ -69,23 +91,94 @@ public class ReusableThread extends Thread {
     protected void claim() {
     }
 
+  /** Run the runnable once, in the calling (normally an executor) thread **/
   @Override
 public final void run() {
-    while (true) {
+    Thread w = Thread.currentThread();
+    String workerName = w.getName();
+    int workerPriority = w.getPriority();
+    w.setName(getName());
+    w.setPriority(getPriority());
+    synchronized (runLock) {
+      worker = w;
+      if (pendingInterrupt) {
+        pendingInterrupt = false;
+        w.interrupt();
+      }
+    }
+    try {
+      claim();
+      Runnable r = getRunnable();
+      if (r != null)
+        r.run();
+    } finally {
       synchronized (runLock) {
-	  claim();
-        Runnable r = getRunnable();
-        if (r != null)
-          r.run();
+        worker = null;
         isRunning = false;
+        // don't leak our interrupt into the executor's next task
+        Thread.interrupted();
+      }
+      w.setName(workerName);
+      w.setPriority(workerPriority);
+      reclaim();
+    }
+  }
 
-        reclaim();
+  /**
+   * Interrupt the executor thread running the Runnable, or, if the
+   * Runnable has been started but not yet begun, interrupt it as soon
+   * as it begins.  Does nothing if the handle is not running.
+   **/
+  @Override
+public void interrupt() {
+    synchronized (runLock) {
+      if (worker != null) {
+        worker.interrupt();
+      } else if (isRunning) {
+        pendingInterrupt = true;
+      }
+    }
+  }
 
-        try {
-          runLock.wait();       // suspend
-        } catch (InterruptedException ie) {}
+  @Override
+public boolean isInterrupted() {
+    synchronized (runLock) {
+      return (worker != null ? worker.isInterrupted() : pendingInterrupt);
+    }
+  }
+
+  /**
+   * The replacement for <code>isAlive()</code>.
+   *
+   * @return true from <code>start()</code> until the Runnable returns
+   **/
+  public boolean isRunning() {
+    synchronized (runLock) {
+      return isRunning;
+    }
+  }
+
+  /**
+   * The replacement for <code>join(millis)</code>:  wait for the
+   * Runnable to return.
+   *
+   * @param millis the time to wait, or 0 to wait forever
+   * @return true if the Runnable is no longer running
+   **/
+  public synchronized boolean waitFor(long millis) throws InterruptedException {
+    long deadline = (millis > 0 ? System.currentTimeMillis() + millis : 0);
+    while (isRunning()) {
+      if (deadline == 0) {
+        wait();
+      } else {
+        long left = deadline - System.currentTimeMillis();
+        if (left <= 0) {
+          return false;
+        }
+        wait(left);
       }
     }
+    return true;
   }
 
   @Override
@@ -95,13 +188,16 @@ public void start() throws IllegalThreadStateException {
         throw new IllegalThreadStateException("ReusableThread already started: "+
                                               this);
       isRunning = true;
-
-      if (!isStarted) {
-        isStarted=true;
-        super.start();
-      } else {
-        runLock.notify();     // resume
+      pendingInterrupt = false;
+    }
+    try {
+      pool.execute(this);
+    } catch (RuntimeException e) {
+      synchronized (runLock) {
+        isRunning = false;
+        pendingInterrupt = false;
       }
+      throw e;
     }
   }
 
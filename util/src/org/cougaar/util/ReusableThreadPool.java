@@ -26,7 +26,10 @@
 
 package org.cougaar.util;
 
+import java.util.concurrent.Executor;
+
 import org.cougaar.bootstrap.SystemProperties;
+import org.cougaar.util.log.Logging;
 
 /**
  * Provide a pool of reusable threads to reduce the overhead of 
@@ -38,10 +41,25 @@ import org.cougaar.bootstrap.SystemProperties;
  * "new Thread()", you use "ReusableThread.newThread()" instead.
  * Most of the Thread constructors are provided as factory methods -
  * missing are all constructors using ThreadGroup arguments.
+ * <p>
+ * This is now an adapter over a {@link PooledExecutor}:  the
+ * ReusableThreads handed out are lightweight handles, and starting
+ * one runs its Runnable on one of the executor's threads.  The 
+ * handles themselves are pooled as before.
+ * <p>
+ * A started handle must either run or be rejected, so the default
+ * executor uses the "abort" rejection policy in place of "discard" or
+ * "discardOldest":  <code>start()</code> throws a
+ * <code>RejectedExecutionException</code> rather than dropping the
+ * Runnable and leaving the handle running forever.
+ * <p>
+ * If {@link VirtualThreads#isEnabled} the default executor starts a
+ * virtual thread per task instead.
  * @property org.cougaar.ReusableThread.initialPoolSize Sets the inital pool size for 
  * the thread pool utility (defaults to 32).
  * @property org.cougaar.ReusableThread.maximumPoolSize Sets the maximum pool size for
  * the thread pool utility (defaults to 64).
+ * @see PooledExecutor for the queue and rejection properties
  *
  **/
 
@@ -74,20 +92,35 @@ public class ReusableThreadPool {
   private int poolSize;
   /** the actual pool **/
   private ReusableThread pool[];
+  /** runs the started ReusableThreads **/
+  private final Executor executor;
 
   public ThreadGroup getThreadGroup() { return group; }
   public int getMaximumSize() { return maximumSize; }
   public int size() { return poolSize; }
+  /** @return the executor running started threads, or null if it
+   * isn't a PooledExecutor (e.g. in virtual thread mode)
+   **/
+  public PooledExecutor getExecutor() {
+    return (executor instanceof PooledExecutor ?
+            (PooledExecutor) executor : null);
+  }
 
   private int totalThreads = 0;
   /** Return the total number of threads created.  This can be larger than
    * the maximum pool size because the pool is usually 
    * allowed to create additional threads which will not be reclaimed.
    **/
-  public int getAllocatedThreads() { return totalThreads; }
+  public synchronized int getAllocatedThreads() { return totalThreads; }
 
   public ReusableThreadPool(ThreadGroup group, int initial, int maximum) {
+    this(group, initial, maximum, createExecutor(group, initial, maximum));
+  }
+
+  public ReusableThreadPool(ThreadGroup group, int initial, int maximum,
+                            Executor executor) {
     this.group = group;
+    this.executor = executor;
 
     if (initial > maximum) 
       initial = maximum;
@@ -106,6 +139,24 @@ public class ReusableThreadPool {
     this(Thread.currentThread().getThreadGroup(), initial, maximum);
   }
 
+  private static Executor createExecutor(ThreadGroup group, int initial, int maximum) {
+    if (VirtualThreads.isEnabled()) {
+      return VirtualThreads.newExecutor("ReusableThread");
+    }
+    PooledExecutor e =
+      PooledExecutor.createDefault(group, "ReusableThread", initial, maximum);
+    String policy = e.getRejectionPolicy();
+    if (PooledExecutor.DISCARD.equals(policy) ||
+        PooledExecutor.DISCARD_OLDEST.equals(policy)) {
+      // a dropped handle would never be reclaimed
+      Logging.getLogger(ReusableThreadPool.class).warn(
+          "ReusableThreadPool can't discard started threads, using the "+
+          PooledExecutor.ABORT+" rejection policy instead of "+policy);
+      e.setRejectionPolicy(PooledExecutor.ABORT);
+    }
+    return e;
+  }
+
 
   public ReusableThread getThread() {
     return getThread(null, "ReusableThread");
@@ -140,10 +191,19 @@ public class ReusableThreadPool {
   
   /** actually construct a new ReusableThread **/
   protected ReusableThread constructReusableThread() {
-    totalThreads++;
+    synchronized (this) {
+      totalThreads++;
+    }
     return new ReusableThread(this);
   }
 
+  /** run a started ReusableThread on the executor.  package protected
+   * so only our threads are run.
+   **/
+  void execute(ReusableThread t) {
+    executor.execute(t);
+  }
+
   /** return a reusableThread to our pool.  package protected
    * so we don't get the wrong thread in our pool.
    **/
@@ -163,7 +223,7 @@ public class ReusableThreadPool {
   }
 
   
-  public static ReusableThreadPool getDefaultThreadPool() {
+  public static synchronized ReusableThreadPool getDefaultThreadPool() {
     if (defaultPool == null) {
       defaultPool = new ReusableThreadPool(defaultInitialPoolSize, defaultMaximumPoolSize);
     }
@@ -0,0 +1,189 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+package org.cougaar.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded pool of canonical strings, for use in place of
+ * <code>String.intern()</code> when most of the strings are one-off
+ * identifiers that shouldn't be pinned in the JVM's string table.
+ * <p>
+ * The pool is split into stripes, chosen by the string's hash, and
+ * each stripe is an access-ordered LRU map holding an equal share of
+ * the maximum size.  A lookup locks only its stripe.  Once a stripe is
+ * full, its least recently used string is dropped from the pool (but
+ * not, of course, from any callers still holding it), so an evicted
+ * string may later be returned as a different, equal instance.
+ * <p>
+ * Hit and miss counts are kept per stripe under the stripe lock.
+ * <p>
+ * {@link Strings#intern}, {@link FastString} and the 
+ * ComponentDescription name and classname use the shared pool
+ * returned by {@link Strings#getPool} when one is enabled.
+ **/
+public class StringPool implements FastString.Deduplicator {
+
+  private final Stripe[] stripes;
+  private final int mask;
+
+  /** Create a pool of at most maxSize strings with 16 stripes **/
+  public StringPool(int maxSize) {
+    this(maxSize, 16);
+  }
+
+  /**
+   * @param maxSize the maximum number of pooled strings
+   * @param nstripes the number of stripes, rounded up to a power of 
+   *   two but no more than maxSize
+   **/
+  public StringPool(int maxSize, int nstripes) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Invalid maxSize: "+maxSize);
+    }
+    int n = 1;
+    while (n < nstripes && (n << 1) <= maxSize) {
+      n <<= 1;
+    }
+    stripes = new Stripe[n];
+    int share = (maxSize + n - 1) / n;
+    for (int i = 0; i < n; i++) {
+      stripes[i] = new Stripe(share);
+    }
+    mask = n - 1;
+  }
+
+  private static final class Stripe extends LinkedHashMap {
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 1L;
+    private final int max;
+    long hits;
+    long misses;
+    Stripe(int max) {
+      super(Math.min(max, 64), 0.75f, true);
+      this.max = max;
+    }
+      @Override
+    protected boolean removeEldestEntry(Map.Entry eldest) {
+      return size() > max;
+    }
+  }
+
+  private Stripe stripeFor(String s) {
+    int h = s.hashCode();
+    h ^= (h >>> 16);
+    h *= 0x85ebca6b;
+    h ^= (h >>> 13);
+    return stripes[h & mask];
+  }
+
+  /** @return the pooled string equal to s, adding s if there is none.
+   * Null-safe.
+   **/
+  public String intern(String s) {
+    if (s == null) return null;
+    Stripe st = stripeFor(s);
+    synchronized (st) {
+      Object c = st.get(s);
+      if (c != null) {
+        st.hits++;
+        return (String) c;
+      }
+      st.misses++;
+      st.put(s, s);
+      return s;
+    }
+  }
+
+  /** Same as {@link #intern} **/
+  public String dedup(String s) {
+    return intern(s);
+  }
+
+  /** @return the number of strings currently pooled **/
+  public int size() {
+    int n = 0;
+    for (int i = 0; i < stripes.length; i++) {
+      Stripe st = stripes[i];
+      synchronized (st) {
+        n += st.size();
+      }
+    }
+    return n;
+  }
+
+  /** @return the number of lookups that found a pooled string **/
+  public long getHits() {
+    long n = 0;
+    for (int i = 0; i < stripes.length; i++) {
+      Stripe st = stripes[i];
+      synchronized (st) {
+        n += st.hits;
+      }
+    }
+    return n;
+  }
+
+  /** @return the number of lookups that added a string **/
+  public long getMisses() {
+    long n = 0;
+    for (int i = 0; i < stripes.length; i++) {
+      Stripe st = stripes[i];
+      synchronized (st) {
+        n += st.misses;
+      }
+    }
+    return n;
+  }
+
+  /** @return hits / (hits + misses), or 0 if there have been no lookups **/
+  public double getHitRate() {
+    long h = getHits();
+    long t = h + getMisses();
+    return (t == 0 ? 0.0 : ((double) h) / t);
+  }
+
+  /** Drop all pooled strings and reset the statistics **/
+  public void clear() {
+    for (int i = 0; i < stripes.length; i++) {
+      Stripe st = stripes[i];
+      synchronized (st) {
+        st.clear();
+        st.hits = 0;
+        st.misses = 0;
+      }
+    }
+  }
+
+  @Override
+public String toString() {
+    return "(StringPool size="+size()+" hits="+getHits()+
+      " misses="+getMisses()+")";
+  }
+}
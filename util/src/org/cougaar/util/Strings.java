@@ -26,22 +26,58 @@
 
 package org.cougaar.util;
 
+import org.cougaar.bootstrap.SystemProperties;
+
 /** 
  * Utilities for Strings
+ * <p>
+ * If the "org.cougaar.util.Strings.pool" system property is true,
+ * {@link #intern}, {@link FastString} and ComponentDescription 
+ * canonicalize strings through a shared, bounded {@link StringPool}
+ * of "org.cougaar.util.Strings.poolSize" strings (default 8192)
+ * instead of <code>String.intern()</code>.
  **/
 
 public final class Strings {
   /** static only **/
   private Strings() {}
 
-  /** Similar to String.intern(), but only interns long strings, and is null-safe **/
+  private static volatile StringPool pool;
+  static {
+    if (SystemProperties.getBoolean("org.cougaar.util.Strings.pool")) {
+      pool = new StringPool(
+          SystemProperties.getInt("org.cougaar.util.Strings.poolSize", 8192));
+    }
+  }
+
+  /** @return the shared StringPool, or null if pooling is disabled **/
+  public static StringPool getPool() {
+    return pool;
+  }
+
+  /** Replace the shared StringPool.  A null value disables pooling. **/
+  public static void setPool(StringPool p) {
+    pool = p;
+  }
+
+  /** Similar to String.intern(), but only interns long strings, and is null-safe.
+   * Uses the shared StringPool if one is enabled.
+   **/
   public static String intern(String s) {
     if (s == null) return null;
     if (s.length()<56) {
-      return s.intern();
+      StringPool p = pool;
+      return (p == null ? s.intern() : p.intern(s));
     } else {
       return s;
     }
   }
+
+  /** @return the shared StringPool's copy of s, or s itself if 
+   * pooling is disabled.  Null-safe.
+   **/
+  public static String pooled(String s) {
+    StringPool p = pool;
+    return (p == null || s == null ? s : p.intern(s));
+  }
 }
-  
@@ -0,0 +1,86 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+package org.cougaar.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter spread over padded cells, chosen by thread, so that
+ * concurrent increments rarely touch the same cache line.
+ * <p>
+ * Updates are cheap under contention and reads sum the cells, so a
+ * read concurrent with updates may miss some of them.
+ */
+public final class StripedCounter {
+  /** longs per cell; 8 longs fill a 64-byte line */
+  private static final int PAD = 8;
+  private static final int CELLS;
+  static {
+    int n = 1;
+    int target = 2 * Runtime.getRuntime().availableProcessors();
+    while (n < target && n < 64) {
+      n <<= 1;
+    }
+    CELLS = n;
+  }
+
+  private final AtomicLongArray cells = new AtomicLongArray(CELLS * PAD);
+
+  private static int cell() {
+    long id = Thread.currentThread().getId();
+    int h = (int) (id ^ (id >>> 32));
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return (h & (CELLS - 1)) * PAD;
+  }
+
+  public void increment() {
+    cells.getAndIncrement(cell());
+  }
+
+  public void add(long x) {
+    cells.getAndAdd(cell(), x);
+  }
+
+  public long get() {
+    long sum = 0;
+    for (int i = 0; i < CELLS; i++) {
+      sum += cells.get(i * PAD);
+    }
+    return sum;
+  }
+
+  /** Zero the counter.  Not atomic with respect to concurrent updates. **/
+  public void reset() {
+    for (int i = 0; i < CELLS; i++) {
+      cells.set(i * PAD, 0);
+    }
+  }
+
+  @Override
+public String toString() {
+    return Long.toString(get());
+  }
+}
@@ -26,6 +26,8 @@
 
 package org.cougaar.util;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 // soon to move to "org.cougaar.util.Trigger":
 
 /**
@@ -42,6 +44,15 @@ package org.cougaar.util;
  * are ignored until the trigger-registry runs the client's 
  * trigger.
  * <p>
+ * The "trigger()" path is lock-free:  the model state is a
+ * single int updated by compare-and-set, and a trigger of an 
+ * already-triggered model is a single volatile read.  The
+ * "start()/stop()" and "suspend()/resume()" transitions still
+ * serialize on an internal lock, which they wait on.
+ * <p>
+ * Trigger counts, coalescing and run times can be collected at
+ * runtime through the {@link TriggerProfiler}.
+ * <p>
  * If the "clientTrigger.trigger()" throws an exception then
  * "halt()" is called -- the model is suspended and stopped,
  * and the exception is passed back to the trigger-registry.
@@ -60,37 +71,9 @@ public final class SyncTriggerModelImpl implements TriggerModel {
    */
   private static final boolean DEBUG = false;
 
-  /**
-   * "Profile" flag; set to "true" for trigger/run statistics
-   * to be printed every five seconds.
-   */
-  private static final boolean PROFILE = false;
-
-  private static final ProfileStats profileStats =
-    (PROFILE ? (new ProfileStats()) : null);
-
-  static {
-    if (PROFILE) {
-      Runnable r = 
-        new Runnable() {
-          public void run() {
-            while (true) {
-              System.out.println(profileStats);
-              try {
-                Thread.sleep(5000);
-              } catch (Exception e) {
-              }
-            }
-          }
-        };
-      Thread t = new Thread(r);
-      t.start();
-    }
-  }
-
   private final TriggerRegistry triggerRegistry;
   private final Trigger clientTrigger;
-  private Trigger registryTrigger;
+  private volatile Trigger registryTrigger;
 
   private final Trigger innerTrigger = 
     new Trigger() {
@@ -103,8 +86,21 @@ public final class SyncTriggerModelImpl implements TriggerModel {
       }
     };
 
+  /**
+   * Guards the registration and the SUSPENDED/STOPPED transitions, and
+   * is waited on by "suspend()" and "stop()".  The "trigger()" path 
+   * never takes it:  all state changes are CAS updates of "state".
+   */
   private final Object stateLock = new Object();
-  private int state;
+  private volatile int state;
+
+  /** created on first use while the TriggerProfiler is enabled **/
+  private volatile TriggerProfiler.Stats stats;
+  /** nanoTime of the pending queueing if it was profiled, else 0 **/
+  private volatile long queuedAt;
+
+  private static final AtomicIntegerFieldUpdater STATE =
+    AtomicIntegerFieldUpdater.newUpdater(SyncTriggerModelImpl.class, "state");
 
   // state flags:
   private static final int TRIGGERED = (1 << 0);
@@ -127,31 +123,73 @@ public final class SyncTriggerModelImpl implements TriggerModel {
     state = STOPPED;
   }
 
+  private boolean cas(int expect, int update) {
+    return STATE.compareAndSet(this, expect, update);
+  }
+
+  /** @return our profile, or null if profiling is disabled **/
+  private TriggerProfiler.Stats stats() {
+    if (!TriggerProfiler.isEnabled()) {
+      return null;
+    }
+    TriggerProfiler.Stats s = stats;
+    if (s == null) {
+      synchronized (stateLock) {
+        s = stats;
+        if (s == null) {
+          s = TriggerProfiler.register(this, clientTrigger);
+          stats = s;
+        }
+      }
+    }
+    return s;
+  }
+
+  /** record the queueing time if profiling, then call the registry **/
+  private void enqueue() {
+    if (TriggerProfiler.isEnabled()) {
+      queuedAt = System.nanoTime();
+    } else if (queuedAt != 0) {
+      // don't let a later profiled run see a stale time
+      queuedAt = 0;
+    }
+    registryTrigger.trigger();
+  }
+
   // for the client's use
   public void trigger() {
     boolean enQ = false;
-    synchronized (stateLock) {
-      int ostate = state;
-      if (state == 0) {
-        state = (TRIGGERED | QUEUED);
-        enQ = true;
-      } else {
-        state |= TRIGGERED;
-      }
-      if (DEBUG) {
-        System.out.println(
-            this+" trigger "+getState(ostate)+" -> "+
-            getState(state)+", enQ="+enQ);
-      } else {
-        // the "ostate" is unused if (DEBUG==false), so the 
-        // "int ostate = state" should be optimized away.
+    boolean coalesced = false;
+    int ostate;
+    while (true) {
+      ostate = state;
+      if (ostate == 0) {
+        if (cas(0, (TRIGGERED | QUEUED))) {
+          enQ = true;
+          break;
+        }
+      } else if ((ostate & TRIGGERED) != 0) {
+        // already triggered, nothing to write
+        coalesced = true;
+        break;
+      } else if (cas(ostate, (ostate | TRIGGERED))) {
+        break;
       }
     }
-    if (PROFILE) {
-      profileStats.addTrigger();
+    if (DEBUG) {
+      System.out.println(
+          this+" trigger "+getState(ostate)+" -> "+
+          getState(state)+", enQ="+enQ);
+    }
+    TriggerProfiler.Stats ps = stats();
+    if (ps != null) {
+      ps.triggers.increment();
+      if (coalesced) {
+        ps.coalesced.increment();
+      }
     }
     if (enQ) {
-      registryTrigger.trigger();
+      enqueue();
     }
   }
 
@@ -166,15 +204,17 @@ public final class SyncTriggerModelImpl implements TriggerModel {
   public void start() {
     boolean enQ = false;
     synchronized (stateLock) {
-      if ((state & STOPPED) == 0) {
+      int ostate = state;
+      if ((ostate & STOPPED) == 0) {
         if (DEBUG) {
           System.out.println(
-              this+" <skip> start "+getState(state));
+              this+" <skip> start "+getState(ostate));
         }
         return;
       }
-      int ostate = state;
-      if ((state & RUNNING) == 0) {
+      // RUNNING can't be cleared while STOPPED is set and we hold
+      // the stateLock, see "finishRun()"
+      if ((ostate & RUNNING) == 0) {
         // assert (registryTrigger == null);
         registryTrigger = triggerRegistry.register(innerTrigger);
         if (registryTrigger == null) {
@@ -182,13 +222,17 @@ public final class SyncTriggerModelImpl implements TriggerModel {
               "Unable to register "+clientTrigger+
               " in registry "+triggerRegistry);
         }
-        state &= ~STOPPED;
-        if (state == TRIGGERED) {
-          state = (TRIGGERED | QUEUED);
-          enQ = true;
+      }
+      while (true) {
+        int s = state;
+        int n = (s & ~STOPPED);
+        enQ = (n == TRIGGERED);
+        if (enQ) {
+          n = (TRIGGERED | QUEUED);
+        }
+        if (cas(s, n)) {
+          break;
         }
-      } else {
-        state &= ~STOPPED;
       }
       if (DEBUG) {
         System.out.println(
@@ -197,20 +241,20 @@ public final class SyncTriggerModelImpl implements TriggerModel {
       }
     }
     if (enQ) {
-      registryTrigger.trigger();
+      enqueue();
     }
   }
 
   // for trigger-registry callback's use, called from "innerTrigger"
   private final void runInnerTrigger() {
-    synchronized (stateLock) {
+    while (true) {
       // assert ((state & TRIGGERED) != 0);
       int ostate = state;
-      if (state == (TRIGGERED | QUEUED)) {
-        state = RUNNING;
-      } else {
-        if ((state & (SUSPENDED | STOPPED)) != 0) {
-          state &= ~QUEUED;
+      int n;
+      if (ostate == (TRIGGERED | QUEUED)) {
+        n = RUNNING;
+      } else if ((ostate & (SUSPENDED | STOPPED)) != 0) {
+        if (cas(ostate, (ostate & ~QUEUED))) {
           if (DEBUG) {
             System.out.println(
                 this+" <skip> run "+getState(ostate)+" -> "+
@@ -218,23 +262,38 @@ public final class SyncTriggerModelImpl implements TriggerModel {
           }
           return;
         }
-        state &= ~(TRIGGERED | QUEUED);
-        state |= RUNNING;
+        continue;
+      } else {
+        n = ((ostate & ~(TRIGGERED | QUEUED)) | RUNNING);
       }
-      if (DEBUG) {
-        System.out.println(
-            this+" run "+getState(ostate)+" -> "+
-            getState(state));
+      if (cas(ostate, n)) {
+        if (DEBUG) {
+          System.out.println(
+              this+" run "+getState(ostate)+" -> "+
+              getState(n));
+        }
+        break;
       }
     }
-    if (PROFILE) {
-      profileStats.addRun();
+    TriggerProfiler.Stats ps = stats();
+    long startTime = 0;
+    if (ps != null) {
+      startTime = System.nanoTime();
+      ps.runs.increment();
+      long q = queuedAt;
+      if (q != 0) {
+        queuedAt = 0;
+        ps.queueLatency.record(startTime - q);
+      }
     }
     try {
       clientTrigger.trigger();
     } catch (Throwable die) {
+      if (ps != null) {
+        ps.runTime.record(System.nanoTime() - startTime);
+      }
       synchronized (stateLock) {
-        state &= ~RUNNING;
+        clearRunning();
         halt();
       }
       if (die instanceof RuntimeException) {
@@ -243,52 +302,103 @@ public final class SyncTriggerModelImpl implements TriggerModel {
         throw new RuntimeException("SyncTriggerModelImpl rethrowing "+die.getMessage(), die);
       }
     }
-    boolean enQ = false;
-    synchronized (stateLock) {
+    if (ps != null) {
+      ps.runTime.record(System.nanoTime() - startTime);
+    }
+    if (finishRun()) {
+      enqueue();
+    }
+  }
+
+  /**
+   * Clear RUNNING after a run, requeueing if triggered while running.
+   * If a "suspend()" or "stop()" is pending this takes the stateLock,
+   * completes the unregister of a "stop()", and wakes the waiters.
+   *
+   * @return true if the registry trigger should be called
+   */
+  private boolean finishRun() {
+    while (true) {
       int ostate = state;
-      if (state == RUNNING) {
-        state = 0;
-      } else if ((state & (SUSPENDED | STOPPED)) == 0) {
-        state &= ~RUNNING;
-        if (state == TRIGGERED) {
-          state = (TRIGGERED | QUEUED);
-          enQ = true;
+      if ((ostate & (SUSPENDED | STOPPED)) == 0) {
+        int n = (ostate & ~RUNNING);
+        boolean enQ = (n == TRIGGERED);
+        if (enQ) {
+          n = (TRIGGERED | QUEUED);
         }
-      } else {
-        state &= ~RUNNING;
-        if ((state & STOPPED) != 0) {
-          // assert (registryTrigger != null);
-          triggerRegistry.unregister(innerTrigger);
-          registryTrigger = null;
-        }
-        if (DEBUG) {
-          System.out.println(
-            this+" notify "+getState(ostate)+" -> "+getState(state));
+        if (cas(ostate, n)) {
+          if (DEBUG) {
+            System.out.println(
+                this+" ran "+getState(ostate)+" -> "+
+                getState(n)+", enQ="+enQ);
+          }
+          return enQ;
         }
-        stateLock.notifyAll();
+        continue;
       }
-      if (DEBUG) {
-        System.out.println(
-            this+" ran "+getState(ostate)+" -> "+
-            getState(state)+", enQ="+enQ);
+      synchronized (stateLock) {
+        if ((state & (SUSPENDED | STOPPED)) == 0) {
+          // resumed or restarted before we took the lock
+          continue;
+        }
+        clearRunning();
       }
+      return false;
     }
-    if (enQ) {
-      registryTrigger.trigger();
+  }
+
+  /** Clear RUNNING, finishing a pending "stop()", with the stateLock held **/
+  private void clearRunning() {
+    int ostate;
+    int n;
+    do {
+      ostate = state;
+      n = (ostate & ~RUNNING);
+    } while (!cas(ostate, n));
+    if ((n & STOPPED) != 0 && registryTrigger != null) {
+      triggerRegistry.unregister(innerTrigger);
+      registryTrigger = null;
+    }
+    if (DEBUG) {
+      System.out.println(
+          this+" notify "+getState(ostate)+" -> "+getState(n));
+    }
+    stateLock.notifyAll();
+  }
+
+  /**
+   * Clear "flag" if still RUNNING, to cancel an interrupted
+   * "suspend()" or "stop()".
+   * @return false if the run already completed
+   */
+  private boolean cancelIfRunning(int flag) {
+    while (true) {
+      int s = state;
+      if ((s & RUNNING) == 0) {
+        return false;
+      }
+      if (cas(s, (s & ~flag))) {
+        return true;
+      }
     }
   }
 
   public void suspend() {
     synchronized (stateLock) {
-      if ((state & SUSPENDED) != 0) {
-        if (DEBUG) {
-          System.out.println(
-              this+" <skip> suspend "+getState(state));
+      int ostate;
+      while (true) {
+        ostate = state;
+        if ((ostate & SUSPENDED) != 0) {
+          if (DEBUG) {
+            System.out.println(
+                this+" <skip> suspend "+getState(ostate));
+          }
+          return;
+        }
+        if (cas(ostate, (ostate | SUSPENDED))) {
+          break;
         }
-        return;
       }
-      int ostate = state;
-      state |= SUSPENDED;
       if (DEBUG) {
         System.out.println(
             this+" suspend "+getState(ostate)+" -> "+
@@ -306,8 +416,7 @@ public final class SyncTriggerModelImpl implements TriggerModel {
                 this+" wake for suspend "+getState(state));
           }
         } catch (InterruptedException ie) {
-          if ((state & RUNNING) != 0) {
-            state &= ~SUSPENDED;
+          if (cancelIfRunning(SUSPENDED)) {
             System.err.println(
                 clientTrigger+" \"suspend()\" interrupted,"+
                 " cancelling the \"suspend()\"");
@@ -321,42 +430,54 @@ public final class SyncTriggerModelImpl implements TriggerModel {
   public void resume() {
     boolean enQ = false;
     synchronized (stateLock) {
-      int ostate = state;
-      if ((state & SUSPENDED) == 0) {
-        if (DEBUG) {
-          System.out.println(
-              this+" <skip> resume "+getState(state));
+      int ostate;
+      int n;
+      while (true) {
+        ostate = state;
+        if ((ostate & SUSPENDED) == 0) {
+          if (DEBUG) {
+            System.out.println(
+                this+" <skip> resume "+getState(ostate));
+          }
+          return;
+        }
+        n = (ostate & ~SUSPENDED);
+        enQ = (n == TRIGGERED);
+        if (enQ) {
+          n = (TRIGGERED | QUEUED);
+        }
+        if (cas(ostate, n)) {
+          break;
         }
-        return;
-      }
-      state &= ~SUSPENDED;
-      if (state == TRIGGERED) {
-        state = (TRIGGERED | QUEUED);
-        enQ = true;
       }
       if (DEBUG) {
         System.out.println(
             this+" resume "+getState(ostate)+" -> "+
-            getState(state)+", enQ="+enQ);
+            getState(n)+", enQ="+enQ);
       }
     }
     if (enQ) {
-      registryTrigger.trigger();
+      enqueue();
     }
   }
 
   public void stop() {
     synchronized (stateLock) {
-      if ((state & STOPPED) != 0) {
-        if (DEBUG) {
-          System.out.println(
-              this+" <skip> stop "+getState(state));
+      int ostate;
+      while (true) {
+        ostate = state;
+        if ((ostate & STOPPED) != 0) {
+          if (DEBUG) {
+            System.out.println(
+                this+" <skip> stop "+getState(ostate));
+          }
+          return;
+        }
+        if (cas(ostate, (ostate | STOPPED))) {
+          break;
         }
-        return;
       }
-      int ostate = state;
-      state |= STOPPED;
-      if ((state & RUNNING) == 0) {
+      if ((ostate & RUNNING) == 0) {
         // assert (registryTrigger != null);
         triggerRegistry.unregister(innerTrigger);
         registryTrigger = null;
@@ -373,8 +494,7 @@ public final class SyncTriggerModelImpl implements TriggerModel {
                   this+" wake for stop "+getState(state));
             }
           } catch (InterruptedException ie) {
-            if ((state & RUNNING) != 0) {
-              state &= ~STOPPED;
+            if (cancelIfRunning(STOPPED)) {
               System.err.println(
                   clientTrigger+" \"stop()\" interrupted,"+
                   " cancelling the \"stop()\"");
@@ -403,16 +523,15 @@ public final class SyncTriggerModelImpl implements TriggerModel {
   }
 
   public int getModelState() {
-    synchronized (stateLock) {
-      if ((state & RUNNING) != 0) {
-        return ACTIVE;
-      } else if ((state & STOPPED) != 0) {
-        return LOADED;
-      } else if ((state & SUSPENDED) != 0) {
-        return IDLE;
-      } else {
-        return ACTIVE;
-      }
+    int s = state;
+    if ((s & RUNNING) != 0) {
+      return ACTIVE;
+    } else if ((s & STOPPED) != 0) {
+      return LOADED;
+    } else if ((s & SUSPENDED) != 0) {
+      return IDLE;
+    } else {
+      return ACTIVE;
     }
   }
 
@@ -448,28 +567,4 @@ public String toString() {
       clientTrigger+":"+
       registryTrigger;
   }
-
-  // for internal PROFILE use:
-  private static class ProfileStats {
-    private int trigCounter = 1;
-    private int runCounter = 1;
-    public ProfileStats() {
-    }
-    public synchronized void addTrigger() {
-      trigCounter++;
-    }
-    public synchronized void addRun() {
-      runCounter++;
-    }
-    @Override
-   public synchronized String toString() {
-      return
-        "\nTRIGGER-PROFILE {"+
-        "\n  #triggers:  "+trigCounter+
-        "\n  #runs:      "+runCounter+
-        "\n  runs/trigs: "+
-        (((double) runCounter)/trigCounter)+
-        "\n}";
-    }
-  }
 }
@@ -181,6 +181,11 @@ public synchronized Collection filter(UnaryPredicate predicate) {
     return super.filter(predicate);
   }
 
+  @Override
+protected synchronized Collection select(int relation, long startTime, long endTime) {
+    return super.select(relation, startTime, endTime);
+  }
+
   /** @return the intersecting Element with the smallest timespan.
    * The result is undefined if there is a tie for smallest and null 
    * if there are no elements.
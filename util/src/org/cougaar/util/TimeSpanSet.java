@@ -26,10 +26,11 @@
 
 package org.cougaar.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
 
@@ -78,59 +79,137 @@ public boolean add(Object o) {
 
     TimeSpan last = (TimeSpan) last();
     if (last == null || last.getStartTime() < timeSpan.getStartTime()) {
-      super.add(size, timeSpan);
+      insert(size, timeSpan);
       return true;
     }
     
-    int i = Collections.binarySearch(this, timeSpan, bsComparator);
+    int i = binarySearch(timeSpan);
     if (i >= 0)
       return false; // This timespan is already in set
     i = -(i + 1);             // The insertion point
 
+    // look for an equal element among those with the same times
+    long t0 = timeSpan.getStartTime();
+    long t1 = timeSpan.getEndTime();
     for (int j = i; --j >= 0; ) {
-      if (bsComparator.compare(timeSpan, elementData[j]) != 0)
+      if (compareAt(t0, t1, j) != 0)
         break;
       if (timeSpan.equals(elementData[j]))
         return false;
     }
 
     for (int j = i, e = size(); j < e; j++) {
-      if (bsComparator.compare(timeSpan, elementData[j]) != 0)
+      if (compareAt(t0, t1, j) != 0)
         break;
       if (timeSpan.equals(elementData[j]))
         return false;
     }
 
-    super.add(i, timeSpan);
+    insert(i, timeSpan);
     return true;
   }
 
+  /** Insert ts at index i, keeping the time columns in step. **/
+  private void insert(int i, TimeSpan ts) {
+    if (starts != null) {
+      ensureCapacity(size + 1);
+      growColumns();
+    }
+    super.add(i, ts);
+    if (starts != null) {
+      int numMoved = size - 1 - i;
+      if (numMoved > 0) {
+        System.arraycopy(starts, i, starts, i + 1, numMoved);
+        System.arraycopy(ends, i, ends, i + 1, numMoved);
+      }
+      starts[i] = ts.getStartTime();
+      ends[i] = ts.getEndTime();
+    }
+  }
+
   @Override
 public void add(int i, Object o) {
     throw new UnsupportedOperationException("TimeSpanSet.add(int index, Object o) is not supported.");
   }
 
+  /**
+   * Add all the elements of a collection in one pass: the batch
+   * is sorted, elements already present are dropped, and the rest
+   * are merged into the set from the back, so that only elements
+   * after the first insertion point are moved.  This is
+   * O(n + k log k) rather than the O(n k) of adding them one at a
+   * time.
+   */
   @Override
 public boolean addAll(Collection c) {
-    boolean hasChanged = false;
-
-    if (c instanceof List) {
-      List list = (List)c;
-      int numToAdd = list.size();
+    Object[] batch = c.toArray();
+    int k = batch.length;
+    if (k == 0) return false;
+    for (int i = 0; i < k; i++) {
+      if (! (batch[i] instanceof TimeSpan))
+        throw new IllegalArgumentException();
+    }
+    Arrays.sort(batch, bsComparator);
 
-      for (int index = 0; index < numToAdd; index++) {
-        if (add(list.get(index))) {
-          hasChanged = true;
-        }
+    int kept = 0;
+    for (int i = 0; i < k; i++) {
+      TimeSpan ts = (TimeSpan) batch[i];
+      if (!isDuplicate(ts, batch, kept))
+        batch[kept++] = ts;
+    }
+    if (kept == 0) return false;
+
+    ensureCapacity(size + kept);  // Increments modCount!!
+    if (starts != null) growColumns();
+    int i = size - 1;             // next existing element to move
+    int j = kept - 1;             // next new element to place
+    int w = size + kept - 1;      // next slot to fill
+    while (j >= 0) {
+      TimeSpan ts = (TimeSpan) batch[j];
+      long t0 = ts.getStartTime();
+      long t1 = ts.getEndTime();
+      int cmp = (i < 0) ? -1 : compareAt(t0, t1, i);
+      if (cmp == 0) {
+        cmp = System.identityHashCode(elementData[i]) - System.identityHashCode(ts);
       }
-    } else {
-      for (Iterator i = c.iterator(); i.hasNext(); ) {
-        if (add(i.next()))
-          hasChanged = true;
+      if (cmp > 0) {
+        if (starts != null) {
+          starts[w] = starts[i];
+          ends[w] = ends[i];
+        }
+        elementData[w--] = elementData[i--];
+      } else {
+        if (starts != null) {
+          starts[w] = t0;
+          ends[w] = t1;
+        }
+        elementData[w--] = ts;
+        j--;
       }
     }
+    size += kept;
+    return true;
+  }
 
-    return hasChanged;
+  /** @return true if ts is equal to an element of the set or to
+   * one of the first n (sorted) elements of batch.
+   **/
+  private boolean isDuplicate(TimeSpan ts, Object[] batch, int n) {
+    long t0 = ts.getStartTime();
+    long t1 = ts.getEndTime();
+    for (int j = n; --j >= 0; ) {
+      if (compare(t0, t1, (TimeSpan) batch[j]) != 0)
+        break;
+      if (ts.equals(batch[j]))
+        return true;
+    }
+    for (int j = search(t0, t1); j < size; j++) {
+      if (compareAt(t0, t1, j) != 0)
+        break;
+      if (ts.equals(elementData[j]))
+        return true;
+    }
+    return false;
   }
 
   @Override
@@ -152,18 +231,72 @@ public boolean remove(Object o) {
     if (o instanceof TimeSpan) {
       int i = find((TimeSpan)o);
       if (i == -1) return false;
-      super.remove(i);
+      remove(i);
       return true;
     } else {
       return false;
     }
   }
 
+  @Override
+public Object remove(int index) {
+    Object o = super.remove(index);
+    if (starts != null) {
+      int numMoved = size - index;
+      if (numMoved > 0) {
+        System.arraycopy(starts, index + 1, starts, index, numMoved);
+        System.arraycopy(ends, index + 1, ends, index, numMoved);
+      }
+    }
+    return o;
+  }
+
+  /** Used by subList().clear(); keeps the packed time columns in
+   * step with the elements.  The modCount bump in super marks the
+   * interval index stale.
+   **/
+  @Override
+protected void removeRange(int fromIndex, int toIndex) {
+    int oldSize = size;
+    super.removeRange(fromIndex, toIndex);
+    if (starts != null) {
+      int numMoved = oldSize - toIndex;
+      if (numMoved > 0) {
+        System.arraycopy(starts, toIndex, starts, fromIndex, numMoved);
+        System.arraycopy(ends, toIndex, ends, fromIndex, numMoved);
+      }
+    }
+  }
+
   @Override
 public Object set(int index, Object element) {
     throw new UnsupportedOperationException("TimeSpanSet.set(int index, Object element) is not supported.");
   }
 
+  @Override
+public Object clone() {
+    TimeSpanSet v = (TimeSpanSet) super.clone();
+    v.index = null;             // the clone builds its own index
+    if (starts != null) {
+      v.starts = null;
+      v.pack();
+    }
+    return v;
+  }
+
+  @Override
+public void trimToSize() {
+    super.trimToSize();
+    if (starts != null && starts.length > elementData.length) {
+      long[] s = new long[elementData.length];
+      long[] e = new long[elementData.length];
+      System.arraycopy(starts, 0, s, 0, size);
+      System.arraycopy(ends, 0, e, 0, size);
+      starts = s;
+      ends = e;
+    }
+  }
+
   @Override
 public String toString() {
     // do we want to change the implementation here?
@@ -174,7 +307,7 @@ public String toString() {
   public Comparator comparator() {
     return myComparator;
   }
-  public final Object first() {
+  public Object first() {
     return (size>0)?(elementData[0]):null;
   }
   public final SortedSet headSet(Object toElement){
@@ -254,24 +387,32 @@ public String toString() {
    * if there are no elements.
    **/
   public Object getMinimalIntersectingElement(final long time) {
-    int l = size;
+    int l = upperBound(time);   // elements [0, l) start at or before time
     if (l==0) return null;
 
+    if (size >= INDEX_THRESHOLD) {
+      Index x = ensureIndex();
+      long[] bestd = new long[1];
+      int best = minimal(x, 1, 0, x.leaves, l, time, -1, bestd);
+      return (best < 0) ? null : elementData[best];
+    }
+
+    // Walk back from the latest start.  Once time-t0 exceeds the best
+    // duration found, no earlier element can be shorter.
     TimeSpan best = null;
     long bestd = TimeSpan.MAX_VALUE-TimeSpan.MIN_VALUE;
 
-    for (int i = 0; i<l; i++) {
-      TimeSpan ts = (TimeSpan) elementData[i];
-      long t0 = ts.getStartTime();
-      if (time<t0) break; // if the element is after our point, we're done
+    for (int i = l; --i >= 0; ) {
+      long t0 = startTimeAt(i);
+      if (best != null && time-t0 > bestd) break;
 
-      long t1 = ts.getEndTime();
+      long t1 = endTimeAt(i);
       if (t1<time) continue; // if the point is after the endpoint, we continue
 
       long d=t1-t0;
       if (best ==null ||
-        (d < bestd) ) {
-        best = ts;
+        (d <= bestd) ) {        // <= so that the earliest of equals wins
+        best = (TimeSpan) elementData[i];
         bestd = d;
       }
     }
@@ -288,18 +429,7 @@ public String toString() {
    * the specified time.
    **/
   public final Collection intersectingSet(final long time) {
-    return filter(new UnaryPredicate() {
-      /**
-       * 
-       */
-      private static final long serialVersionUID = 1L;
-
-      public boolean execute(Object o) {
-        TimeSpan ts = (TimeSpan) o;
-        return (time >= ts.getStartTime() &&
-          time < ts.getEndTime());
-      }
-    });
+    return select(INTERSECTING, time, time+TimeSpan.EPSILON);
   }
 
   /** @return the subset of elements which intersect with the
@@ -307,18 +437,7 @@ public String toString() {
    **/
   public final Collection intersectingSet(final long startTime,
                                           final long endTime) {
-    return filter(new UnaryPredicate() {
-      /**
-       * 
-       */
-      private static final long serialVersionUID = 1L;
-
-      public boolean execute(Object o) {
-        TimeSpan ts = (TimeSpan) o;
-        return (ts.getStartTime()<endTime &&
-          ts.getEndTime()>startTime);
-      }
-    });
+    return select(INTERSECTING, startTime, endTime);
   }
 
   /** @return the subset of elements which intersect with the
@@ -333,18 +452,7 @@ public String toString() {
    **/
   public final Collection encapsulatedSet(final long startTime,
                                           final long endTime) {
-    return filter(new UnaryPredicate() {
-      /**
-       * 
-       */
-      private static final long serialVersionUID = 1L;
-
-      public boolean execute(Object o) {
-        TimeSpan ts = (TimeSpan) o;
-        return (ts.getStartTime()>=startTime &&
-          ts.getEndTime()<=endTime);
-      }
-    });
+    return select(ENCAPSULATED, startTime, endTime);
   }
 
   /** @return the subset of elements which are completely enclosed
@@ -359,18 +467,7 @@ public String toString() {
    **/
   private Collection encapsulatingSet(final long startTime,
                                            final long endTime) {
-    return filter(new UnaryPredicate() {
-      /**
-       * 
-       */
-      private static final long serialVersionUID = 1L;
-
-      public boolean execute(Object o) {
-        TimeSpan ts = (TimeSpan) o;
-        return (startTime <= ts.getStartTime() &&
-          endTime >= ts.getEndTime());
-      }
-    });
+    return select(ENCAPSULATING, startTime, endTime);
   }
 
   /** @return the subset of elements which completely enclose
@@ -380,6 +477,250 @@ public String toString() {
     return encapsulatingSet(span.getStartTime(), span.getEndTime());
   }
 
+  // interval index
+
+  /** select relation: elements which overlap [startTime, endTime) **/
+  protected static final int INTERSECTING = 0;
+  /** select relation: elements which lie within [startTime, endTime) **/
+  protected static final int ENCAPSULATED = 1;
+  /** select relation: elements which cover [startTime, endTime) **/
+  protected static final int ENCAPSULATING = 2;
+
+  /** Sets smaller than this are scanned rather than indexed. **/
+  private static final int INDEX_THRESHOLD = 64;
+
+  /** The number of adjacent elements summarized by each index leaf. **/
+  private static final int INDEX_BLOCK = 16;
+
+  /** An immutable interval index, built for one modCount. **/
+  private static final class Index {
+    /** Implicit binary tree (root at 1, leaves at "leaves") of the
+     * greatest end time of each run of INDEX_BLOCK elements.
+     **/
+    final long[] maxEnd;
+    /** Like maxEnd, but the least end time of each block. **/
+    final long[] minEnd;
+    /** The number of leaves - always a power of two. **/
+    final int leaves;
+    /** The modCount of the set when the index was built. **/
+    final int modCount;
+    Index(long[] maxEnd, long[] minEnd, int leaves, int modCount) {
+      this.maxEnd = maxEnd;
+      this.minEnd = minEnd;
+      this.leaves = leaves;
+      this.modCount = modCount;
+    }
+  }
+
+  /** The interval index, replaced whole so that concurrent readers of
+   * an unmodified set never see one that is partly built.
+   **/
+  private transient volatile Index index;
+
+  /** @return the elements which stand in the specified relation to
+   * the span [startTime, endTime), in set order.
+   * <p>
+   * The elements are sorted by start time, so a binary search
+   * bounds the candidates on one side, and an index of block
+   * end times, rebuilt lazily after the set is modified, skips
+   * the runs which cannot match on the other.  Queries thus cost
+   * O(log n + k) rather than a scan of the whole set.
+   **/
+  protected Collection select(int relation, long startTime, long endTime) {
+    int from, to;
+    switch (relation) {
+    case INTERSECTING:
+      from = 0;
+      to = lowerBound(endTime);
+      break;
+    case ENCAPSULATED:
+      from = lowerBound(startTime);
+      to = lowerBound(endTime);
+      break;
+    case ENCAPSULATING:
+      from = 0;
+      to = upperBound(startTime);
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown relation "+relation);
+    }
+    if (from >= to) return Collections.EMPTY_LIST;
+
+    List result = new ArrayList(5);
+    if (size < INDEX_THRESHOLD) {
+      scan(relation, from, to, startTime, endTime, result);
+    } else {
+      Index x = ensureIndex();
+      collect(x, 1, 0, x.leaves, relation, from, to, startTime, endTime, result);
+    }
+    return result.isEmpty() ? Collections.EMPTY_LIST : result;
+  }
+
+  /** Walk the index subtree rooted at node, which covers blocks
+   * [blo, bhi), skipping subtrees whose end times cannot match.
+   **/
+  private void collect(Index x, int node, int blo, int bhi, int relation,
+                       int from, int to, long startTime, long endTime,
+                       List result) {
+    if (blo * INDEX_BLOCK >= to || bhi * INDEX_BLOCK <= from) return;
+    switch (relation) {
+    case INTERSECTING:
+      if (x.maxEnd[node] <= startTime) return;
+      break;
+    case ENCAPSULATED:
+      if (x.minEnd[node] > endTime) return;
+      break;
+    default:
+      if (x.maxEnd[node] < endTime) return;
+    }
+    if (bhi - blo == 1) {
+      scan(relation,
+           Math.max(from, blo * INDEX_BLOCK),
+           Math.min(to, bhi * INDEX_BLOCK),
+           startTime, endTime, result);
+    } else {
+      int mid = (blo + bhi) >>> 1;
+      collect(x, 2*node, blo, mid, relation, from, to, startTime, endTime, result);
+      collect(x, 2*node+1, mid, bhi, relation, from, to, startTime, endTime, result);
+    }
+  }
+
+  /** Test each element in [from, to) against the end time
+   * condition of the relation.  The start time condition is
+   * implied by the range.
+   **/
+  private void scan(int relation, int from, int to,
+                    long startTime, long endTime, List result) {
+    for (int i = from; i < to; i++) {
+      long t1 = endTimeAt(i);
+      boolean match;
+      switch (relation) {
+      case INTERSECTING:
+        match = (t1 > startTime);
+        break;
+      case ENCAPSULATED:
+        match = (t1 <= endTime);
+        break;
+      default:
+        match = (t1 >= endTime);
+      }
+      if (match) result.add(elementData[i]);
+    }
+  }
+
+  /** Find the shortest element in [0, to) of the index subtree rooted
+   * at node which covers time, visiting the subtree right to left.
+   * @param best the index of the best element so far, or -1
+   * @param bestd holds the duration of best
+   * @return the index of the best element, or -1
+   **/
+  private int minimal(Index x, int node, int blo, int bhi, int to, long time,
+                      int best, long[] bestd) {
+    int first = blo * INDEX_BLOCK;
+    if (first >= to || x.maxEnd[node] < time) return best;
+    int end = Math.min(to, bhi * INDEX_BLOCK);
+    if (best >= 0 &&
+        time - startTimeAt(end-1) > bestd[0]) {
+      return best;              // everything here starts too early
+    }
+    if (bhi - blo == 1) {
+      for (int i = end; --i >= first; ) {
+        long t1 = endTimeAt(i);
+        if (t1 < time) continue;
+        long d = t1 - startTimeAt(i);
+        if (best < 0 || d <= bestd[0]) {
+          best = i;
+          bestd[0] = d;
+        }
+      }
+      return best;
+    }
+    int mid = (blo + bhi) >>> 1;
+    best = minimal(x, 2*node+1, mid, bhi, to, time, best, bestd);
+    return minimal(x, 2*node, blo, mid, to, time, best, bestd);
+  }
+
+  /** Build the interval index now rather than at the next query, so
+   * that a set which will only be read, possibly by several threads
+   * at once, is not modified by its queries.
+   **/
+  protected final void prepareIndex() {
+    if (size >= INDEX_THRESHOLD) ensureIndex();
+  }
+
+  /** (Re)build the interval index if the set has changed since it was
+   * last built.
+   * <p>
+   * The index is built in local arrays and published in one volatile
+   * write, so that threads reading an unmodified set at once at worst
+   * each build an identical index.
+   * @return the current index
+   **/
+  private Index ensureIndex() {
+    Index x = index;
+    int mc = modCount;
+    if (x != null && x.modCount == mc) return x;
+
+    int blocks = (size + INDEX_BLOCK - 1) / INDEX_BLOCK;
+    int leaves = 1;
+    while (leaves < blocks) leaves <<= 1;
+    long[] maxEnd = new long[2*leaves];
+    long[] minEnd = new long[2*leaves];
+
+    for (int b = 0; b < leaves; b++) {
+      long hi = Long.MIN_VALUE;
+      long lo = Long.MAX_VALUE;
+      for (int i = b * INDEX_BLOCK, e = Math.min(size, i + INDEX_BLOCK); i < e; i++) {
+        long t1 = endTimeAt(i);
+        if (t1 > hi) hi = t1;
+        if (t1 < lo) lo = t1;
+      }
+      maxEnd[leaves + b] = hi;
+      minEnd[leaves + b] = lo;
+    }
+    for (int n = leaves - 1; n > 0; n--) {
+      maxEnd[n] = Math.max(maxEnd[2*n], maxEnd[2*n+1]);
+      minEnd[n] = Math.min(minEnd[2*n], minEnd[2*n+1]);
+    }
+    x = new Index(maxEnd, minEnd, leaves, mc);
+    index = x;
+    return x;
+  }
+
+  /** @return the index of the first element whose start time is
+   * not less than t, or size if there is none.
+   **/
+  protected final int lowerBound(long t) {
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (startTimeAt(mid) < t) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /** @return the index of the first element whose start time is
+   * greater than t, or size if there is none.
+   **/
+  protected final int upperBound(long t) {
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (startTimeAt(mid) <= t) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
   // private support
 
   /**
@@ -389,7 +730,12 @@ public String toString() {
    */
   protected boolean unsafeUpdate(Collection c) {
     clear();
-    return super.addAll(c);
+    boolean changed = super.addAll(c);
+    if (starts != null) {
+      growColumns();
+      fillColumns();
+    }
+    return changed;
   }
 
   /** @return the index of the object in the list or -1 **/
@@ -418,14 +764,104 @@ public String toString() {
    * return the length of the list.
    **/
   protected final int search(long t0, long t1) {
-    int l = size;
-    if (l==0) return 0;         // bail if empty
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (compareAt(t0, t1, mid) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
 
-    // this is a crock - we should do a binary search.
-    for (int i = 0; i < l; i++) {
-      if (compare(t0, t1, (TimeSpan) elementData[i]) >= 0)
-        return i;
+  /** @return the index of ts according to bsComparator, or
+   * (-(insertion point) - 1) if it is not present.
+   **/
+  private int binarySearch(TimeSpan ts) {
+    long t0 = ts.getStartTime();
+    long t1 = ts.getEndTime();
+    int h = System.identityHashCode(ts);
+    int lo = 0;
+    int hi = size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int c = compareAt(t0, t1, mid);
+      if (c == 0) c = System.identityHashCode(elementData[mid]) - h;
+      if (c < 0) {
+        lo = mid + 1;
+      } else if (c > 0) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(lo + 1);
+  }
+
+  /** compare(t0, t1, get(i)), but reading the packed times if present **/
+  private int compareAt(long t0, long t1, int i) {
+    long s = startTimeAt(i);
+    if (s != t0) return (s > t0) ? 1 : -1;
+    long e = endTimeAt(i);
+    if (e != t1) return (e > t1) ? 1 : -1;
+    return 0;
+  }
+
+  // packed time columns
+
+  /** The start and end times of the elements, parallel to
+   * elementData, or null if the times are read from the
+   * elements themselves.
+   * @see PackedTimeSpanSet
+   **/
+  private transient long[] starts;
+  private transient long[] ends;
+
+  /** Keep copies of the element times in primitive columns from now
+   * on, so that searches and range scans read long arrays rather than
+   * calling through TimeSpan.  Elements must then not change their
+   * times while they are members.
+   **/
+  protected final void pack() {
+    if (starts != null) return;
+    starts = new long[elementData.length];
+    ends = new long[elementData.length];
+    fillColumns();
+  }
+
+  /** @return the start time of the element at index i **/
+  protected final long startTimeAt(int i) {
+    long[] s = starts;
+    return (s != null) ? s[i] : ((TimeSpan) elementData[i]).getStartTime();
+  }
+
+  /** @return the end time of the element at index i **/
+  protected final long endTimeAt(int i) {
+    long[] e = ends;
+    return (e != null) ? e[i] : ((TimeSpan) elementData[i]).getEndTime();
+  }
+
+  /** Grow the columns to the capacity of elementData. **/
+  private void growColumns() {
+    int capacity = elementData.length;
+    if (starts.length < capacity) {
+      long[] s = new long[capacity];
+      long[] e = new long[capacity];
+      System.arraycopy(starts, 0, s, 0, size);
+      System.arraycopy(ends, 0, e, 0, size);
+      starts = s;
+      ends = e;
+    }
+  }
+
+  private void fillColumns() {
+    for (int i = 0; i < size; i++) {
+      TimeSpan ts = (TimeSpan) elementData[i];
+      starts[i] = ts.getStartTime();
+      ends[i] = ts.getEndTime();
     }
-    return l;
   }
 }
@@ -0,0 +1,224 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+package org.cougaar.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.cougaar.bootstrap.SystemProperties;
+
+/**
+ * Runtime-switchable profiling of {@link SyncTriggerModelImpl}s, to
+ * find client triggers that fire too often or run too long.
+ * <p>
+ * While enabled, each model that is triggered gets a {@link Stats}
+ * that counts its triggers, the triggers coalesced into an already
+ * pending run, and its runs, and keeps histograms of the time from
+ * being queued to being run and of the run time.  Counters are
+ * striped, so profiling doesn't make the lock-free trigger path
+ * contend.  While disabled the cost is one volatile read per call.
+ * <p>
+ * Stats are held weakly by model, so profiling doesn't keep unloaded
+ * components alive.  Query them with {@link #getStats(Comparator,int)}
+ * or print {@link #getReport}.
+ *
+ * @property org.cougaar.util.TriggerProfiler.enabled Profile trigger
+ * models from startup (defaults to false).
+ */
+public final class TriggerProfiler {
+  /** static only **/
+  private TriggerProfiler() {}
+
+  private static volatile boolean enabled =
+    SystemProperties.getBoolean("org.cougaar.util.TriggerProfiler.enabled");
+
+  /** model to Stats **/
+  private static final Map stats = new WeakHashMap();
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Turn profiling on or off.  Existing stats are kept. **/
+  public static void setEnabled(boolean b) {
+    enabled = b;
+  }
+
+  /** Create and track the Stats for a model **/
+  static Stats register(Object model, Object clientTrigger) {
+    Stats s = new Stats(String.valueOf(clientTrigger));
+    synchronized (stats) {
+      stats.put(model, s);
+    }
+    return s;
+  }
+
+  /** @return a snapshot list of the Stats of all live, profiled models **/
+  public static List getStats() {
+    synchronized (stats) {
+      return new ArrayList(stats.values());
+    }
+  }
+
+  /**
+   * @param c the order, e.g. {@link #BY_TRIGGERS}
+   * @param limit the maximum number of Stats to return
+   * @return the first Stats in the given order
+   */
+  public static List getStats(Comparator c, int limit) {
+    List l = getStats();
+    Collections.sort(l, c);
+    return (l.size() > limit ? new ArrayList(l.subList(0, limit)) : l);
+  }
+
+  /** Zero the Stats of all profiled models **/
+  public static void reset() {
+    List l = getStats();
+    for (int i = 0; i < l.size(); i++) {
+      ((Stats) l.get(i)).reset();
+    }
+  }
+
+  /** @return a multi-line report of the top models by trigger count
+   * and by total run time
+   **/
+  public static String getReport(int limit) {
+    StringBuffer buf = new StringBuffer();
+    buf.append("TRIGGER-PROFILE (enabled=").append(enabled).append(")");
+    buf.append("\n  by triggers:");
+    append(buf, getStats(BY_TRIGGERS, limit));
+    buf.append("\n  by total run time:");
+    append(buf, getStats(BY_TOTAL_RUN_TIME, limit));
+    return buf.toString();
+  }
+
+  public static String getReport() {
+    return getReport(10);
+  }
+
+  private static void append(StringBuffer buf, List l) {
+    for (Iterator iter = l.iterator(); iter.hasNext(); ) {
+      buf.append("\n    ").append(iter.next());
+    }
+  }
+
+  /** Most triggers first **/
+  public static final Comparator BY_TRIGGERS = new Comparator() {
+      public int compare(Object a, Object b) {
+        return compareLongs(((Stats) b).getTriggers(), ((Stats) a).getTriggers());
+      }
+    };
+
+  /** Most runs first **/
+  public static final Comparator BY_RUNS = new Comparator() {
+      public int compare(Object a, Object b) {
+        return compareLongs(((Stats) b).getRuns(), ((Stats) a).getRuns());
+      }
+    };
+
+  /** Most total run time first **/
+  public static final Comparator BY_TOTAL_RUN_TIME = new Comparator() {
+      public int compare(Object a, Object b) {
+        return compareLongs(
+            ((Stats) b).getRunTime().getTotalNanos(),
+            ((Stats) a).getRunTime().getTotalNanos());
+      }
+    };
+
+  /** Longest single run first **/
+  public static final Comparator BY_MAX_RUN_TIME = new Comparator() {
+      public int compare(Object a, Object b) {
+        return compareLongs(
+            ((Stats) b).getRunTime().getMaxNanos(),
+            ((Stats) a).getRunTime().getMaxNanos());
+      }
+    };
+
+  private static int compareLongs(long x, long y) {
+    return (x < y ? -1 : (x == y ? 0 : 1));
+  }
+
+  /** The profile of one trigger model **/
+  public static final class Stats {
+    private final String name;
+    final StripedCounter triggers = new StripedCounter();
+    final StripedCounter coalesced = new StripedCounter();
+    final StripedCounter runs = new StripedCounter();
+    final LatencyHistogram queueLatency = new LatencyHistogram();
+    final LatencyHistogram runTime = new LatencyHistogram();
+
+    Stats(String name) {
+      this.name = name;
+    }
+
+    /** @return the client trigger's "toString()" when first profiled **/
+    public String getName() { return name; }
+
+    /** @return the number of "trigger()" calls **/
+    public long getTriggers() { return triggers.get(); }
+
+    /** @return the triggers absorbed by an already pending run **/
+    public long getCoalesced() { return coalesced.get(); }
+
+    /** @return the number of client trigger runs **/
+    public long getRuns() { return runs.get(); }
+
+    /** @return the time from queueing with the registry to running **/
+    public LatencyHistogram getQueueLatency() { return queueLatency; }
+
+    /** @return the client trigger run times **/
+    public LatencyHistogram getRunTime() { return runTime; }
+
+    /** @return triggers per run, or 0 if there have been no runs **/
+    public double getTriggersPerRun() {
+      long r = getRuns();
+      return (r == 0 ? 0.0 : ((double) getTriggers()) / r);
+    }
+
+    public void reset() {
+      triggers.reset();
+      coalesced.reset();
+      runs.reset();
+      queueLatency.reset();
+      runTime.reset();
+    }
+
+    @Override
+    public String toString() {
+      return name+
+        " triggers="+getTriggers()+
+        " coalesced="+getCoalesced()+
+        " runs="+getRuns()+
+        " queued="+queueLatency+
+        " run="+runTime;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * <copyright>
+ *  
+ *  Copyright 1997-2007 BBNT Solutions, LLC
+ *  under sponsorship of the Defense Advanced Research Projects
+ *  Agency (DARPA).
+ * 
+ *  You can redistribute this software and/or modify it under the
+ *  terms of the Cougaar Open Source License as published on the
+ *  Cougaar Open Source Website (www.cougaar.org).
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ *  A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ *  OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ *  SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ *  LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ *  OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *  
+ * </copyright>
+ */
+package org.cougaar.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.cougaar.bootstrap.SystemProperties;
+
+/**
+ * Access to virtual threads on JVMs that have them, without requiring
+ * them at compile time.
+ * <p>
+ * When the "org.cougaar.thread.virtual" system property is true and 
+ * the JVM supports virtual threads, {@link ReusableThreadPool} and 
+ * {@link ExecutorTriggerRegistry} run their work on a new virtual 
+ * thread per task instead of pooled platform threads.  Otherwise the
+ * property is ignored (with a warning on stderr if virtual threads
+ * are unavailable).
+ *
+ * @property org.cougaar.thread.virtual Run ReusableThreads and
+ * registry triggers on virtual threads if supported (defaults to false).
+ **/
+public final class VirtualThreads {
+  /** static only **/
+  private VirtualThreads() {}
+
+  private static final Method OF_VIRTUAL;
+  private static final Method NAME;
+  private static final Method FACTORY;
+  private static final Method NEW_EXECUTOR;
+  private static final boolean ENABLED;
+
+  static {
+    Method ofVirtual = null, name = null, factory = null, newExecutor = null;
+    try {
+      ofVirtual = Thread.class.getMethod("ofVirtual", new Class[0]);
+      Class builder = Class.forName("java.lang.Thread$Builder");
+      name = builder.getMethod("name", new Class[] { String.class, long.class });
+      factory = builder.getMethod("factory", new Class[0]);
+      newExecutor = Executors.class.getMethod(
+          "newThreadPerTaskExecutor", new Class[] { ThreadFactory.class });
+    } catch (Exception e) {
+      // pre-virtual-thread JVM
+      ofVirtual = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    NAME = name;
+    FACTORY = factory;
+    NEW_EXECUTOR = newExecutor;
+
+    boolean requested = SystemProperties.getBoolean("org.cougaar.thread.virtual");
+    if (requested && OF_VIRTUAL == null) {
+      System.err.println(
+          "Warning: org.cougaar.thread.virtual is set, but this JVM"+
+          " does not support virtual threads");
+    }
+    ENABLED = requested && OF_VIRTUAL != null;
+  }
+
+  /** @return true if this JVM supports virtual threads **/
+  public static boolean isAvailable() {
+    return OF_VIRTUAL != null;
+  }
+
+  /** @return true if virtual threads are available and selected by
+   * the "org.cougaar.thread.virtual" property
+   **/
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * @param name the thread name prefix, numbered from 0
+   * @return a ThreadFactory for virtual threads
+   * @throws UnsupportedOperationException if not {@link #isAvailable}
+   **/
+  public static ThreadFactory newThreadFactory(String name) {
+    if (OF_VIRTUAL == null) {
+      throw new UnsupportedOperationException(
+          "Virtual threads are not supported by this JVM");
+    }
+    try {
+      Object builder = OF_VIRTUAL.invoke(null, new Object[0]);
+      builder = NAME.invoke(builder, new Object[] { name+"-", Long.valueOf(0) });
+      return (ThreadFactory) FACTORY.invoke(builder, new Object[0]);
+    } catch (Exception e) {
+      throw new UnsupportedOperationException(
+          "Unable to create virtual threads: "+e);
+    }
+  }
+
+  /**
+   * @param name the thread name prefix
+   * @return an ExecutorService that starts a new virtual thread
+   *   for each task
+   * @throws UnsupportedOperationException if not {@link #isAvailable}
+   **/
+  public static ExecutorService newExecutor(String name) {
+    ThreadFactory f = newThreadFactory(name);
+    try {
+      return (ExecutorService) NEW_EXECUTOR.invoke(null, new Object[] { f });
+    } catch (Exception e) {
+      throw new UnsupportedOperationException(
+          "Unable to create virtual threads: "+e);
+    }
+  }
+}